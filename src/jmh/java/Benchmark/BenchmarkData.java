@@ -0,0 +1,53 @@
+package Benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import Model.Message;
+import Util.ConnectionUtil;
+
+/**
+ * Builds the data set the benchmarks run against.
+ *
+ * Benchmarks fork with {@link #IN_MEMORY_DB} so they use a private in-memory H2 database instead of the
+ * application's file database.
+ */
+public class BenchmarkData {
+    /**
+     * JVM argument pointing ConnectionUtil at a private in-memory database.
+     */
+    public static final String IN_MEMORY_DB = "-Ddb.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1";
+    /**
+     * How many accounts the seeded messages are spread across.
+     */
+    public static final int AUTHORS = 100;
+
+    private static final int CHUNK = 1_000;
+
+    /**
+     * Reset the database and fill it with the given number of messages, spread evenly across {@link #AUTHORS}
+     * accounts with increasing timestamps. Message IDs run from 1 to messageCount.
+     *
+     * @param messageCount how many messages to create.
+     */
+    public static void seed(int messageCount) {
+        ConnectionUtil.resetTestDatabase();
+        AccountDAO accountDAO = new AccountDAO();
+        MessageDAO messageDAO = new MessageDAO();
+        // The seed data already holds account 1 and message 1
+        for (int author = 2; author <= AUTHORS; author++) {
+            accountDAO.insertAccount("benchuser" + author, "password");
+        }
+        List<Message> chunk = new ArrayList<>(CHUNK);
+        for (int i = 2; i <= messageCount; i++) {
+            chunk.add(new Message(1 + i % AUTHORS, "benchmark message " + i, 1669947792L + i));
+            if (chunk.size() == CHUNK) {
+                messageDAO.insertMessages(chunk);
+                chunk.clear();
+            }
+        }
+        messageDAO.insertMessages(chunk);
+    }
+}
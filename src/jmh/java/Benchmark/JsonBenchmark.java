@@ -0,0 +1,104 @@
+package Benchmark;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.ModelJsonMapper;
+import Model.Account;
+import Model.Message;
+
+/**
+ * Serialization of the models for a response, for single objects and listings: with Jackson straight to bytes, and
+ * with {@link ModelJsonMapper} as the controller uses it. Run with -prof gc to see the bytes allocated per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ModelJsonMapper jsonMapper = new ModelJsonMapper(objectMapper);
+    private Message message;
+    private Account account;
+    private String messageJson;
+
+    /**
+     * A message listing of the given size, as returned by GET /messages.
+     */
+    @State(Scope.Benchmark)
+    public static class Listing {
+        @Param({ "1", "100", "1000" })
+        public int listSize;
+
+        private List<Message> messages;
+
+        @Setup
+        public void setUp() {
+            messages = new ArrayList<>(listSize);
+            for (int i = 1; i <= listSize; i++) {
+                messages.add(new Message(i, 1 + i % 100, "benchmark message " + i, 1669947792L + i));
+            }
+        }
+    }
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        message = new Message(1, 1, "a benchmark message of a typical length for the site", 1669947792L);
+        account = new Account(1, "testuser1", "password");
+        messageJson = objectMapper.writeValueAsString(message);
+    }
+
+    @Benchmark
+    public byte[] serializeMessage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] serializeAccount() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(account);
+    }
+
+    @Benchmark
+    public byte[] serializeMessageList(Listing listing) throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(listing.messages);
+    }
+
+    @Benchmark
+    public InputStream mapMessage() {
+        return jsonMapper.toJsonStream(message, Message.class);
+    }
+
+    @Benchmark
+    public InputStream mapAccount() {
+        return jsonMapper.toJsonStream(account, Account.class);
+    }
+
+    @Benchmark
+    public InputStream mapMessageList(Listing listing) {
+        return jsonMapper.toJsonStream(listing.messages, List.class);
+    }
+
+    @Benchmark
+    public Message deserializeMessage() throws JsonProcessingException {
+        return objectMapper.readValue(messageJson, Message.class);
+    }
+}
@@ -0,0 +1,95 @@
+package Benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.MessageDAO;
+import Model.Message;
+
+/**
+ * MessageDAO round trips against an in-memory H2 database of varying size.
+ *
+ * updateThenSelect and updateAndReturn compare the old three-statement update path with the single-statement
+ * FINAL TABLE one; the range and page queries exercise the message indexes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = BenchmarkData.IN_MEMORY_DB)
+public class MessageDAOBenchmark {
+    @Param({ "1000", "100000" })
+    public int tableSize;
+
+    private MessageDAO messageDAO;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.seed(tableSize);
+        messageDAO = new MessageDAO();
+    }
+
+    @Benchmark
+    public Message getMessageById() {
+        return messageDAO.getMessageById(randomMessageId());
+    }
+
+    @Benchmark
+    public List<Message> getMessagesPage() {
+        return messageDAO.getMessagesAfter(randomMessageId(), 100);
+    }
+
+    @Benchmark
+    public List<Message> getMessagesByAccountIdPage() {
+        return messageDAO.getMessagesByAccountIdAfter(randomAuthor(), 0, 100);
+    }
+
+    @Benchmark
+    public Message insertMessage() {
+        return messageDAO.insertMessage(new Message(randomAuthor(), "inserted by benchmark", 1669947792L));
+    }
+
+    @Benchmark
+    public Message updateThenSelect() {
+        int messageId = randomMessageId();
+        if (messageDAO.getMessageById(messageId) == null) {
+            return null;
+        }
+        messageDAO.updateMessageText(messageId, "updated by benchmark");
+        return messageDAO.getMessageById(messageId);
+    }
+
+    @Benchmark
+    public Message updateAndReturn() {
+        return messageDAO.updateMessageTextAndReturn(randomMessageId(), "updated by benchmark");
+    }
+
+    @Benchmark
+    public Message insertThenDeleteAndReturn() {
+        Message inserted = messageDAO.insertMessage(new Message(randomAuthor(), "deleted by benchmark", 1669947792L));
+        return messageDAO.deleteMessageAndReturn(inserted.getMessage_id());
+    }
+
+    private int randomMessageId() {
+        return ThreadLocalRandom.current().nextInt(1, tableSize + 1);
+    }
+
+    private int randomAuthor() {
+        return ThreadLocalRandom.current().nextInt(1, BenchmarkData.AUTHORS + 1);
+    }
+}
@@ -0,0 +1,105 @@
+package Benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+import Model.Message;
+import Util.MappedTextArena;
+import Util.MessageColumns;
+
+/**
+ * Heap used per message by {@link MessageColumns}, with text on the heap (columns) or in mapped files (mapped),
+ * against one Message object per message, and the cost of a lookup by ID in each.
+ *
+ * The objects layout is a skip-list map by ID plus a skip-list set of IDs per author, the part of the in-memory
+ * store's earlier layout that the columns replace, without its two time indexes. The footprints are measured with JOL
+ * once the data is loaded and printed before the first iteration, in total bytes per message and in bytes beyond the
+ * UTF-8 text itself. Mapped text is outside the heap and not counted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g", "-Djdk.attach.allowAttachSelf=true" })
+public class MessageFootprintBenchmark {
+    @Param({ "columns", "mapped", "objects" })
+    public String layout;
+
+    @Param({ "1000000" })
+    public int messageCount;
+
+    private MessageColumns columns;
+    private ConcurrentSkipListMap<Integer, Message> messagesById;
+    private Map<Integer, NavigableSet<Integer>> idsByAuthor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long textBytes = 0;
+        Object root;
+        if (!layout.equals("objects")) {
+            columns = layout.equals("mapped") ? new MessageColumns(new MappedTextArena(Paths.get("target"), 1 << 26))
+                    : new MessageColumns();
+            for (int id = 1; id <= messageCount; id++) {
+                String text = text(id);
+                columns.add(id, author(id), text, 1669947792L + id);
+                textBytes += text.getBytes(StandardCharsets.UTF_8).length;
+            }
+            root = columns;
+        } else {
+            messagesById = new ConcurrentSkipListMap<>();
+            idsByAuthor = new ConcurrentHashMap<>();
+            for (int id = 1; id <= messageCount; id++) {
+                String text = text(id);
+                messagesById.put(id, new Message(id, author(id), text, 1669947792L + id));
+                idsByAuthor.computeIfAbsent(author(id), author -> new ConcurrentSkipListSet<>()).add(id);
+                textBytes += text.getBytes(StandardCharsets.UTF_8).length;
+            }
+            root = new Object[] { messagesById, idsByAuthor };
+        }
+        long total = GraphLayout.parseInstance(root).totalSize();
+        System.out.printf("%n%s: %.1f bytes per message, %.1f beyond the UTF-8 text%n", layout,
+                (double) total / messageCount, (double) (total - textBytes) / messageCount);
+    }
+
+    @Benchmark
+    public Message getMessageById() {
+        int id = ThreadLocalRandom.current().nextInt(1, messageCount + 1);
+        if (columns != null) {
+            return columns.get(id);
+        }
+        Message message = messagesById.get(id);
+        // The object store hands out copies, as the columns hand out new messages
+        return new Message(message.getMessage_id(), message.getPosted_by(), message.getMessage_text(),
+                message.getTime_posted_epoch());
+    }
+
+    private static int author(int id) {
+        return 1 + id % BenchmarkData.AUTHORS;
+    }
+
+    private static String text(int id) {
+        return "benchmark message " + id;
+    }
+}
@@ -0,0 +1,68 @@
+package Benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.Repositories;
+import DAO.RepositoryRegistry;
+import Model.Message;
+import Service.FeedService;
+import Service.MessageService;
+
+/**
+ * The MessageService write paths and the cached read path, including validation and the author check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = BenchmarkData.IN_MEMORY_DB)
+public class MessageServiceBenchmark {
+    @Param({ "1000", "100000" })
+    public int tableSize;
+
+    private MessageService messageService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.seed(tableSize);
+        Repositories repositories = RepositoryRegistry.create(RepositoryRegistry.JDBC);
+        messageService = new MessageService(repositories.getMessageRepository(),
+                repositories.getAccountRepository(), new FeedService(repositories.getFollowRepository(),
+                        repositories.getMessageRepository(), repositories.getAccountRepository()));
+    }
+
+    @Benchmark
+    public Message createMessage() {
+        int author = ThreadLocalRandom.current().nextInt(1, BenchmarkData.AUTHORS + 1);
+        return messageService.createMessage(new Message(author, "created by benchmark", 1669947792L));
+    }
+
+    @Benchmark
+    public Message updateMessageText() {
+        return messageService.updateMessageText("updated by benchmark", randomMessageId());
+    }
+
+    @Benchmark
+    public Message getMessageById() {
+        return messageService.getMessageById(randomMessageId());
+    }
+
+    private int randomMessageId() {
+        return ThreadLocalRandom.current().nextInt(1, tableSize + 1);
+    }
+}
@@ -0,0 +1,116 @@
+package Benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.AccountRepository;
+import DAO.MemoryStore;
+import DAO.MessageRepository;
+import DAO.Repositories;
+import DAO.RepositoryRegistry;
+import Model.Account;
+import Model.Message;
+
+/**
+ * The same repository calls against every storage engine, on the same seeded data. The memory engine imports the
+ * seeded database into a new store under target, so its writes pay for the log as they would in service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = BenchmarkData.IN_MEMORY_DB)
+public class RepositoryBenchmark {
+    @Param({ RepositoryRegistry.JDBC, RepositoryRegistry.CACHED_JDBC, RepositoryRegistry.MEMORY })
+    public String engine;
+
+    @Param({ "1000", "100000" })
+    public int tableSize;
+
+    private MessageRepository messages;
+    private AccountRepository accounts;
+    private Path storeDirectory;
+    private MemoryStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData.seed(tableSize);
+        Repositories repositories;
+        if (engine.equals(RepositoryRegistry.MEMORY)) {
+            Files.createDirectories(Paths.get("target"));
+            storeDirectory = Files.createTempDirectory(Paths.get("target"), "bench-store");
+            store = MemoryStore.open(storeDirectory, true, 100_000);
+            repositories = store.getRepositories();
+        } else {
+            repositories = RepositoryRegistry.create(engine);
+        }
+        messages = repositories.getMessageRepository();
+        accounts = repositories.getAccountRepository();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (store == null) {
+            return;
+        }
+        store.close();
+        try (Stream<Path> files = Files.walk(storeDirectory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public Message getMessageById() {
+        return messages.getMessageById(randomMessageId());
+    }
+
+    @Benchmark
+    public List<Message> getMessagesPage() {
+        return messages.getMessagesAfter(randomMessageId(), 100);
+    }
+
+    @Benchmark
+    public Account getAccountByUsername() {
+        return accounts.getAccountByUsername("benchuser" + ThreadLocalRandom.current().nextInt(2,
+                BenchmarkData.AUTHORS + 1));
+    }
+
+    @Benchmark
+    public Message insertMessage() {
+        int author = ThreadLocalRandom.current().nextInt(1, BenchmarkData.AUTHORS + 1);
+        return messages.insertMessage(new Message(author, "created by benchmark", 1669947792L));
+    }
+
+    @Benchmark
+    public Message updateMessageTextAndReturn() {
+        return messages.updateMessageTextAndReturn(randomMessageId(), "updated by benchmark");
+    }
+
+    private int randomMessageId() {
+        return ThreadLocalRandom.current().nextInt(1, tableSize + 1);
+    }
+}
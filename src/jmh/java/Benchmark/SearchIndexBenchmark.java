@@ -0,0 +1,82 @@
+package Benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Util.InvertedIndex;
+
+/**
+ * Query latency of the full-text message index, sampled so the JSON result holds p99 and p99.9 per query shape.
+ *
+ * Messages are eight words drawn from a skewed 10,000-word vocabulary, so low-numbered words are common and
+ * high-numbered ones rare, roughly like natural text.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SearchIndexBenchmark {
+    private static final int VOCABULARY = 10_000;
+    private static final int WORDS_PER_MESSAGE = 8;
+
+    @Param({ "100000", "1000000" })
+    public int indexSize;
+
+    private InvertedIndex index;
+    private int nextId;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        random = new Random(42);
+        index = new InvertedIndex();
+        for (nextId = 1; nextId <= indexSize; nextId++) {
+            index.put(nextId, randomText());
+        }
+    }
+
+    @Benchmark
+    public List<Integer> rareWord() {
+        return index.search("w9000", 0, 100);
+    }
+
+    @Benchmark
+    public List<Integer> twoWords() {
+        return index.search("w5 w40", 0, 100);
+    }
+
+    @Benchmark
+    public List<Integer> commonWord() {
+        return index.search("w1", 0, 100);
+    }
+
+    @Benchmark
+    public void indexNewMessage() {
+        index.put(nextId++, randomText());
+    }
+
+    private String randomText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < WORDS_PER_MESSAGE; i++) {
+            // The minimum of two uniform draws favours small numbers
+            int word = Math.min(random.nextInt(VOCABULARY), random.nextInt(VOCABULARY));
+            text.append('w').append(word).append(' ');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,435 @@
+package Load;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.ServerConfig;
+import io.javalin.Javalin;
+
+/**
+ * An open-loop HTTP load generator for the routes registered in {@link SocialMediaController#startAPI()}.
+ *
+ * The app is started in-process on an ephemeral port against a private in-memory database. Requests are fired on
+ * a fixed schedule derived from the target rate, whether or not earlier responses have arrived, and each latency is
+ * measured from the request's intended start time rather than the moment it was actually sent. A stall in the
+ * server therefore shows up in the percentiles instead of silently lowering the offered load (coordinated
+ * omission).
+ *
+ * Alongside the latencies it reports the peak number of live platform threads and the peak heap in use while
+ * measuring, to compare the server's execution modes ({@link ServerConfig}). Both figures include the generator's
+ * own client threads and allocations, which are the same in every mode.
+ *
+ * Arguments are key=value pairs:
+ * <ul>
+ * <li>rate - requests per second across all routes (default 200)</li>
+ * <li>duration - measured seconds (default 30)</li>
+ * <li>warmup - seconds of load before measuring starts (default 5)</li>
+ * <li>mix - relative weights per operation (default register=5,login=10,create=25,read=35,list=10,update=10,delete=5)</li>
+ * <li>threads - HTTP client threads (default 16)</li>
+ * <li>sockets - idle notification WebSockets to hold open throughout, each subscribed to one account (default 0)</li>
+ * <li>out - directory for the .hgrm percentile files (default target/load)</li>
+ * </ul>
+ */
+public class LoadGenerator {
+    private static final String DEFAULT_MIX = "register=5,login=10,create=25,read=35,list=10,update=10,delete=5";
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final int TRACKED_IDS = 1 << 16;
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final Map<String, Route> routes = new LinkedHashMap<>();
+    private final List<String> schedule = new ArrayList<>();
+
+    private final AtomicInteger accountCounter = new AtomicInteger();
+    private final Map<Long, String> usernames = new ConcurrentHashMap<>();
+    /**
+     * Recently created account and message IDs, kept in rings so operations can target rows that exist.
+     */
+    private final AtomicLongArray accountIds = new AtomicLongArray(TRACKED_IDS);
+    private final AtomicLong accountCursor = new AtomicLong();
+    private final AtomicLongArray messageIds = new AtomicLongArray(TRACKED_IDS);
+    private final AtomicLong messageCursor = new AtomicLong();
+    private volatile boolean measuring = false;
+    private final AtomicInteger peakThreads = new AtomicInteger();
+    private final AtomicLong peakHeapBytes = new AtomicLong();
+    private final List<WebSocket> sockets = new ArrayList<>();
+    private final AtomicLong socketFrames = new AtomicLong();
+    private final AtomicInteger socketsClosed = new AtomicInteger();
+
+    private LoadGenerator(HttpClient client, String baseUrl, Map<String, Integer> mix) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        for (Map.Entry<String, Integer> weight : mix.entrySet()) {
+            routes.put(weight.getKey(), new Route(weight.getKey()));
+            for (int i = 0; i < weight.getValue(); i++) {
+                schedule.add(weight.getKey());
+            }
+        }
+        // The seed data holds account 1 (testuser1) and message 1
+        usernames.put(1L, "testuser1");
+        trackAccount(1);
+        trackMessage(1);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int rate = Integer.parseInt(options.getOrDefault("rate", "200"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "16"));
+        int sockets = Integer.parseInt(options.getOrDefault("sockets", "0"));
+        File out = new File(options.getOrDefault("out", "target/load"));
+        Map<String, Integer> mix = parseMix(options.getOrDefault("mix", DEFAULT_MIX));
+
+        if (System.getProperty("db.url") == null) {
+            System.setProperty("db.url", "jdbc:h2:mem:load;DB_CLOSE_DELAY=-1");
+        }
+        if (System.getProperty("store.dir") == null) {
+            // The memory engine imports the database only into an empty store, so give it one for every run
+            System.setProperty("store.dir", Files.createTempDirectory("load-store").toString());
+        }
+        ConnectionUtil.resetTestDatabase();
+        Javalin app = new SocialMediaController().startAPI().start(0);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            HttpClient client = HttpClient.newBuilder()
+                    .executor(executor)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+            LoadGenerator generator = new LoadGenerator(client, "http://localhost:" + app.port(), mix);
+            System.out.println("Offering " + rate + " req/s for " + warmup + "s warmup + " + duration + "s, mix " + mix
+                    + ", server threads " + ServerConfig.fromSystemProperties().getThreads());
+            generator.openSockets(sockets, app.port());
+            sampler.scheduleAtFixedRate(generator::sampleResources, 0, 50, TimeUnit.MILLISECONDS);
+            generator.run(rate, warmup, duration);
+            generator.report(duration, out);
+            generator.closeSockets();
+        } finally {
+            app.stop();
+            sampler.shutdownNow();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Fire requests on a fixed schedule until the warmup and measurement periods have passed.
+     */
+    private void run(int rate, int warmupSeconds, int durationSeconds) throws InterruptedException {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+
+        for (long intended = start; intended < end; intended += intervalNanos) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (!measuring && intended >= measureFrom) {
+                measuring = true;
+                for (Route route : routes.values()) {
+                    route.reset();
+                }
+            }
+            String operation = schedule.get(ThreadLocalRandom.current().nextInt(schedule.size()));
+            inFlight.add(fire(routes.get(operation), intended));
+            inFlight.removeIf(CompletableFuture::isDone);
+        }
+        // Let stragglers finish so their (long) latencies are counted
+        CompletableFuture.allOf(inFlight.toArray(new CompletableFuture<?>[0]))
+                .completeOnTimeout(null, 30, TimeUnit.SECONDS)
+                .join();
+    }
+
+    /**
+     * Open idle notification WebSockets, a few hundred handshakes at a time, and subscribe each to one of the
+     * first thousand accounts so published messages fan out to some of them.
+     */
+    private void openSockets(int count, int port) {
+        if (count == 0) {
+            return;
+        }
+        URI uri = URI.create("ws://localhost:" + port + "/ws/messages");
+        WebSocket.Listener listener = new WebSocket.Listener() {
+            @Override
+            public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+                if (last) {
+                    socketFrames.incrementAndGet();
+                }
+                webSocket.request(1);
+                return null;
+            }
+
+            @Override
+            public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+                socketsClosed.incrementAndGet();
+                return null;
+            }
+        };
+        long start = System.nanoTime();
+        for (int opened = 0; opened < count; ) {
+            List<CompletableFuture<WebSocket>> batch = new ArrayList<>();
+            for (int i = 0; i < 200 && opened < count; i++, opened++) {
+                String subscribe = "{\"action\": \"subscribe\", \"posted_by\": [" + (opened % 1000 + 1) + "]}";
+                batch.add(client.newWebSocketBuilder()
+                        .buildAsync(uri, listener)
+                        .thenCompose(socket -> socket.sendText(subscribe, true)));
+            }
+            for (CompletableFuture<WebSocket> socket : batch) {
+                try {
+                    sockets.add(socket.join());
+                } catch (RuntimeException e) {
+                    System.out.println("WebSocket " + (sockets.size() + 1) + " failed: " + e.getMessage());
+                    return;
+                }
+            }
+        }
+        System.out.printf("Opened %d WebSockets in %.1fs%n", sockets.size(),
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    private void closeSockets() {
+        if (sockets.isEmpty()) {
+            return;
+        }
+        System.out.printf("WebSockets open %d of %d, %d frames received%n",
+                sockets.size() - socketsClosed.get(), sockets.size(), socketFrames.get());
+        for (WebSocket socket : sockets) {
+            socket.abort();
+        }
+    }
+
+    private void sampleResources() {
+        if (!measuring) {
+            return;
+        }
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        peakThreads.accumulateAndGet(threadBean.getThreadCount(), Math::max);
+        peakHeapBytes.accumulateAndGet(memoryBean.getHeapMemoryUsage().getUsed(), Math::max);
+    }
+
+    private CompletableFuture<?> fire(Route route, long intendedStartNanos) {
+        HttpRequest request = buildRequest(route.name);
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    long latencyMicros = (System.nanoTime() - intendedStartNanos) / 1_000;
+                    int status = -1;
+                    if (error == null) {
+                        status = response.statusCode();
+                        if (status == 200) {
+                            track(route.name, response.body());
+                        }
+                    }
+                    if (measuring) {
+                        route.record(latencyMicros, status);
+                    }
+                });
+    }
+
+    private HttpRequest buildRequest(String operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (operation) {
+            case "register": {
+                int n = accountCounter.incrementAndGet();
+                return post("/register", "{\"username\":\"loaduser" + n + "\",\"password\":\"password\"}");
+            }
+            case "login": {
+                String username = usernames.get(pick(accountIds, accountCursor));
+                return post("/login", "{\"username\":\"" + username + "\",\"password\":\"password\"}");
+            }
+            case "create":
+                return post("/messages", "{\"posted_by\":" + pick(accountIds, accountCursor)
+                        + ",\"message_text\":\"load test message " + random.nextInt() + "\",\"time_posted_epoch\":"
+                        + System.currentTimeMillis() / 1000 + "}");
+            case "read":
+                return HttpRequest.newBuilder(uri("/messages/" + pick(messageIds, messageCursor))).GET().build();
+            case "list":
+                return HttpRequest.newBuilder(uri("/messages?limit=50")).GET().build();
+            case "update":
+                return HttpRequest.newBuilder(uri("/messages/" + pick(messageIds, messageCursor)))
+                        .method("PATCH", HttpRequest.BodyPublishers.ofString(
+                                "{\"message_text\":\"updated " + random.nextInt() + "\"}"))
+                        .header("Content-Type", "application/json")
+                        .build();
+            case "delete":
+                return HttpRequest.newBuilder(uri("/messages/" + pick(messageIds, messageCursor))).DELETE().build();
+            default:
+                throw new IllegalArgumentException("unknown operation " + operation);
+        }
+    }
+
+    /**
+     * Remember the IDs of rows created by successful requests.
+     */
+    private void track(String operation, String body) {
+        if (!operation.equals("register") && !operation.equals("create")) {
+            return;
+        }
+        String field = operation.equals("register") ? "\"account_id\":" : "\"message_id\":";
+        int at = body.indexOf(field);
+        if (at < 0) {
+            return;
+        }
+        int from = at + field.length();
+        int to = from;
+        while (to < body.length() && Character.isDigit(body.charAt(to))) {
+            to++;
+        }
+        long id = Long.parseLong(body.substring(from, to));
+        if (operation.equals("register")) {
+            int name = body.indexOf("loaduser");
+            usernames.put(id, body.substring(name, body.indexOf('"', name)));
+            trackAccount(id);
+        } else {
+            trackMessage(id);
+        }
+    }
+
+    private void trackAccount(long id) {
+        accountIds.set((int) (accountCursor.getAndIncrement() % TRACKED_IDS), id);
+    }
+
+    private void trackMessage(long id) {
+        messageIds.set((int) (messageCursor.getAndIncrement() % TRACKED_IDS), id);
+    }
+
+    private static long pick(AtomicLongArray ids, AtomicLong cursor) {
+        int filled = (int) Math.min(cursor.get(), TRACKED_IDS);
+        return ids.get(ThreadLocalRandom.current().nextInt(Math.max(filled, 1)));
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(uri(path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    /**
+     * Print a summary per route and write each route's full percentile distribution in HdrHistogram's .hgrm format.
+     */
+    private void report(int durationSeconds, File out) throws FileNotFoundException {
+        if (!out.isDirectory() && !out.mkdirs()) {
+            throw new FileNotFoundException("cannot create " + out);
+        }
+        System.out.printf("%-10s %10s %10s %10s %10s %10s %10s %8s %8s%n",
+                "route", "requests", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors", "4xx");
+        for (Route route : routes.values()) {
+            Histogram histogram = route.latency;
+            long count = histogram.getTotalCount();
+            System.out.printf("%-10s %10d %10.1f %10.2f %10.2f %10.2f %10.2f %7.2f%% %7.2f%%%n",
+                    route.name, count, (double) count / durationSeconds,
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0,
+                    count == 0 ? 0 : 100.0 * route.errors.get() / count,
+                    count == 0 ? 0 : 100.0 * route.rejected.get() / count);
+            try (PrintStream file = new PrintStream(new File(out, route.name + ".hgrm"))) {
+                // Values are recorded in microseconds; scale the output to milliseconds
+                histogram.outputPercentileDistribution(file, 1000.0);
+            }
+        }
+        System.out.printf("Peak live platform threads %d, peak heap used %.1f MB%n",
+                peakThreads.get(), peakHeapBytes.get() / (1024.0 * 1024.0));
+        System.out.println("Percentile distributions written to " + out.getPath());
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (split < 0) {
+                throw new IllegalArgumentException("expected key=value but got " + arg);
+            }
+            options.put(arg.substring(0, split), arg.substring(split + 1));
+        }
+        return options;
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split("=");
+            weights.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+
+    /**
+     * Latency and error counts for one operation.
+     */
+    private static class Route {
+        private final String name;
+        private final Histogram latency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        /**
+         * Transport failures and 5xx responses.
+         */
+        private final AtomicLong errors = new AtomicLong();
+        /**
+         * 4xx responses, e.g. updating a message another request already deleted; expected in a random mix.
+         */
+        private final AtomicLong rejected = new AtomicLong();
+
+        private Route(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param status the HTTP status, or -1 if the request failed without a response.
+         */
+        private void record(long latencyMicros, int status) {
+            latency.recordValue(Math.min(Math.max(latencyMicros, 0), HIGHEST_TRACKABLE_MICROS));
+            if (status < 0 || status >= 500) {
+                errors.incrementAndGet();
+            } else if (status >= 400) {
+                rejected.incrementAndGet();
+            }
+        }
+
+        private void reset() {
+            latency.reset();
+            errors.set(0);
+            rejected.set(0);
+        }
+    }
+}
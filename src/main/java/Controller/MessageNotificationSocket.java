@@ -0,0 +1,375 @@
+package Controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Service.MessageEventService;
+import io.javalin.Javalin;
+import io.javalin.websocket.WsConfig;
+import io.javalin.websocket.WsContext;
+
+/**
+ * A WebSocket endpoint that notifies clients of changes to the messages of the accounts they subscribe to.
+ *
+ * Clients send {"action": "subscribe", "posted_by": [1, 2]} or the same with "unsubscribe", and get back
+ * {"type": "subscriptions", "posted_by": [...]} listing everything they are subscribed to. Changes arrive as
+ * {"type": "messages", "events": [{"id": ..., "type": "created", "message": {...}}, ...]}, in publishing order.
+ *
+ * Subscriptions are indexed by account in a concurrent map of concurrent sets, so subscribing, unsubscribing and
+ * looking up who to notify only ever lock one account's entry. Each event is serialized once, however many clients
+ * receive it, and only on the flusher thread, so publishing never waits on JSON. Events for a connection are held
+ * for up to {@code ws.coalesceMillis} and sent together in one frame, and only one frame per connection is written
+ * at a time; events arriving meanwhile join the next frame. A client that lets more than
+ * {@code ws.maxPendingEvents} events pile up is disconnected, so it can never hold up publishers or grow the heap
+ * without bound.
+ *
+ * Idle connections hold no thread, only their socket and a little state, so one node can keep tens of thousands
+ * open; they are closed after {@code ws.idleTimeoutMillis} without traffic, so clients should ping.
+ */
+public class MessageNotificationSocket {
+    private static final long COALESCE_MILLIS = Long.getLong("ws.coalesceMillis", 20);
+    private static final int MAX_PENDING_EVENTS = Integer.getInteger("ws.maxPendingEvents", 1000);
+    private static final int MAX_SUBSCRIPTIONS = Integer.getInteger("ws.maxSubscriptions", 1000);
+
+    private final MessageEventService eventService;
+    private final ObjectMapper objectMapper;
+    private final Map<Integer, Set<Connection>> subscribers = new ConcurrentHashMap<>();
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+    private final Consumer<MessageEventService.MessageEvent> listener = this::onEvent;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ws-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong eventsSent = new AtomicLong();
+    private final AtomicLong slowDisconnects = new AtomicLong();
+
+    /**
+     * @param eventService where message changes are published.
+     * @param objectMapper serializes the frames.
+     */
+    public MessageNotificationSocket(MessageEventService eventService, ObjectMapper objectMapper) {
+        this.eventService = eventService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Register the endpoint and start listening for message changes until the server stops.
+     *
+     * @param app  the Javalin app.
+     * @param path the WebSocket path.
+     */
+    public void register(Javalin app, String path) {
+        app.ws(path, this::configure);
+        eventService.addListener(listener);
+        app.events(event -> event.serverStopping(this::shutdown));
+    }
+
+    /**
+     * @return a point-in-time snapshot of the endpoint's counters.
+     */
+    public Stats getStats() {
+        return new Stats(connections.size(), subscribers.size(), framesSent.get(), eventsSent.get(),
+                slowDisconnects.get());
+    }
+
+    private void configure(WsConfig ws) {
+        ws.onConnect(ctx -> connections.put(ctx.getSessionId(), new Connection(ctx)));
+        ws.onMessage(ctx -> {
+            Connection connection = connections.get(ctx.getSessionId());
+            if (connection != null) {
+                handleFrame(connection, ctx.message());
+            }
+        });
+        ws.onClose(ctx -> disconnect(ctx.getSessionId()));
+        ws.onError(ctx -> disconnect(ctx.getSessionId()));
+    }
+
+    private void handleFrame(Connection connection, String frame) {
+        List<Integer> accounts = new ArrayList<>();
+        String action;
+        try {
+            JsonNode request = objectMapper.readTree(frame);
+            action = request.path("action").asText();
+            JsonNode postedBy = request.path("posted_by");
+            for (JsonNode id : postedBy.isArray() ? postedBy : List.of(postedBy)) {
+                if (!id.canConvertToInt()) {
+                    throw new IllegalArgumentException("posted_by must hold account IDs");
+                }
+                accounts.add(id.intValue());
+            }
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            connection.sendControl(Map.of("type", "error", "error", "expected {\"action\": \"subscribe\" or "
+                    + "\"unsubscribe\", \"posted_by\": [account IDs]}"));
+            return;
+        }
+
+        if (action.equals("subscribe")) {
+            if (connection.accounts.size() + accounts.size() > MAX_SUBSCRIPTIONS) {
+                connection.sendControl(Map.of("type", "error", "error",
+                        "at most " + MAX_SUBSCRIPTIONS + " subscriptions per connection"));
+                return;
+            }
+            for (int account : accounts) {
+                subscribe(connection, account);
+            }
+        } else if (action.equals("unsubscribe")) {
+            for (int account : accounts) {
+                unsubscribe(connection, account);
+            }
+        } else {
+            connection.sendControl(Map.of("type", "error", "error", "unknown action " + action));
+            return;
+        }
+        connection.sendControl(Map.of("type", "subscriptions", "posted_by", new ArrayList<>(connection.accounts)));
+    }
+
+    private void subscribe(Connection connection, int account) {
+        connection.accounts.add(account);
+        // compute() locks only this account's entry, and never races with the removal of an emptied set
+        subscribers.compute(account, (id, set) -> {
+            Set<Connection> subscribed = set == null ? ConcurrentHashMap.newKeySet() : set;
+            subscribed.add(connection);
+            return subscribed;
+        });
+    }
+
+    private void unsubscribe(Connection connection, int account) {
+        connection.accounts.remove(account);
+        subscribers.computeIfPresent(account, (id, set) -> {
+            set.remove(connection);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private void disconnect(String sessionId) {
+        Connection connection = connections.remove(sessionId);
+        if (connection == null) {
+            return;
+        }
+        connection.close();
+        for (int account : connection.accounts) {
+            unsubscribe(connection, account);
+        }
+    }
+
+    /**
+     * Runs on a publishing thread; only queues the event for its subscribers, to be serialized when flushed.
+     */
+    private void onEvent(MessageEventService.MessageEvent event) {
+        Set<Connection> subscribed = subscribers.get(event.getMessage().getPosted_by());
+        if (subscribed == null || subscribed.isEmpty()) {
+            return;
+        }
+        PendingEvent pending = new PendingEvent(event);
+        for (Connection connection : subscribed) {
+            connection.enqueue(pending);
+        }
+    }
+
+    private void shutdown() {
+        eventService.removeListener(listener);
+        flusher.shutdownNow();
+    }
+
+    /**
+     * Run a task on the flusher thread; dropped once the server is stopping.
+     */
+    private void schedule(Runnable task, long delayMillis) {
+        try {
+            flusher.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the connection is about to be closed anyway
+        }
+    }
+
+    /**
+     * An event waiting to be sent, shared by every connection that gets it. Only the flusher thread serializes it,
+     * the first time one of those connections is flushed.
+     */
+    private final class PendingEvent {
+        private final MessageEventService.MessageEvent event;
+        private String json;
+        private boolean failed = false;
+
+        private PendingEvent(MessageEventService.MessageEvent event) {
+            this.event = event;
+        }
+
+        /**
+         * @return the event as JSON, or null if it cannot be serialized.
+         */
+        private String toJson() {
+            if (json == null && !failed) {
+                try {
+                    json = objectMapper.writeValueAsString(event);
+                } catch (JsonProcessingException e) {
+                    System.out.println(e.getMessage());
+                    failed = true;
+                }
+            }
+            return json;
+        }
+    }
+
+    /**
+     * One client connection and the events waiting to be sent to it.
+     */
+    private final class Connection implements WriteCallback {
+        private final WsContext ctx;
+        private final Set<Integer> accounts = ConcurrentHashMap.newKeySet();
+        private List<PendingEvent> pending = new ArrayList<>();
+        private int pendingEvents = 0;
+        private boolean flushScheduled = false;
+        private boolean writing = false;
+        private boolean closed = false;
+
+        private Connection(WsContext ctx) {
+            this.ctx = ctx;
+        }
+
+        private synchronized void enqueue(PendingEvent event) {
+            if (closed) {
+                return;
+            }
+            if (pendingEvents >= MAX_PENDING_EVENTS) {
+                closed = true;
+                slowDisconnects.incrementAndGet();
+                schedule(() -> ctx.closeSession(StatusCode.POLICY_VIOLATION, "too far behind"), 0);
+                return;
+            }
+            pending.add(event);
+            pendingEvents++;
+            if (!flushScheduled && !writing) {
+                flushScheduled = true;
+                schedule(this::flush, COALESCE_MILLIS);
+            }
+        }
+
+        private void flush() {
+            List<PendingEvent> batch;
+            synchronized (this) {
+                flushScheduled = false;
+                if (closed || writing || pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                pendingEvents = 0;
+                writing = true;
+            }
+            StringBuilder frame = new StringBuilder("{\"type\":\"messages\",\"events\":[");
+            int events = 0;
+            for (PendingEvent event : batch) {
+                String json = event.toJson();
+                if (json != null) {
+                    frame.append(events++ == 0 ? "" : ",").append(json);
+                }
+            }
+            frame.append("]}");
+            framesSent.incrementAndGet();
+            eventsSent.addAndGet(events);
+            ctx.session.getRemote().sendString(frame.toString(), this);
+        }
+
+        @Override
+        public void writeSuccess() {
+            synchronized (this) {
+                writing = false;
+                // Whatever arrived while the last frame was being written goes out together, right away
+                if (!pending.isEmpty() && !flushScheduled && !closed) {
+                    flushScheduled = true;
+                    schedule(this::flush, 0);
+                }
+            }
+        }
+
+        @Override
+        public void writeFailed(Throwable error) {
+            disconnect(ctx.getSessionId());
+        }
+
+        private void sendControl(Map<String, Object> frame) {
+            try {
+                ctx.session.getRemote().sendString(objectMapper.writeValueAsString(frame), WriteCallback.NOOP);
+            } catch (JsonProcessingException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+
+        private synchronized void close() {
+            closed = true;
+            pending = new ArrayList<>();
+            pendingEvents = 0;
+        }
+    }
+
+    public static class Stats {
+        private final int connections;
+        private final int subscribedAccounts;
+        private final long framesSent;
+        private final long eventsSent;
+        private final long slowDisconnects;
+
+        public Stats(int connections, int subscribedAccounts, long framesSent, long eventsSent, long slowDisconnects) {
+            this.connections = connections;
+            this.subscribedAccounts = subscribedAccounts;
+            this.framesSent = framesSent;
+            this.eventsSent = eventsSent;
+            this.slowDisconnects = slowDisconnects;
+        }
+
+        /**
+         * @return the number of open connections.
+         */
+        public int getConnections() {
+            return connections;
+        }
+
+        /**
+         * @return the number of accounts with at least one subscriber.
+         */
+        public int getSubscribedAccounts() {
+            return subscribedAccounts;
+        }
+
+        /**
+         * @return how many event frames were sent.
+         */
+        public long getFramesSent() {
+            return framesSent;
+        }
+
+        /**
+         * @return how many events those frames carried.
+         */
+        public long getEventsSent() {
+            return eventsSent;
+        }
+
+        /**
+         * @return how many connections were closed for falling too far behind.
+         */
+        public long getSlowDisconnects() {
+            return slowDisconnects;
+        }
+    }
+}
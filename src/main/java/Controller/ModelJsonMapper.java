@@ -0,0 +1,83 @@
+package Controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Util.JsonWriter;
+import io.javalin.json.JsonMapper;
+
+/**
+ * Javalin's JSON mapper for the API. Messages, accounts, pages and batch results, alone or in lists, are written by
+ * {@link JsonWriter} into the calling thread's buffer; anything else, and all reading, goes to Jackson. Both write
+ * the same bytes for the models.
+ *
+ * Responses should be sent with {@code ctx.jsonStream(...)}: the stream is over one exact copy of the buffer, while
+ * {@code ctx.json(...)} decodes the bytes into a String for Javalin to encode again. As with Javalin's own mapper, a
+ * String is taken to be JSON already and sent as it is.
+ */
+public class ModelJsonMapper implements JsonMapper {
+    private final ObjectMapper objectMapper;
+
+    /**
+     * @param objectMapper the Jackson mapper for everything the writer does not handle.
+     */
+    public ModelJsonMapper(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String toJsonString(Object obj, Type type) {
+        if (obj instanceof String) {
+            return (String) obj;
+        }
+        if (JsonWriter.canWrite(obj)) {
+            return JsonWriter.forThread().write(obj).toString();
+        }
+        try {
+            return objectMapper.writeValueAsString(obj);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public InputStream toJsonStream(Object obj, Type type) {
+        if (obj instanceof String) {
+            return new ByteArrayInputStream(((String) obj).getBytes(StandardCharsets.UTF_8));
+        }
+        if (JsonWriter.canWrite(obj)) {
+            // A copy, since the thread's buffer may be reused for another response before Jetty sends this one
+            return new ByteArrayInputStream(JsonWriter.forThread().write(obj).toByteArray());
+        }
+        try {
+            return new ByteArrayInputStream(objectMapper.writeValueAsBytes(obj));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public <T> T fromJsonString(String json, Type targetType) {
+        try {
+            return objectMapper.readValue(json, objectMapper.constructType(targetType));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public <T> T fromJsonStream(InputStream json, Type targetType) {
+        try {
+            return objectMapper.readValue(json, objectMapper.constructType(targetType));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
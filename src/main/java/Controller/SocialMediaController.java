@@ -1,29 +1,113 @@
 package Controller;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import DAO.AccountRepository;
+import DAO.FollowRepository;
+import DAO.MessageRepository;
+import DAO.Repositories;
+import DAO.RepositoryRegistry;
 import Model.Account;
+import Model.BatchItemResult;
 import Model.Message;
+import Model.MessagePage;
 import Service.AccountService;
+import Service.FeedService;
+import Service.MessageEventService;
 import Service.MessageService;
+import Service.SessionService;
+import Util.ConcurrencyLimitHandler;
+import Util.ConnectionUtil;
+import Util.HandlerExecutor;
+import Util.JsonWriter;
+import Util.ServerConfig;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.javalin.Javalin;
+import io.javalin.http.ContentType;
 import io.javalin.http.Context;
+import io.javalin.http.ForbiddenResponse;
+import io.javalin.http.Handler;
+import io.javalin.http.HandlerType;
+import io.javalin.http.ServiceUnavailableResponse;
+import io.javalin.http.UnauthorizedResponse;
+import io.javalin.http.sse.SseClient;
+import io.javalin.http.sse.SseHandler;
+import io.javalin.util.ConcurrencyUtil;
+import io.javalin.util.LoomThreadPool;
+import io.javalin.util.LoomUtil;
+
+import org.eclipse.jetty.server.Server;
 
 public class SocialMediaController {
     // Instance variables
+    private final Repositories repositories;     // The storage engine the services run on
     private final MessageService messageService; // Dependency for handling messages
     private final AccountService accountService; // Dependency for handling user accounts
+    private final FeedService feedService;       // Dependency for the follow graph and home timelines
+    private final MessageEventService eventService; // Dependency for the live stream of message changes
+    private final MessageNotificationSocket notificationSocket; // WebSocket notifications per account
+    private final SessionService sessionService; // Dependency for issuing and checking login tokens
     private final ObjectMapper objectMapper;     // Dependency for JSON serialization/deserialization
+    private final ServerConfig serverConfig;     // How the HTTP server executes requests
+    private final boolean authRequired;          // With -Dauth.required=true, writes need a bearer token
+    private ConcurrencyLimitHandler concurrencyLimit; // Admission control, only installed with virtual threads
+    private HandlerExecutor handlerExecutor;     // Runs the handlers in async mode
 
-    // Constructor for SocialMediaController
+    private static final String NDJSON = "application/x-ndjson";
+    /**
+     * How much of a streamed listing is buffered before it is written to the response.
+     */
+    private static final int STREAM_CHUNK_SIZE = 1 << 13;
+    /**
+     * The response header carrying a new bearer token, at login and whenever a session is extended.
+     */
+    public static final String AUTH_TOKEN_HEADER = "X-Auth-Token";
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String SESSION_ATTRIBUTE = "session";
+    /**
+     * How long an idle event stream waits before sending a comment, which keeps proxies from timing it out and
+     * detects clients that have gone away.
+     */
+    private static final long EVENTS_KEEP_ALIVE_MILLIS = Long.getLong("events.keepAliveMillis", 15_000);
+
+    // Constructor for SocialMediaController, on the storage engine named by -Dstore.engine
     public SocialMediaController() {
-        // Initialize the dependencies
-        messageService = new MessageService(); 
-        accountService = new AccountService(); 
+        this(RepositoryRegistry.fromSystemProperties());
+    }
+
+    /**
+     * @param repositories the storage the services run on; the services share them, so the account repository's
+     *                     view of existing accounts stays current and new messages are pushed into the same
+     *                     timelines the feed endpoint reads.
+     */
+    public SocialMediaController(Repositories repositories) {
+        this.repositories = repositories;
+        AccountRepository accountDAO = repositories.getAccountRepository();
+        MessageRepository messageDAO = repositories.getMessageRepository();
+        FollowRepository followDAO = repositories.getFollowRepository();
+        feedService = new FeedService(followDAO, messageDAO, accountDAO);
+        eventService = new MessageEventService();
+        messageService = new MessageService(messageDAO, accountDAO, feedService, eventService);
+        accountService = new AccountService(accountDAO);
+        sessionService = new SessionService();
         objectMapper = new ObjectMapper();
+        notificationSocket = new MessageNotificationSocket(eventService, objectMapper);
+        serverConfig = ServerConfig.fromSystemProperties();
+        authRequired = Boolean.getBoolean("auth.required");
     }
 
     /**
@@ -36,32 +120,125 @@ public class SocialMediaController {
      */
     public Javalin startAPI() {
 
+        // Javalin switches to virtual threads on its own whenever the JDK has them; keep that an explicit opt-in
+        ConcurrencyUtil.INSTANCE.setUseLoom(serverConfig.isVirtualThreads());
+
         // Create a new Javalin instance
-        Javalin app = Javalin.create();
+        Javalin app = Javalin.create(config -> {
+            if (serverConfig.isVirtualThreads()) {
+                config.jetty.server(this::createVirtualThreadServer);
+            }
+            // Notification sockets are meant to stay open while idle; clients are expected to ping within this
+            config.jetty.wsFactoryConfig(factory ->
+                    factory.setIdleTimeout(Duration.ofMillis(Long.getLong("ws.idleTimeoutMillis", 600_000))));
+            // Responses go out through ctx.jsonStream, which sends the mapper's bytes without making a String of them
+            config.jsonMapper(new ModelJsonMapper(objectMapper));
+        });
+
+        if (serverConfig.isAsyncHandlers()) {
+            handlerExecutor = new HandlerExecutor(serverConfig.getHandlerThreads(), serverConfig.getHandlerQueueSize());
+            app.events(event -> event.serverStopped(handlerExecutor::shutdown));
+        }
+
+        // End open event streams, whose threads would otherwise wait out their keep-alive
+        app.events(event -> event.serverStopping(eventService::unsubscribeAll));
+
+        // Check bearer tokens on every request that changes messages or follows
+        if (authRequired) {
+            app.before("/messages", this::authorizeWrite);
+            app.before("/messages/*", this::authorizeWrite);
+            app.before("/accounts/*", this::authorizeWrite);
+        }
 
-        // Register routes for handling HTTP requests
+        // Register routes for handling HTTP requests; everything that touches the database is offloaded in async mode
 
         // Register a new user
-        app.post("/register", this::registerUserHandler);
+        app.post("/register", offload(this::registerUserHandler));
         // User login
-        app.post("/login", this::loginUserHandler);
+        app.post("/login", offload(this::loginUserHandler));
+        // User logout, revoking the presented token
+        app.post("/logout", this::logoutUserHandler);
         // Create a new message
-        app.post("/messages", this::createMessageHandler);
+        app.post("/messages", offload(this::createMessageHandler));
+        // Create a batch of messages
+        app.post("/messages/batch", offload(this::createMessageBatchHandler));
         // Retrieve all messages
-        app.get("/messages", this::getAllMessagesHandler);
+        app.get("/messages", offload(this::getAllMessagesHandler));
+        // Full-text search over message texts; registered before the message ID route so "search" is not an ID
+        app.get("/messages/search", offload(this::searchMessagesHandler));
+        // Server-Sent Events stream of message changes; also registered before the message ID route
+        app.get("/messages/stream", this::streamMessageEventsHandler);
+        // WebSocket notifications for the messages of subscribed accounts
+        notificationSocket.register(app, "/ws/messages");
         // Retrieve a message by message ID
-        app.get("/messages/{message_id}", this::getMessageByIdHandler);
+        app.get("/messages/{message_id}", offload(this::getMessageByIdHandler));
         // Retrieve all messages by account ID
-        app.get("/accounts/{account_id}/messages", this::getMessageByUserIdHandler);
+        app.get("/accounts/{account_id}/messages", offload(this::getMessageByUserIdHandler));
+        // Follow and unfollow another account
+        app.post("/accounts/{account_id}/following/{followee_id}", offload(this::followHandler));
+        app.delete("/accounts/{account_id}/following/{followee_id}", offload(this::unfollowHandler));
+        // Home timeline: the account's own messages and those of the accounts it follows, newest first
+        app.get("/accounts/{account_id}/feed", offload(this::getFeedHandler));
         // Delete message by message ID
-        app.delete("/messages/{message_id}", this::deleteMessageByIDHandler);
+        app.delete("/messages/{message_id}", offload(this::deleteMessageByIDHandler));
         // Update a message by message ID
-        app.patch("/messages/{message_id}", this::updateMessageByIDHandler);
+        app.patch("/messages/{message_id}", offload(this::updateMessageByIDHandler));
+        // Live runtime statistics
+        app.get("/metrics", this::getMetricsHandler);
 
         // Return the initialized Javalin instance
         return app;
     }
 
+    /**
+     * Builds a Jetty server that runs every request on its own virtual thread.
+     *
+     * A blocked JDBC call then parks a cheap virtual thread instead of holding one of a few hundred platform
+     * threads. Since thread count no longer bounds concurrency, a {@link ConcurrencyLimitHandler} sized to the
+     * connection pool admits requests instead.
+     *
+     * @return the server for Javalin to attach its handlers to
+     * @throws IllegalStateException if the JDK does not support virtual threads
+     */
+    private Server createVirtualThreadServer() {
+        if (!LoomUtil.INSTANCE.getLoomAvailable()) {
+            throw new IllegalStateException("server.threads=" + ServerConfig.VIRTUAL
+                    + " needs JDK 21 or newer, but this is " + Runtime.version());
+        }
+        Server server = new Server(new LoomThreadPool("JettyServerThreadPool"));
+        concurrencyLimit = new ConcurrencyLimitHandler(serverConfig.getMaxConcurrentRequests(),
+                serverConfig.getAdmissionTimeoutMillis());
+        server.insertHandler(concurrencyLimit);
+        return server;
+    }
+
+    /**
+     * Adapts a handler to the configured execution mode.
+     *
+     * In async mode the returned handler only queues the original one on the {@link HandlerExecutor} and passes
+     * the resulting future to {@link Context#future}; Javalin completes the response when it finishes, and the
+     * server thread goes back to serving other connections right away. A full queue is answered with 503 Service
+     * Unavailable. Otherwise the handler is returned unchanged and runs on the server thread.
+     *
+     * @param handler the blocking handler
+     * @return the handler to register with Javalin
+     */
+    private Handler offload(Handler handler) {
+        if (handlerExecutor == null) {
+            return handler;
+        }
+        return ctx -> {
+            CompletableFuture<Void> result;
+            try {
+                result = handlerExecutor.submit(() -> handler.handle(ctx));
+            } catch (RejectedExecutionException e) {
+                ctx.header("Retry-After", "1");
+                throw new ServiceUnavailableResponse();
+            }
+            ctx.future(() -> result);
+        };
+    }
+
     /**
      * Handles the creation of a new message.
      *
@@ -71,11 +248,12 @@ public class SocialMediaController {
         try {
             // Deserialize the request body JSON into a Message object
             Message message = objectMapper.readValue(ctx.body(), Message.class);
+            checkAuthor(ctx, message.getPosted_by());
             // Call the messageService to create the message
             Message createdMessage = messageService.createMessage(message);
             if (createdMessage != null) {
                 // Set the response body JSON to the created message
-                ctx.json(createdMessage).status(200);
+                ctx.jsonStream(createdMessage).status(200);
             } else {
                 ctx.status(400);
             }
@@ -85,19 +263,157 @@ public class SocialMediaController {
         }
     }
 
+    /**
+     * Handles the creation of a batch of messages.
+     *
+     * The request body is a JSON array of messages or, with Content-Type application/x-ndjson, one JSON message per
+     * line. The response body lists the outcome of every item, in order.
+     *
+     * @param ctx the Javalin context
+     */
+    private void createMessageBatchHandler(Context ctx) {
+        try {
+            // Deserialize the request body into a list of Message objects
+            List<Message> messages;
+            String contentType = ctx.contentType();
+            if (contentType != null && contentType.startsWith(NDJSON)) {
+                try (MappingIterator<Message> lines = objectMapper.readerFor(Message.class).readValues(ctx.bodyInputStream())) {
+                    messages = lines.readAll();
+                }
+            } else {
+                messages = objectMapper.readValue(ctx.body(), new TypeReference<List<Message>>(){});
+            }
+            for (Message message : messages) {
+                checkAuthor(ctx, message.getPosted_by());
+            }
+            // Call the messageService to validate and create the messages
+            List<BatchItemResult> results = messageService.createMessages(messages);
+            ctx.jsonStream(results).status(200);
+        } catch (IOException | IllegalArgumentException e) {
+            ctx.status(400);
+        }
+    }
+
     /**
      * Retrieves all messages.
      *
+     * With a "limit" or "after" query parameter the response is a page object with a cursor for the next page;
+     * otherwise it is a plain list capped at the server's maximum page size. With "stream=true" the complete
+     * listing is streamed as a JSON array instead. With "since" and/or "until" (epoch values; since inclusive,
+     * until exclusive) the messages posted in that range are streamed as a JSON array, oldest first.
+     *
      * @param ctx the Javalin context
      */
     private void getAllMessagesHandler(Context ctx) {
-        // Call the messageService to get all messages
-        List<Message> messages = messageService.getAllMessages();
-        if (messages != null) {
-            // Set the response body JSON to the list of messages
-            ctx.json(messages).status(200);
-        } else {
-            ctx.status(200).result("");
+        if (isTimeRange(ctx)) {
+            try {
+                long since = since(ctx);
+                long until = until(ctx);
+                checkTimeRange(since, until);
+                streamMessages(ctx, consumer -> messageService.streamMessagesInTimeRange(since, until, consumer));
+            } catch (IllegalArgumentException e) {
+                ctx.status(400);
+            }
+            return;
+        }
+        if (isStreaming(ctx)) {
+            streamMessages(ctx, messageService::streamAllMessages);
+            return;
+        }
+        try {
+            // Call the messageService to get the requested page of messages
+            MessagePage page = messageService.getMessagesPage(ctx.queryParam("after"), pageSize(ctx));
+            respondWithPage(ctx, page);
+        } catch (IllegalArgumentException e) {
+            ctx.status(400);
+        }
+    }
+
+    /**
+     * Searches message texts for every word of the "q" query parameter.
+     *
+     * The response is a page object, ranked best match first, with a cursor for the next page; "limit" sets the
+     * page size.
+     *
+     * @param ctx the Javalin context
+     */
+    private void searchMessagesHandler(Context ctx) {
+        try {
+            String limit = ctx.queryParam("limit");
+            MessagePage page = messageService.searchMessages(ctx.queryParam("q"), ctx.queryParam("after"),
+                    limit == null ? null : Integer.parseInt(limit));
+            ctx.jsonStream(page).status(200);
+        } catch (IllegalArgumentException e) {
+            ctx.status(400);
+        }
+    }
+
+    /**
+     * Streams message changes as Server-Sent Events: "created", "updated" and "deleted", each with the message as
+     * JSON and the event's ID.
+     *
+     * "account_id" limits the stream to one account's messages. A client that reconnects with a Last-Event-ID
+     * header (or "last_event_id" parameter) first gets the events it missed; if they are no longer kept it gets a
+     * "reset" event instead and should reload. "overflow" picks what happens when the client falls behind:
+     * "disconnect" (the default, see events.overflow) closes the stream so the client resumes from where it was,
+     * "drop" skips the oldest events and reports how many in a "dropped" event.
+     *
+     * @param ctx the Javalin context
+     */
+    private void streamMessageEventsHandler(Context ctx) throws Exception {
+        Integer accountId;
+        Long lastEventId;
+        MessageEventService.Overflow overflow;
+        try {
+            String account = ctx.queryParam("account_id");
+            accountId = account == null ? null : Integer.parseInt(account);
+            String lastId = ctx.header("Last-Event-ID") != null ? ctx.header("Last-Event-ID")
+                    : ctx.queryParam("last_event_id");
+            lastEventId = lastId == null ? null : Long.parseLong(lastId.trim());
+            String policy = ctx.queryParam("overflow") != null ? ctx.queryParam("overflow")
+                    : System.getProperty("events.overflow", "disconnect");
+            overflow = MessageEventService.Overflow.valueOf(policy.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            ctx.status(400);
+            return;
+        }
+        new SseHandler(client ->
+                streamMessageEvents(client, eventService.subscribe(accountId, lastEventId, overflow))).handle(ctx);
+    }
+
+    /**
+     * Writes a subscription's events to an SSE client until either side closes it. Runs on its own thread, so a
+     * slow client only ever holds up itself; publishers just fill the subscription's buffer.
+     *
+     * @param client       the SSE client
+     * @param subscription the client's subscription
+     */
+    private void streamMessageEvents(SseClient client, MessageEventService.Subscription subscription) {
+        client.onClose(() -> eventService.unsubscribe(subscription));
+        try {
+            if (subscription.isReset()) {
+                client.sendEvent("reset", "", String.valueOf(subscription.getStartedAfter()));
+            }
+            while (!subscription.isClosed()) {
+                MessageEventService.MessageEvent event = subscription.poll(EVENTS_KEEP_ALIVE_MILLIS);
+                long dropped = subscription.takeDropped();
+                if (dropped > 0) {
+                    client.sendEvent("dropped", String.valueOf(dropped));
+                }
+                if (event == null) {
+                    client.sendComment("keep-alive");
+                } else {
+                    client.sendEvent(event.getType(), objectMapper.writeValueAsString(event.getMessage()),
+                            String.valueOf(event.getId()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (JsonProcessingException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            eventService.unsubscribe(subscription);
+            client.close();
         }
     }
 
@@ -113,7 +429,7 @@ public class SocialMediaController {
         Message message = messageService.getMessageById(messageId);
         if (message != null) {
             // Set the response body JSON to the retrieved message
-            ctx.json(message).status(200);
+            ctx.jsonStream(message).status(200);
         } else {
             ctx.status(200).result("");
         }
@@ -127,12 +443,13 @@ public class SocialMediaController {
     private void deleteMessageByIDHandler(Context ctx) {
         // Get the message ID from the URL path parameter
         int messageId = Integer.parseInt(ctx.pathParam("message_id"));
+        checkMessageAuthor(ctx, messageId);
         // Call the messageService to delete the message by its ID
         Message deletedMessage = messageService.deleteMessage(messageId);
 
         if (deletedMessage != null) {
             // Set the response body JSON to the now deleted message
-            ctx.json(deletedMessage).status(200);
+            ctx.jsonStream(deletedMessage).status(200);
         } else {
             ctx.status(200).result("");
         }
@@ -147,13 +464,14 @@ public class SocialMediaController {
         try {
             // Get the message ID from the URL path parameter
             int messageId = Integer.parseInt(ctx.pathParam("message_id"));
+            checkMessageAuthor(ctx, messageId);
             // Deserialize the request body JSON into a Message object
             Message message = objectMapper.readValue(ctx.body(), Message.class);
             // Call the messageService to update the message by its ID
             Message updatedMessage = messageService.updateMessageText(message.getMessage_text(), messageId);
             if (updatedMessage != null) {
                 // Set the response body JSON to the updated message
-                ctx.json(updatedMessage).status(200);
+                ctx.jsonStream(updatedMessage).status(200);
             } else {
                 ctx.status(400);
             }
@@ -176,13 +494,17 @@ public class SocialMediaController {
             Account registeredAccount = accountService.registerAccount(account.getUsername(), account.getPassword());
             if (registeredAccount != null) {
                 // Set the response body JSON to the registered account
-                ctx.json(registeredAccount).status(200);
+                ctx.jsonStream(registeredAccount).status(200);
             } else {
                 ctx.status(400);
             }
         } catch (JsonProcessingException e) {
             e.printStackTrace();
             ctx.status(400);
+        } catch (RejectedExecutionException e) {
+            // Too many passwords are being hashed already
+            ctx.header("Retry-After", "1");
+            ctx.status(503);
         }
     }
 
@@ -198,32 +520,310 @@ public class SocialMediaController {
             // Call the accountService to perform user login
             Account loggedInAccount = accountService.login(account.getUsername(), account.getPassword());
             if (loggedInAccount != null) {
-                // Set the response body JSON to the logged-in account
-                ctx.json(loggedInAccount).status(200);
+                // Set the response body JSON to the logged-in account, and hand out a token for later requests
+                ctx.header(AUTH_TOKEN_HEADER, sessionService.issueToken(loggedInAccount.getAccount_id()));
+                ctx.jsonStream(loggedInAccount).status(200);
             } else {
                 ctx.status(401);
             }
         } catch (JsonProcessingException e) {
             e.printStackTrace();
             ctx.status(400);
+        } catch (RejectedExecutionException e) {
+            // Too many passwords are being hashed already
+            ctx.header("Retry-After", "1");
+            ctx.status(503);
+        }
+    }
+
+    /**
+     * Handles user logout by revoking the session of the bearer token the request was made with, which also ends
+     * every token refreshed from the same login.
+     *
+     * @param ctx the Javalin context
+     */
+    private void logoutUserHandler(Context ctx) {
+        sessionService.revoke(authenticate(ctx));
+        ctx.status(200);
+    }
+
+    /**
+     * Requires a valid bearer token on requests that change messages; reads pass through.
+     *
+     * The session is stored on the request for the author checks in the handlers. Once the token is halfway
+     * through its lifetime a replacement is returned in the {@link #AUTH_TOKEN_HEADER} header.
+     *
+     * @param ctx the Javalin context
+     */
+    private void authorizeWrite(Context ctx) {
+        if (ctx.method() == HandlerType.GET || ctx.method() == HandlerType.HEAD) {
+            return;
+        }
+        SessionService.Session session = authenticate(ctx);
+        ctx.attribute(SESSION_ATTRIBUTE, session);
+        String refreshed = sessionService.refresh(session);
+        if (refreshed != null) {
+            ctx.header(AUTH_TOKEN_HEADER, refreshed);
+        }
+    }
+
+    /**
+     * @param ctx the Javalin context
+     * @return the session of the request's bearer token
+     * @throws UnauthorizedResponse if the request has no valid bearer token
+     */
+    private SessionService.Session authenticate(Context ctx) {
+        String authorization = ctx.header("Authorization");
+        SessionService.Session session = null;
+        if (authorization != null && authorization.startsWith(BEARER_PREFIX)) {
+            session = sessionService.verify(authorization.substring(BEARER_PREFIX.length()).trim());
+        }
+        if (session == null) {
+            throw new UnauthorizedResponse();
+        }
+        return session;
+    }
+
+    /**
+     * Makes sure a request authenticated by a token only acts on behalf of its own account.
+     *
+     * @param ctx       the Javalin context
+     * @param accountId the account the request acts for
+     * @throws ForbiddenResponse if the request's token belongs to another account
+     */
+    private void checkAuthor(Context ctx, int accountId) {
+        SessionService.Session session = ctx.attribute(SESSION_ATTRIBUTE);
+        if (session != null && session.getAccountId() != accountId) {
+            throw new ForbiddenResponse();
+        }
+    }
+
+    /**
+     * Like {@link #checkAuthor(Context, int)}, for an existing message; a missing message passes, so deletes stay
+     * idempotent.
+     *
+     * @param ctx       the Javalin context
+     * @param messageId the message the request changes
+     */
+    private void checkMessageAuthor(Context ctx, int messageId) {
+        if (ctx.attribute(SESSION_ATTRIBUTE) == null) {
+            return;
+        }
+        Message message = messageService.getMessageById(messageId);
+        if (message != null) {
+            checkAuthor(ctx, message.getPosted_by());
         }
     }
 
     /**
      * Retrieves all messages posted by a specific user using account ID.
      *
+     * Supports the same "limit", "after", "stream", "since" and "until" parameters as
+     * {@link #getAllMessagesHandler(Context)}.
+     *
      * @param ctx the Javalin context
      */
     private void getMessageByUserIdHandler(Context ctx) {
-        // Get the account ID from the URL path parameter
-        int accountId = Integer.parseInt(ctx.pathParam("account_id"));
-        // Call the messageService to get messages by account ID
-        List<Message> messages = messageService.getMessagesByAccountId(accountId);
-        if (messages != null) {
-            // Set the response body JSON to the list of messages
-            ctx.json(messages).status(200);
-        } else {
-            ctx.status(200).result("");
+        try {
+            // Get the account ID from the URL path parameter
+            int accountId = Integer.parseInt(ctx.pathParam("account_id"));
+            if (isTimeRange(ctx)) {
+                long since = since(ctx);
+                long until = until(ctx);
+                checkTimeRange(since, until);
+                streamMessages(ctx, consumer ->
+                        messageService.streamMessagesByAccountIdInTimeRange(accountId, since, until, consumer));
+                return;
+            }
+            if (isStreaming(ctx)) {
+                streamMessages(ctx, consumer -> messageService.streamMessagesByAccountId(accountId, consumer));
+                return;
+            }
+            // Call the messageService to get the requested page of messages by account ID
+            MessagePage page = messageService.getMessagesPageByAccountId(accountId, ctx.queryParam("after"), pageSize(ctx));
+            respondWithPage(ctx, page);
+        } catch (IllegalArgumentException e) {
+            ctx.status(400);
+        }
+    }
+
+    /**
+     * Makes the account in the path follow the followee in the path. Following twice is not an error.
+     *
+     * @param ctx the Javalin context
+     */
+    private void followHandler(Context ctx) {
+        try {
+            int accountId = Integer.parseInt(ctx.pathParam("account_id"));
+            int followeeId = Integer.parseInt(ctx.pathParam("followee_id"));
+            checkAuthor(ctx, accountId);
+            ctx.status(feedService.follow(accountId, followeeId) ? 200 : 400);
+        } catch (NumberFormatException e) {
+            ctx.status(400);
+        }
+    }
+
+    /**
+     * Makes the account in the path stop following the followee in the path. Unfollowing an account that was not
+     * followed is not an error.
+     *
+     * @param ctx the Javalin context
+     */
+    private void unfollowHandler(Context ctx) {
+        try {
+            int accountId = Integer.parseInt(ctx.pathParam("account_id"));
+            int followeeId = Integer.parseInt(ctx.pathParam("followee_id"));
+            checkAuthor(ctx, accountId);
+            ctx.status(feedService.unfollow(accountId, followeeId) ? 200 : 400);
+        } catch (NumberFormatException e) {
+            ctx.status(400);
+        }
+    }
+
+    /**
+     * Retrieves a page of an account's home timeline, newest first. The response is always a page object; "limit"
+     * sets the page size and "after" takes the previous page's cursor.
+     *
+     * @param ctx the Javalin context
+     */
+    private void getFeedHandler(Context ctx) {
+        try {
+            int accountId = Integer.parseInt(ctx.pathParam("account_id"));
+            String limit = ctx.queryParam("limit");
+            MessagePage page = messageService.getFeedPage(accountId, ctx.queryParam("after"),
+                    limit == null ? null : Integer.parseInt(limit));
+            ctx.jsonStream(page).status(200);
+        } catch (IllegalArgumentException e) {
+            ctx.status(400);
+        }
+    }
+
+    /**
+     * @param ctx the Javalin context
+     * @return the page size to fetch: the "limit" query parameter, the server maximum for an unpaginated
+     *         request, or null to let the service pick its default page size
+     */
+    private Integer pageSize(Context ctx) {
+        String limit = ctx.queryParam("limit");
+        if (limit != null) {
+            return Integer.parseInt(limit);
+        }
+        return isPaginated(ctx) ? null : MessageService.MAX_PAGE_SIZE;
+    }
+
+    private boolean isPaginated(Context ctx) {
+        return ctx.queryParam("limit") != null || ctx.queryParam("after") != null;
+    }
+
+    private boolean isStreaming(Context ctx) {
+        return "true".equalsIgnoreCase(ctx.queryParam("stream"));
+    }
+
+    private boolean isTimeRange(Context ctx) {
+        return ctx.queryParam("since") != null || ctx.queryParam("until") != null;
+    }
+
+    private long since(Context ctx) {
+        String since = ctx.queryParam("since");
+        return since == null ? Long.MIN_VALUE : Long.parseLong(since);
+    }
+
+    private long until(Context ctx) {
+        String until = ctx.queryParam("until");
+        return until == null ? Long.MAX_VALUE : Long.parseLong(until);
+    }
+
+    /**
+     * Rejects an inverted range up front; once a stream starts, its 200 status is already committed.
+     */
+    private void checkTimeRange(long since, long until) {
+        if (until < since) {
+            throw new IllegalArgumentException("until is before since");
+        }
+    }
+
+    /**
+     * Streams a listing as a JSON array, writing the messages to the response in small chunks as their rows are
+     * read, so memory use does not grow with the size of the listing.
+     *
+     * @param ctx    the Javalin context
+     * @param source feeds every message in the listing to the consumer it is given
+     */
+    private void streamMessages(Context ctx, Consumer<Consumer<Message>> source) {
+        ctx.status(200).contentType(ContentType.APPLICATION_JSON);
+        JsonWriter writer = JsonWriter.forThread();
+        try (OutputStream out = ctx.outputStream()) {
+            // Commit the response headers before the query starts producing rows
+            writer.writeByte('[').writeTo(out);
+            out.flush();
+            writer.reset();
+            boolean[] first = { true };
+            source.accept(message -> {
+                if (!first[0]) {
+                    writer.writeByte(',');
+                }
+                first[0] = false;
+                writer.writeMessage(message);
+                if (writer.size() >= STREAM_CHUNK_SIZE) {
+                    try {
+                        writer.writeTo(out);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    writer.reset();
+                }
+            });
+            writer.writeByte(']').writeTo(out);
+        } catch (IOException | UncheckedIOException e) {
+            // The client went away mid-stream; there is no way left to report an error to it
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a page of messages. Paginated requests get the page object; unpaginated requests get the bare list,
+     * with the cursor for the rest of the listing in the X-Next-Cursor header if it was truncated.
+     *
+     * @param ctx  the Javalin context
+     * @param page the page to write
+     */
+    private void respondWithPage(Context ctx, MessagePage page) {
+        if (isPaginated(ctx)) {
+            ctx.jsonStream(page).status(200);
+            return;
+        }
+        if (page.getNext_cursor() != null) {
+            ctx.header("X-Next-Cursor", page.getNext_cursor());
+        }
+        ctx.jsonStream(page.getMessages()).status(200);
+    }
+
+    /**
+     * Reports live runtime statistics, such as connection pool usage and message cache effectiveness.
+     *
+     * @param ctx the Javalin context
+     */
+    private void getMetricsHandler(Context ctx) {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("server_threads", serverConfig.getThreads());
+        if (concurrencyLimit != null) {
+            metrics.put("request_limit", concurrencyLimit.getStats());
+        }
+        if (handlerExecutor != null) {
+            metrics.put("handler_executor", handlerExecutor.getStats());
+        }
+        metrics.put("connection_pool", ConnectionUtil.getPoolStats());
+        metrics.put("sessions", sessionService.getStats());
+        metrics.put("password_hashing", accountService.getHashingStats());
+        metrics.put("credential_cache", accountService.getCredentialCacheStats());
+        metrics.put("message_cache", messageService.getMessageCacheStats());
+        metrics.put("feed", feedService.getStats());
+        metrics.put("events", eventService.getStats());
+        metrics.put("websocket", notificationSocket.getStats());
+        metrics.put("store_engine", repositories.getEngine());
+        if (repositories.getStats() != null) {
+            metrics.put("store", repositories.getStats());
         }
+        ctx.jsonStream(metrics).status(200);
     }
 }
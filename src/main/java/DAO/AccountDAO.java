@@ -10,27 +10,34 @@ import java.util.List;
 
 import Model.Account;
 import Util.ConnectionUtil;
+import Util.IdBitmap;
 
-public class AccountDAO {
+public class AccountDAO implements AccountRepository {
+    /**
+     * IDs of every account known to exist, so author checks on the message write path need no query. Loaded in
+     * bulk on first use and kept current by insertAccount and deleteAccount.
+     */
+    private final IdBitmap accountIds = new IdBitmap();
+    private volatile boolean accountIdsLoaded = false;
 
     /**
      * Retrieve all accounts from the account table.
      *
      * @return all accounts
      */
+    @Override
     public List<Account> getAllAccounts() {
-        Connection connection = ConnectionUtil.getConnection();
         List<Account> accounts = new ArrayList<>();
 
-        try {
-            String sql = "SELECT * FROM account";
-
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-            ResultSet rs = preparedStatement.executeQuery();
-            while (rs.next()) {
-                Account account = new Account(rs.getInt("Account_id"), rs.getString("user_name"),
-                        rs.getString("password"));
-                accounts.add(account);
+        String sql = "SELECT * FROM account";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    Account account = new Account(rs.getInt("Account_id"), rs.getString("username"),
+                            rs.getString("password"));
+                    accounts.add(account);
+                }
             }
         } catch (SQLException e) {
             System.out.println(e.getMessage());
@@ -44,19 +51,19 @@ public class AccountDAO {
      * @param id a Account ID.
      * @return the Account object with the specified ID, or null if not found
      */
+    @Override
     public Account getAccountById(int id) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "SELECT * FROM account WHERE Account_ID = ?";
-
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        String sql = "SELECT * FROM account WHERE Account_ID = ?";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
             preparedStatement.setInt(1, id);
 
-            ResultSet rs = preparedStatement.executeQuery();
-            if (rs.next()) {
-                Account account = new Account(rs.getInt("Account_id"), rs.getString("user_name"),
-                        rs.getString("password"));
-                return account;
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                if (rs.next()) {
+                    Account account = new Account(rs.getInt("Account_id"), rs.getString("username"),
+                            rs.getString("password"));
+                    return account;
+                }
             }
         } catch (SQLException e) {
             System.out.println(e.getMessage());
@@ -72,21 +79,22 @@ public class AccountDAO {
      * @return the newly inserted Account object with the generated Account ID, or
      *         null if not successful
      */
+    @Override
     public Account insertAccount(String username, String password) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "INSERT INTO account (username, password) VALUES (?, ?)";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-
+        String sql = "INSERT INTO account (username, password) VALUES (?, ?)";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             preparedStatement.setString(1, username);
             preparedStatement.setString(2, password);
 
             preparedStatement.executeUpdate();
 
-            ResultSet generatedKeys = preparedStatement.getGeneratedKeys();
-            if (generatedKeys.next()) {
-                int generatedAccountId = generatedKeys.getInt(1);
-                return new Account(generatedAccountId, username, password);
+            try (ResultSet generatedKeys = preparedStatement.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    int generatedAccountId = generatedKeys.getInt(1);
+                    accountIds.add(generatedAccountId);
+                    return new Account(generatedAccountId, username, password);
+                }
             }
         } catch (SQLException e) {
             System.out.println(e.getMessage());
@@ -102,12 +110,11 @@ public class AccountDAO {
      * @param account a Account object. The Account object does not contain an
      *                Account ID.
      */
+    @Override
     public void updateAccount(int id, Account account) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "UPDATE account SET user_name = ?, password = ? WHERE Account_id = ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-
+        String sql = "UPDATE account SET username = ?, password = ? WHERE Account_id = ?";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
             preparedStatement.setString(1, account.getUsername());
             preparedStatement.setString(2, account.getPassword());
             preparedStatement.setInt(3, id);
@@ -119,51 +126,44 @@ public class AccountDAO {
     }
 
     /**
-     * Delete the Account identified by the Account ID.
+     * Replace the stored password of the Account identified by the Account ID.
      *
-     * @param id a Account ID.
+     * @param id       a Account ID.
+     * @param password the new stored password, normally a hash.
+     * @return true if the account was updated.
      */
-    public void deleteAccount(int id) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "DELETE FROM account WHERE Account_id = ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-
-            preparedStatement.setInt(1, id);
+    @Override
+    public boolean updatePassword(int id, String password) {
+        String sql = "UPDATE account SET password = ? WHERE account_id = ?";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            preparedStatement.setString(1, password);
+            preparedStatement.setInt(2, id);
 
-            preparedStatement.executeUpdate();
+            return preparedStatement.executeUpdate() > 0;
         } catch (SQLException e) {
             System.out.println(e.getMessage());
         }
+        return false;
     }
 
     /**
-     * Retrieve a specific Account using its username and password.
+     * Delete the Account identified by the Account ID.
      *
-     * @param username the username of the Account.
-     * @param password the password of the Account.
-     * @return the Account object with the specified username and password, or null
-     *         if not found.
+     * @param id a Account ID.
      */
-    public Account getAccountByUsernameAndPassword(String username, String password) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "SELECT * FROM account WHERE username = ? AND password = ?";
-
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-            preparedStatement.setString(1, username);
-            preparedStatement.setString(2, password);
+    @Override
+    public void deleteAccount(int id) {
+        String sql = "DELETE FROM account WHERE Account_id = ?";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            preparedStatement.setInt(1, id);
 
-            ResultSet rs = preparedStatement.executeQuery();
-            if (rs.next()) {
-                Account account = new Account(rs.getInt("account_id"), rs.getString("username"),
-                        rs.getString("password"));
-                return account;
-            }
+            preparedStatement.executeUpdate();
+            accountIds.remove(id);
         } catch (SQLException e) {
             System.out.println(e.getMessage());
         }
-        return null;
     }
 
     /**
@@ -172,19 +172,19 @@ public class AccountDAO {
      * @param username the username of the Account.
      * @return the Account object with the specified username, or null if not found.
      */
+    @Override
     public Account getAccountByUsername(String username) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "SELECT * FROM account WHERE user_name = ?";
-
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        String sql = "SELECT * FROM account WHERE username = ?";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
             preparedStatement.setString(1, username);
 
-            ResultSet rs = preparedStatement.executeQuery();
-            if (rs.next()) {
-                Account account = new Account(rs.getInt("account_id"), rs.getString("user_name"),
-                        rs.getString("password"));
-                return account;
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                if (rs.next()) {
+                    Account account = new Account(rs.getInt("account_id"), rs.getString("username"),
+                            rs.getString("password"));
+                    return account;
+                }
             }
         } catch (SQLException e) {
             System.out.println(e.getMessage());
@@ -198,17 +198,17 @@ public class AccountDAO {
      * @param username the username to check.
      * @return true if the account exists, false otherwise.
      */
+    @Override
     public boolean doesAccountExistUsername(String username) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "SELECT * FROM account WHERE user_name = ?";
-
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        String sql = "SELECT * FROM account WHERE username = ?";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
             preparedStatement.setString(1, username);
 
-            ResultSet rs = preparedStatement.executeQuery();
-            if (rs.next()) {
-                return true;
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                if (rs.next()) {
+                    return true;
+                }
             }
         } catch (SQLException e) {
             System.out.println(e.getMessage());
@@ -219,24 +219,64 @@ public class AccountDAO {
     /**
      * Check if an account with the given account ID already exists.
      *
+     * Answered from memory once the account IDs are loaded: insertAccount and deleteAccount keep them complete, so
+     * an ID that is not there does not exist. Accounts created outside this DAO are not seen until the next load;
+     * the foreign keys on the message and follow tables still reject writes for accounts that do not exist. Only
+     * if the IDs could not be loaded is the table queried.
+     *
      * @param account_id the account ID to check.
      * @return true if the account exists, false otherwise.
      */
+    @Override
     public boolean doesAccountExistAccountID(int account_id) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "SELECT * FROM account WHERE account_id  = ?";
+        if (loadAccountIds()) {
+            return accountIds.contains(account_id);
+        }
+        return doesAccountExistInDatabase(account_id);
+    }
 
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    private boolean doesAccountExistInDatabase(int account_id) {
+        String sql = "SELECT account_id FROM account WHERE account_id = ?";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
             preparedStatement.setInt(1, account_id);
 
-            ResultSet rs = preparedStatement.executeQuery();
-            if (rs.next()) {
-                return true;
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                if (rs.next()) {
+                    return true;
+                }
             }
         } catch (SQLException e) {
             System.out.println(e.getMessage());
         }
         return false;
     }
-}
\ No newline at end of file
+
+    /**
+     * Load every account ID into the bitmap the first time it is needed.
+     *
+     * @return true if the IDs are loaded, false if they could not be read.
+     */
+    private boolean loadAccountIds() {
+        if (accountIdsLoaded) {
+            return true;
+        }
+        synchronized (accountIds) {
+            if (accountIdsLoaded) {
+                return true;
+            }
+            String sql = "SELECT account_id FROM account";
+            try (Connection connection = ConnectionUtil.getConnection();
+                    PreparedStatement preparedStatement = connection.prepareStatement(sql);
+                    ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    accountIds.add(rs.getInt("account_id"));
+                }
+                accountIdsLoaded = true;
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+            return accountIdsLoaded;
+        }
+    }
+}
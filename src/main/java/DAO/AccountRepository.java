@@ -0,0 +1,73 @@
+package DAO;
+
+import java.util.List;
+
+import Model.Account;
+
+/**
+ * Storage for accounts. Implementations are thread-safe and report failures by returning null or false, never by
+ * throwing.
+ */
+public interface AccountRepository {
+    /**
+     * @return all accounts.
+     */
+    List<Account> getAllAccounts();
+
+    /**
+     * @param id an account ID.
+     * @return the account with that ID, or null if there is none.
+     */
+    Account getAccountById(int id);
+
+    /**
+     * Add a new account with a generated account ID.
+     *
+     * @param username the username; must not be taken.
+     * @param password the stored password, normally a hash.
+     * @return the new account with its account ID, or null if it could not be added.
+     */
+    Account insertAccount(String username, String password);
+
+    /**
+     * Replace the username and password of an account.
+     *
+     * @param id      an account ID.
+     * @param account the new values; its account ID is ignored.
+     */
+    void updateAccount(int id, Account account);
+
+    /**
+     * Replace the stored password of an account.
+     *
+     * @param id       an account ID.
+     * @param password the new stored password, normally a hash.
+     * @return true if the account was updated.
+     */
+    boolean updatePassword(int id, String password);
+
+    /**
+     * Delete an account.
+     *
+     * @param id an account ID.
+     */
+    void deleteAccount(int id);
+
+    /**
+     * @param username the username.
+     * @return the account with that username, or null if there is none.
+     */
+    Account getAccountByUsername(String username);
+
+    /**
+     * @param username the username to check.
+     * @return true if an account has that username.
+     */
+    boolean doesAccountExistUsername(String username);
+
+    /**
+     * @param account_id the account ID to check.
+     * @return true if an account has that ID.
+     */
+    boolean doesAccountExistAccountID(int account_id);
+}
@@ -0,0 +1,111 @@
+package DAO;
+
+import java.util.List;
+
+import Model.Account;
+import Util.LruCache;
+
+/**
+ * A read-through cache of accounts by username in front of another account repository, for the username lookups
+ * on every registration and login.
+ *
+ * Every write made through this repository invalidates the account it touches, so the cache stays coherent as long
+ * as nothing writes to the backing repository behind its back. Cached accounts are copied on the way out, so
+ * callers cannot change the cached object. Lookups by ID go straight through, since the JDBC repository already
+ * answers existence checks from memory.
+ */
+public class CachingAccountRepository implements AccountRepository {
+    private final AccountRepository delegate;
+    private final LruCache<String, Account> accountsByUsername;
+
+    /**
+     * @param delegate  the repository to cache.
+     * @param maxSize   the most accounts to cache.
+     * @param ttlMillis how long a cached account stays valid; 0 means until evicted or changed.
+     */
+    public CachingAccountRepository(AccountRepository delegate, int maxSize, long ttlMillis) {
+        this.delegate = delegate;
+        this.accountsByUsername = new LruCache<>(maxSize, ttlMillis);
+    }
+
+    /**
+     * @return the cache's counters.
+     */
+    public LruCache.Stats getStats() {
+        return accountsByUsername.getStats();
+    }
+
+    @Override
+    public List<Account> getAllAccounts() {
+        return delegate.getAllAccounts();
+    }
+
+    @Override
+    public Account getAccountById(int id) {
+        return delegate.getAccountById(id);
+    }
+
+    @Override
+    public Account insertAccount(String username, String password) {
+        Account inserted = delegate.insertAccount(username, password);
+        if (username != null) {
+            accountsByUsername.invalidate(username);
+        }
+        return inserted;
+    }
+
+    @Override
+    public void updateAccount(int id, Account account) {
+        invalidate(id);
+        delegate.updateAccount(id, account);
+        if (account.getUsername() != null) {
+            accountsByUsername.invalidate(account.getUsername());
+        }
+    }
+
+    @Override
+    public boolean updatePassword(int id, String password) {
+        boolean updated = delegate.updatePassword(id, password);
+        invalidate(id);
+        return updated;
+    }
+
+    @Override
+    public void deleteAccount(int id) {
+        Account account = delegate.getAccountById(id);
+        delegate.deleteAccount(id);
+        if (account != null && account.getUsername() != null) {
+            accountsByUsername.invalidate(account.getUsername());
+        }
+    }
+
+    @Override
+    public Account getAccountByUsername(String username) {
+        if (username == null) {
+            return null;
+        }
+        return copy(accountsByUsername.get(username, delegate::getAccountByUsername));
+    }
+
+    @Override
+    public boolean doesAccountExistUsername(String username) {
+        return getAccountByUsername(username) != null;
+    }
+
+    @Override
+    public boolean doesAccountExistAccountID(int account_id) {
+        return delegate.doesAccountExistAccountID(account_id);
+    }
+
+    private void invalidate(int id) {
+        Account account = delegate.getAccountById(id);
+        if (account != null && account.getUsername() != null) {
+            accountsByUsername.invalidate(account.getUsername());
+        }
+    }
+
+    private static Account copy(Account account) {
+        return account == null ? null
+                : new Account(account.getAccount_id(), account.getUsername(), account.getPassword());
+    }
+}
@@ -0,0 +1,206 @@
+package DAO;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import Util.ConnectionUtil;
+
+public class FollowDAO implements FollowRepository {
+    private static final int[] NONE = new int[0];
+
+    /**
+     * In-memory copy of the follow table in both directions, so the message write path can find an author's
+     * followers without a query. Loaded in bulk on first use and kept current by insertFollow and deleteFollow.
+     */
+    private final Map<Integer, Set<Integer>> followers = new HashMap<>();
+    private final Map<Integer, Set<Integer>> followees = new HashMap<>();
+    private int edges = 0;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean graphLoaded = false;
+
+    /**
+     * Record that one account follows another. Following an account twice is not an error.
+     *
+     * @param followerId the account that follows.
+     * @param followeeId the account being followed.
+     * @return true if the follow is recorded, false if it could not be saved.
+     */
+    @Override
+    public boolean insertFollow(int followerId, int followeeId) {
+        loadGraph();
+        String sql = "MERGE INTO follow (follower_id, followee_id) KEY (follower_id, followee_id) VALUES (?, ?)";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            preparedStatement.setInt(1, followerId);
+            preparedStatement.setInt(2, followeeId);
+
+            preparedStatement.executeUpdate();
+            lock.writeLock().lock();
+            try {
+                addEdge(followerId, followeeId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return true;
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Remove a follow; does nothing if the account was not following.
+     *
+     * @param followerId the account that follows.
+     * @param followeeId the account being followed.
+     * @return true if the follow no longer exists, false if it could not be removed.
+     */
+    @Override
+    public boolean deleteFollow(int followerId, int followeeId) {
+        loadGraph();
+        String sql = "DELETE FROM follow WHERE follower_id = ? AND followee_id = ?";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            preparedStatement.setInt(1, followerId);
+            preparedStatement.setInt(2, followeeId);
+
+            preparedStatement.executeUpdate();
+            lock.writeLock().lock();
+            try {
+                removeEdge(followerId, followeeId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return true;
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * @param followeeId an account ID.
+     * @return the IDs of the accounts following it, in no particular order.
+     */
+    @Override
+    public int[] getFollowerIds(int followeeId) {
+        return snapshot(followers, followeeId);
+    }
+
+    /**
+     * @param followerId an account ID.
+     * @return the IDs of the accounts it follows, in no particular order.
+     */
+    @Override
+    public int[] getFolloweeIds(int followerId) {
+        return snapshot(followees, followerId);
+    }
+
+    /**
+     * @param followeeId an account ID.
+     * @return how many accounts follow it.
+     */
+    @Override
+    public int countFollowers(int followeeId) {
+        loadGraph();
+        lock.readLock().lock();
+        try {
+            Set<Integer> ids = followers.get(followeeId);
+            return ids == null ? 0 : ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of follows recorded.
+     */
+    @Override
+    public int countFollows() {
+        loadGraph();
+        lock.readLock().lock();
+        try {
+            return edges;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int[] snapshot(Map<Integer, Set<Integer>> adjacency, int accountId) {
+        loadGraph();
+        lock.readLock().lock();
+        try {
+            Set<Integer> ids = adjacency.get(accountId);
+            if (ids == null) {
+                return NONE;
+            }
+            int[] copy = new int[ids.size()];
+            int i = 0;
+            for (int id : ids) {
+                copy[i++] = id;
+            }
+            return copy;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addEdge(int followerId, int followeeId) {
+        if (followers.computeIfAbsent(followeeId, id -> new HashSet<>()).add(followerId)) {
+            followees.computeIfAbsent(followerId, id -> new HashSet<>()).add(followeeId);
+            edges++;
+        }
+    }
+
+    private void removeEdge(int followerId, int followeeId) {
+        Set<Integer> ids = followers.get(followeeId);
+        if (ids == null || !ids.remove(followerId)) {
+            return;
+        }
+        if (ids.isEmpty()) {
+            followers.remove(followeeId);
+        }
+        Set<Integer> following = followees.get(followerId);
+        following.remove(followeeId);
+        if (following.isEmpty()) {
+            followees.remove(followerId);
+        }
+        edges--;
+    }
+
+    /**
+     * Load the whole follow table the first time it is needed.
+     */
+    private void loadGraph() {
+        if (graphLoaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (graphLoaded) {
+                return;
+            }
+            String sql = "SELECT follower_id, followee_id FROM follow";
+            try (Connection connection = ConnectionUtil.getConnection();
+                    PreparedStatement preparedStatement = connection.prepareStatement(sql);
+                    ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    addEdge(rs.getInt("follower_id"), rs.getInt("followee_id"));
+                }
+                graphLoaded = true;
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
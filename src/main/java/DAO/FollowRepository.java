@@ -0,0 +1,48 @@
+package DAO;
+
+/**
+ * Storage for the follow graph. Implementations are thread-safe and report failures by returning false, never by
+ * throwing.
+ */
+public interface FollowRepository {
+    /**
+     * Record that one account follows another. Following an account twice is not an error.
+     *
+     * @param followerId the account that follows.
+     * @param followeeId the account being followed.
+     * @return true if the follow is recorded, false if it could not be saved.
+     */
+    boolean insertFollow(int followerId, int followeeId);
+
+    /**
+     * Remove a follow; does nothing if the account was not following.
+     *
+     * @param followerId the account that follows.
+     * @param followeeId the account being followed.
+     * @return true if the follow no longer exists, false if it could not be removed.
+     */
+    boolean deleteFollow(int followerId, int followeeId);
+
+    /**
+     * @param followeeId an account ID.
+     * @return the IDs of the accounts following it, in no particular order.
+     */
+    int[] getFollowerIds(int followeeId);
+
+    /**
+     * @param followerId an account ID.
+     * @return the IDs of the accounts it follows, in no particular order.
+     */
+    int[] getFolloweeIds(int followerId);
+
+    /**
+     * @param followeeId an account ID.
+     * @return how many accounts follow it.
+     */
+    int countFollowers(int followeeId);
+
+    /**
+     * @return the number of follows recorded.
+     */
+    int countFollows();
+}
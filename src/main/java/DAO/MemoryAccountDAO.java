@@ -0,0 +1,189 @@
+package DAO;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import Model.Account;
+
+/**
+ * Accounts held in memory by a {@link MemoryStore}.
+ *
+ * Reads go straight to concurrent maps and take no lock. Writes check the same constraints as the account table
+ * (unique usernames of at most 255 characters, no deleting an account that still has messages or follows), log
+ * the change and apply it under the store's write lock, then wait for the log to be durable. Stored accounts are
+ * never changed in place; callers always get copies.
+ */
+public class MemoryAccountDAO implements AccountRepository {
+    private static final int MAX_LENGTH = 255;
+
+    private final MemoryStore store;
+    private final Map<Integer, Account> accountsById = new ConcurrentSkipListMap<>();
+    private final Map<String, Account> accountsByUsername = new ConcurrentHashMap<>();
+    private int nextAccountId = 1;
+
+    MemoryAccountDAO(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public List<Account> getAllAccounts() {
+        store.reseedIfReset();
+        List<Account> accounts = new ArrayList<>(accountsById.size());
+        for (Account account : accountsById.values()) {
+            accounts.add(copy(account));
+        }
+        return accounts;
+    }
+
+    @Override
+    public Account getAccountById(int id) {
+        store.reseedIfReset();
+        return copy(accountsById.get(id));
+    }
+
+    @Override
+    public Account insertAccount(String username, String password) {
+        store.reseedIfReset();
+        Account account;
+        long ticket;
+        synchronized (store.writeLock) {
+            if (!fits(username, password) || (username != null && accountsByUsername.containsKey(username))) {
+                return null;
+            }
+            account = new Account(nextAccountId, username, password);
+            ticket = store.log(MemoryStore.account(account));
+            put(account);
+        }
+        return store.awaitDurable(ticket) ? copy(account) : null;
+    }
+
+    @Override
+    public void updateAccount(int id, Account account) {
+        store.reseedIfReset();
+        long ticket;
+        synchronized (store.writeLock) {
+            Account current = accountsById.get(id);
+            Account owner = account.getUsername() == null ? null : accountsByUsername.get(account.getUsername());
+            if (current == null || !fits(account.getUsername(), account.getPassword())
+                    || (owner != null && owner.getAccount_id() != id)) {
+                return;
+            }
+            Account updated = new Account(id, account.getUsername(), account.getPassword());
+            ticket = store.log(MemoryStore.account(updated));
+            put(updated);
+        }
+        store.awaitDurable(ticket);
+    }
+
+    @Override
+    public boolean updatePassword(int id, String password) {
+        store.reseedIfReset();
+        long ticket;
+        synchronized (store.writeLock) {
+            Account current = accountsById.get(id);
+            if (current == null || !fits(current.getUsername(), password)) {
+                return false;
+            }
+            Account updated = new Account(id, current.getUsername(), password);
+            ticket = store.log(MemoryStore.account(updated));
+            put(updated);
+        }
+        return store.awaitDurable(ticket);
+    }
+
+    @Override
+    public void deleteAccount(int id) {
+        store.reseedIfReset();
+        long ticket;
+        synchronized (store.writeLock) {
+            if (!accountsById.containsKey(id) || store.isReferenced(id)) {
+                return;
+            }
+            ticket = store.log(MemoryStore.accountDeleted(id));
+            remove(id);
+        }
+        store.awaitDurable(ticket);
+    }
+
+    @Override
+    public Account getAccountByUsername(String username) {
+        store.reseedIfReset();
+        return username == null ? null : copy(accountsByUsername.get(username));
+    }
+
+    @Override
+    public boolean doesAccountExistUsername(String username) {
+        store.reseedIfReset();
+        return username != null && accountsByUsername.containsKey(username);
+    }
+
+    @Override
+    public boolean doesAccountExistAccountID(int account_id) {
+        store.reseedIfReset();
+        return accountsById.containsKey(account_id);
+    }
+
+    /**
+     * {@link #doesAccountExistAccountID(int)} for callers that hold the write lock.
+     */
+    boolean contains(int id) {
+        return accountsById.containsKey(id);
+    }
+
+    /**
+     * Apply an account as logged, replacing any account with the same ID. Callers hold the write lock.
+     */
+    void put(Account account) {
+        Account previous = accountsById.put(account.getAccount_id(), account);
+        if (previous != null && previous.getUsername() != null) {
+            accountsByUsername.remove(previous.getUsername());
+        }
+        if (account.getUsername() != null) {
+            accountsByUsername.put(account.getUsername(), account);
+        }
+        nextAccountId = Math.max(nextAccountId, account.getAccount_id() + 1);
+    }
+
+    void remove(int id) {
+        Account previous = accountsById.remove(id);
+        if (previous != null && previous.getUsername() != null) {
+            accountsByUsername.remove(previous.getUsername());
+        }
+    }
+
+    void clear() {
+        accountsById.clear();
+        accountsByUsername.clear();
+        nextAccountId = 1;
+    }
+
+    Collection<Account> accounts() {
+        return accountsById.values();
+    }
+
+    int size() {
+        return accountsById.size();
+    }
+
+    int getNextAccountId() {
+        return nextAccountId;
+    }
+
+    void setNextAccountId(int nextAccountId) {
+        this.nextAccountId = Math.max(this.nextAccountId, nextAccountId);
+    }
+
+    private static boolean fits(String username, String password) {
+        return (username == null || username.length() <= MAX_LENGTH)
+                && (password == null || password.length() <= MAX_LENGTH);
+    }
+
+    private static Account copy(Account account) {
+        return account == null ? null
+                : new Account(account.getAccount_id(), account.getUsername(), account.getPassword());
+    }
+}
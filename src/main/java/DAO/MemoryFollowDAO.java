@@ -0,0 +1,133 @@
+package DAO;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * The follow graph held in memory by a {@link MemoryStore}, in both directions. Reads take no lock; writes work
+ * as in {@link MemoryAccountDAO}, and both accounts must exist, as the follow table's foreign keys require.
+ */
+public class MemoryFollowDAO implements FollowRepository {
+    private static final int[] NONE = new int[0];
+
+    private final MemoryStore store;
+    private final Map<Integer, Set<Integer>> followers = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Integer>> followees = new ConcurrentHashMap<>();
+    private volatile int edges = 0;
+
+    MemoryFollowDAO(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public boolean insertFollow(int followerId, int followeeId) {
+        store.reseedIfReset();
+        long ticket;
+        synchronized (store.writeLock) {
+            if (!store.accountExists(followerId) || !store.accountExists(followeeId)) {
+                return false;
+            }
+            if (isFollowing(followerId, followeeId)) {
+                return true;
+            }
+            ticket = store.log(MemoryStore.follow(followerId, followeeId));
+            add(followerId, followeeId);
+        }
+        return store.awaitDurable(ticket);
+    }
+
+    @Override
+    public boolean deleteFollow(int followerId, int followeeId) {
+        store.reseedIfReset();
+        long ticket;
+        synchronized (store.writeLock) {
+            if (!isFollowing(followerId, followeeId)) {
+                return true;
+            }
+            ticket = store.log(MemoryStore.unfollow(followerId, followeeId));
+            remove(followerId, followeeId);
+        }
+        return store.awaitDurable(ticket);
+    }
+
+    @Override
+    public int[] getFollowerIds(int followeeId) {
+        store.reseedIfReset();
+        return toArray(followers.get(followeeId));
+    }
+
+    @Override
+    public int[] getFolloweeIds(int followerId) {
+        store.reseedIfReset();
+        return toArray(followees.get(followerId));
+    }
+
+    @Override
+    public int countFollowers(int followeeId) {
+        store.reseedIfReset();
+        Set<Integer> ids = followers.get(followeeId);
+        return ids == null ? 0 : ids.size();
+    }
+
+    @Override
+    public int countFollows() {
+        store.reseedIfReset();
+        return edges;
+    }
+
+    /**
+     * Apply a follow as logged. Callers hold the write lock.
+     */
+    void add(int followerId, int followeeId) {
+        if (followers.computeIfAbsent(followeeId, id -> ConcurrentHashMap.newKeySet()).add(followerId)) {
+            followees.computeIfAbsent(followerId, id -> ConcurrentHashMap.newKeySet()).add(followeeId);
+            edges++;
+        }
+    }
+
+    void remove(int followerId, int followeeId) {
+        Set<Integer> ids = followers.get(followeeId);
+        if (ids != null && ids.remove(followerId)) {
+            followees.get(followerId).remove(followeeId);
+            edges--;
+        }
+    }
+
+    void clear() {
+        followers.clear();
+        followees.clear();
+        edges = 0;
+    }
+
+    boolean involves(int accountId) {
+        Set<Integer> ids = followers.get(accountId);
+        Set<Integer> followed = followees.get(accountId);
+        return (ids != null && !ids.isEmpty()) || (followed != null && !followed.isEmpty());
+    }
+
+    /**
+     * @param consumer receives every follow as (follower, followee).
+     */
+    void forEach(BiConsumer<Integer, Integer> consumer) {
+        for (Map.Entry<Integer, Set<Integer>> entry : followees.entrySet()) {
+            for (int followeeId : entry.getValue()) {
+                consumer.accept(entry.getKey(), followeeId);
+            }
+        }
+    }
+
+    private boolean isFollowing(int followerId, int followeeId) {
+        Set<Integer> ids = followees.get(followerId);
+        return ids != null && ids.contains(followeeId);
+    }
+
+    private static int[] toArray(Set<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return NONE;
+        }
+        // The set may change while it is copied
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
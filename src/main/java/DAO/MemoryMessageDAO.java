@@ -0,0 +1,229 @@
+package DAO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import Model.Message;
+import Util.InvertedIndex;
+import Util.MessageColumns;
+import Util.TextArena;
+
+/**
+ * Messages held in memory by a {@link MemoryStore}.
+ *
+ * Messages are kept in {@link MessageColumns}, whose postings per author and time index stand in for the table's
+ * indexes, so every listing is a seek plus one step per message returned. The text index is always loaded. Writes
+ * work as in {@link MemoryAccountDAO}. Callers always get freshly built messages.
+ */
+public class MemoryMessageDAO implements MessageRepository {
+    private static final int MAX_TEXT_LENGTH = 255;
+
+    private final MemoryStore store;
+    private final MessageColumns columns;
+    private final InvertedIndex textIndex = new InvertedIndex();
+    private int nextMessageId = 1;
+
+    MemoryMessageDAO(MemoryStore store, TextArena textArena) {
+        this.store = store;
+        this.columns = new MessageColumns(textArena);
+    }
+
+    @Override
+    public List<Message> getMessagesAfter(int afterMessageId, int limit) {
+        store.reseedIfReset();
+        return columns.getAfter(afterMessageId, limit);
+    }
+
+    @Override
+    public Message getMessageById(int messageId) {
+        store.reseedIfReset();
+        return columns.get(messageId);
+    }
+
+    @Override
+    public Message insertMessage(Message message) {
+        List<Message> inserted = insertMessages(Collections.singletonList(message));
+        return inserted == null || inserted.isEmpty() ? null : inserted.get(0);
+    }
+
+    @Override
+    public List<Message> insertMessages(List<Message> messages) {
+        store.reseedIfReset();
+        List<Message> inserted = new ArrayList<>(messages.size());
+        if (messages.isEmpty()) {
+            return inserted;
+        }
+        long ticket;
+        synchronized (store.writeLock) {
+            for (Message message : messages) {
+                if (!fits(message.getMessage_text()) || !store.accountExists(message.getPosted_by())) {
+                    return null;
+                }
+            }
+            int id = nextMessageId;
+            for (Message message : messages) {
+                inserted.add(new Message(id++, message.getPosted_by(), message.getMessage_text(),
+                        message.getTime_posted_epoch()));
+            }
+            // One record, so a crash keeps the whole batch or none of it
+            ticket = store.log(MemoryStore.messages(inserted));
+            for (Message message : inserted) {
+                put(message);
+            }
+        }
+        return store.awaitDurable(ticket) ? inserted : null;
+    }
+
+    @Override
+    public void deleteMessage(int messageId) {
+        deleteMessageAndReturn(messageId);
+    }
+
+    @Override
+    public void updateMessageText(int messageId, String updatedText) {
+        updateMessageTextAndReturn(messageId, updatedText);
+    }
+
+    @Override
+    public Message updateMessageTextAndReturn(int messageId, String updatedText) {
+        store.reseedIfReset();
+        Message updated;
+        long ticket;
+        synchronized (store.writeLock) {
+            updated = columns.get(messageId);
+            if (updated == null || !fits(updatedText)) {
+                return null;
+            }
+            updated.setMessage_text(updatedText);
+            ticket = store.log(MemoryStore.messageText(messageId, updatedText));
+            putText(messageId, updatedText);
+        }
+        return store.awaitDurable(ticket) ? updated : null;
+    }
+
+    @Override
+    public Message deleteMessageAndReturn(int messageId) {
+        store.reseedIfReset();
+        Message deleted;
+        long ticket;
+        synchronized (store.writeLock) {
+            deleted = columns.get(messageId);
+            if (deleted == null) {
+                return null;
+            }
+            ticket = store.log(MemoryStore.messageDeleted(messageId));
+            remove(messageId);
+        }
+        return store.awaitDurable(ticket) ? deleted : null;
+    }
+
+    @Override
+    public List<Message> getMessagesByAccountIdAfter(int accountId, int afterMessageId, int limit) {
+        store.reseedIfReset();
+        return columns.getByAuthorAfter(accountId, afterMessageId, limit);
+    }
+
+    @Override
+    public List<Integer> getMessageIdsByAuthors(int[] authorIds, int beforeMessageId, int limit) {
+        store.reseedIfReset();
+        return columns.getIdsByAuthors(authorIds, beforeMessageId, limit);
+    }
+
+    @Override
+    public void streamAllMessages(Consumer<Message> consumer) {
+        store.reseedIfReset();
+        columns.forEach(consumer);
+    }
+
+    @Override
+    public void streamMessagesByAccountId(int accountId, Consumer<Message> consumer) {
+        store.reseedIfReset();
+        columns.forEachByAuthor(accountId, consumer);
+    }
+
+    @Override
+    public void streamMessagesInTimeRange(long since, long until, Consumer<Message> consumer) {
+        store.reseedIfReset();
+        columns.forEachInTimeRange(since, until, consumer);
+    }
+
+    @Override
+    public void streamMessagesByAccountIdInTimeRange(int accountId, long since, long until,
+            Consumer<Message> consumer) {
+        store.reseedIfReset();
+        columns.forEachByAuthorInTimeRange(accountId, since, until, consumer);
+    }
+
+    @Override
+    public List<Integer> searchMessageIds(String query, int offset, int limit) {
+        store.reseedIfReset();
+        return textIndex.search(query, offset, limit);
+    }
+
+    /**
+     * Apply a new message as logged; its ID is greater than any before it. Callers hold the write lock.
+     */
+    void put(Message message) {
+        columns.add(message.getMessage_id(), message.getPosted_by(), message.getMessage_text(),
+                message.getTime_posted_epoch());
+        textIndex.put(message.getMessage_id(), message.getMessage_text());
+        nextMessageId = Math.max(nextMessageId, message.getMessage_id() + 1);
+    }
+
+    /**
+     * Apply a text update as logged. Callers hold the write lock.
+     */
+    void putText(int messageId, String text) {
+        if (columns.setText(messageId, text)) {
+            textIndex.put(messageId, text);
+        }
+    }
+
+    void remove(int messageId) {
+        if (columns.remove(messageId)) {
+            textIndex.remove(messageId);
+        }
+    }
+
+    void clear() {
+        columns.clear();
+        textIndex.clear();
+        nextMessageId = 1;
+    }
+
+    boolean hasMessagesBy(int accountId) {
+        return columns.hasMessagesBy(accountId);
+    }
+
+    /**
+     * @param consumer receives every message, in ID order.
+     */
+    void forEach(Consumer<Message> consumer) {
+        columns.forEach(consumer);
+    }
+
+    int size() {
+        return columns.size();
+    }
+
+    /**
+     * @return the counters of the columns the messages are kept in.
+     */
+    MessageColumns.Stats getColumnStats() {
+        return columns.getStats();
+    }
+
+    int getNextMessageId() {
+        return nextMessageId;
+    }
+
+    void setNextMessageId(int nextMessageId) {
+        this.nextMessageId = Math.max(this.nextMessageId, nextMessageId);
+    }
+
+    private static boolean fits(String text) {
+        return text == null || text.length() <= MAX_TEXT_LENGTH;
+    }
+}
@@ -0,0 +1,750 @@
+package DAO;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import Model.Account;
+import Model.Message;
+import Util.ConnectionUtil;
+import Util.HeapTextArena;
+import Util.MappedTextArena;
+import Util.MessageColumns;
+import Util.TextArena;
+import Util.WriteAheadLog;
+
+/**
+ * An in-memory primary store for accounts, messages and follows, selected with {@code -Dstore.engine=memory}
+ * (see {@link RepositoryRegistry}).
+ *
+ * All data lives in {@link MemoryAccountDAO}, {@link MemoryMessageDAO} and {@link MemoryFollowDAO}, in concurrent
+ * maps and, for messages, compact columns, so a read is a lookup in memory rather than a JDBC round trip. Every
+ * change is applied under one write lock and appended, in the same order, to a checksummed {@link WriteAheadLog} in
+ * {@code store.dir}. The change is returned to the caller once the log has committed it; concurrent writers share
+ * one fsync through group commit. Readers may see a change slightly before it is durable.
+ *
+ * After every {@code store.snapshotEvery} records, a background thread seals the current log segment, copies the
+ * state under the write lock and writes it as a snapshot file, then deletes the segments the snapshot covers.
+ * Startup loads the newest snapshot and replays the segments after it. A store that starts with no files at all
+ * imports whatever the relational database holds.
+ *
+ * A test reset of the relational database ({@link ConnectionUtil#resetTestDatabase()}) makes the store start over
+ * from it: the next call into the store imports the freshly seeded database and writes it as a snapshot. The log is
+ * kept and compacted as after any snapshot.
+ *
+ * Only the DAOs go through the store; code that queries the relational database directly does not see its data.
+ */
+public class MemoryStore {
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".dat";
+    private static final int SNAPSHOT_RECORD_OPS = 1000;
+
+    // Operations in log records and snapshots
+    private static final byte ACCOUNT = 1;
+    private static final byte ACCOUNT_DELETED = 2;
+    private static final byte MESSAGE = 3;
+    private static final byte MESSAGE_TEXT = 4;
+    private static final byte MESSAGE_DELETED = 5;
+    private static final byte FOLLOW = 6;
+    private static final byte UNFOLLOW = 7;
+    private static final byte NEXT_IDS = 8;
+    private static final byte END = 9;
+
+    private static MemoryStore instance = null;
+
+    /**
+     * Held while a change is checked, logged and applied, so changes reach the log in the order they are applied.
+     */
+    final Object writeLock = new Object();
+    /**
+     * Held while a snapshot is taken or the store is reset, so neither overlaps another.
+     */
+    private final Object snapshotLock = new Object();
+
+    private final Path directory;
+    private final boolean fsync;
+    private final long snapshotEvery;
+    private final MemoryAccountDAO accounts;
+    private final MemoryMessageDAO messages;
+    private final MemoryFollowDAO follows;
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "store-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Guarded by writeLock
+    private WriteAheadLog log;
+    private long recordsSinceSnapshot = 0;
+    private boolean snapshotQueued = false;
+    /**
+     * Set by a test reset; the next call into the store imports the relational database before going on.
+     */
+    private volatile boolean reseedPending = false;
+
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicLong recoveredRecords = new AtomicLong();
+    private volatile long lastSnapshotMillis = 0;
+
+    /**
+     * @return the process's store, recovered from {@code store.dir} the first time it is asked for.
+     * @throws UncheckedIOException if the store's files cannot be read or written.
+     */
+    public static synchronized MemoryStore getInstance() {
+        if (instance == null) {
+            Path directory = Paths.get(System.getProperty("store.dir", "./h2/store"));
+            try {
+                instance = open(directory, Boolean.parseBoolean(System.getProperty("store.fsync", "true")),
+                        Long.getLong("store.snapshotEvery", 100_000), textArenaFromSystemProperties());
+            } catch (IOException e) {
+                throw new UncheckedIOException("cannot open the store in " + directory, e);
+            }
+            MemoryStore store = instance;
+            ConnectionUtil.addResetListener(() -> store.reseedPending = true);
+        }
+        return instance;
+    }
+
+    /**
+     * Open a store on its own, outside the one the application uses.
+     *
+     * @param directory     where the log segments and snapshots live; created if missing.
+     * @param fsync         whether every group commit and snapshot is forced to disk.
+     * @param snapshotEvery how many log records to write between snapshots.
+     * @return the recovered store.
+     * @throws IOException if the store's files cannot be read or written.
+     */
+    public static MemoryStore open(Path directory, boolean fsync, long snapshotEvery) throws IOException {
+        return open(directory, fsync, snapshotEvery, new HeapTextArena());
+    }
+
+    /**
+     * Open a store on its own, keeping message text in the given arena.
+     *
+     * @param directory     where the log segments and snapshots live; created if missing.
+     * @param fsync         whether every group commit and snapshot is forced to disk.
+     * @param snapshotEvery how many log records to write between snapshots.
+     * @param textArena     an empty arena for message text.
+     * @return the recovered store.
+     * @throws IOException if the store's files cannot be read or written.
+     */
+    public static MemoryStore open(Path directory, boolean fsync, long snapshotEvery, TextArena textArena)
+            throws IOException {
+        MemoryStore store = new MemoryStore(directory, fsync, snapshotEvery, textArena);
+        store.open();
+        return store;
+    }
+
+    /**
+     * @return the arena named by {@code store.textArena}: heap (the default), or mapped, which maps segments of
+     *         {@code store.textArena.segmentSize} bytes (64 MiB by default) in {@code store.textArena.dir} (the
+     *         temporary directory by default).
+     */
+    private static TextArena textArenaFromSystemProperties() {
+        String kind = System.getProperty("store.textArena", "heap");
+        switch (kind) {
+            case "heap":
+                return new HeapTextArena();
+            case "mapped":
+                return new MappedTextArena(Paths.get(System.getProperty("store.textArena.dir",
+                        System.getProperty("java.io.tmpdir"))), Integer.getInteger("store.textArena.segmentSize",
+                        1 << 26));
+            default:
+                throw new IllegalArgumentException("unknown store.textArena " + kind + "; expected heap or mapped");
+        }
+    }
+
+    private MemoryStore(Path directory, boolean fsync, long snapshotEvery, TextArena textArena) {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.snapshotEvery = snapshotEvery;
+        this.accounts = new MemoryAccountDAO(this);
+        this.messages = new MemoryMessageDAO(this, textArena);
+        this.follows = new MemoryFollowDAO(this);
+    }
+
+    /**
+     * @return the store's repositories, as the memory engine hands them out.
+     */
+    public Repositories getRepositories() {
+        return new Repositories(RepositoryRegistry.MEMORY, accounts, messages, follows, this::getStats);
+    }
+
+    public AccountRepository getAccountRepository() {
+        return accounts;
+    }
+
+    public MessageRepository getMessageRepository() {
+        return messages;
+    }
+
+    public FollowRepository getFollowRepository() {
+        return follows;
+    }
+
+    /**
+     * Write a snapshot now and drop the log segments it covers.
+     *
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long sealed;
+            List<byte[]> state;
+            synchronized (writeLock) {
+                sealed = log.rotate();
+                state = encodeState();
+                recordsSinceSnapshot = 0;
+            }
+            long start = System.nanoTime();
+            WriteAheadLog.writeFile(snapshotPath(sealed), state.iterator(), fsync);
+            log.deleteSegmentsThrough(sealed);
+            deleteSnapshotsBefore(sealed);
+            snapshots.incrementAndGet();
+            lastSnapshotMillis = (System.nanoTime() - start) / 1_000_000;
+        }
+    }
+
+    /**
+     * Stop taking snapshots and close the log once everything appended is written. The store must not be used
+     * afterwards.
+     *
+     * @throws IOException if the log failed.
+     */
+    public void close() throws IOException {
+        snapshotter.shutdown();
+        synchronized (snapshotLock) {
+            synchronized (writeLock) {
+                log.close();
+                // Releases the message text, which may be mapped outside the heap
+                messages.clear();
+            }
+        }
+    }
+
+    /**
+     * @return a point-in-time snapshot of the store's counters.
+     */
+    public Stats getStats() {
+        WriteAheadLog.Stats logStats;
+        synchronized (writeLock) {
+            logStats = log.getStats();
+        }
+        return new Stats(accounts.size(), messages.size(), follows.countFollows(), logStats.getRecords(),
+                logStats.getGroupCommits(), logStats.getBytes(), snapshots.get(), lastSnapshotMillis,
+                recoveredRecords.get(), messages.getColumnStats());
+    }
+
+    /**
+     * Append a change to the log. Callers hold the write lock and apply the change before releasing it.
+     *
+     * @return the ticket to wait on with {@link #awaitDurable(long)}.
+     */
+    long log(byte[] record) {
+        long ticket = log.append(record);
+        if (++recordsSinceSnapshot >= snapshotEvery && !snapshotQueued) {
+            snapshotQueued = true;
+            snapshotter.execute(() -> {
+                synchronized (writeLock) {
+                    snapshotQueued = false;
+                }
+                try {
+                    snapshot();
+                } catch (IOException e) {
+                    System.out.println(e.getMessage());
+                }
+            });
+        }
+        return ticket;
+    }
+
+    /**
+     * Wait for a logged change to be durable. Callers must not hold the write lock, so other writers can join the
+     * same group commit.
+     *
+     * @return true once the change is durable, false if the log failed.
+     */
+    boolean awaitDurable(long ticket) {
+        WriteAheadLog current;
+        synchronized (writeLock) {
+            current = log;
+        }
+        try {
+            current.await(ticket);
+            return true;
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Start over from the relational database if it was reset for a test since the last call. Every repository
+     * method calls this first, before taking the write lock, so the import also sees changes a test made to the
+     * database directly after the reset.
+     */
+    void reseedIfReset() {
+        if (reseedPending) {
+            reseed();
+        }
+    }
+
+    boolean accountExists(int accountId) {
+        return accounts.contains(accountId);
+    }
+
+    /**
+     * @return true if deleting the account would leave messages or follows pointing at nothing.
+     */
+    boolean isReferenced(int accountId) {
+        return messages.hasMessagesBy(accountId) || follows.involves(accountId);
+    }
+
+    /**
+     * Replace the whole state with what the relational database holds and write it as a snapshot, which makes the
+     * log segments before it obsolete. Until the snapshot is written, a restart recovers the state from before.
+     */
+    private void reseed() {
+        synchronized (snapshotLock) {
+            synchronized (writeLock) {
+                if (!reseedPending) {
+                    return;
+                }
+                accounts.clear();
+                messages.clear();
+                follows.clear();
+                try {
+                    importDatabase();
+                } catch (SQLException e) {
+                    // Left pending, so the next call tries again rather than going on with part of the data
+                    throw new IllegalStateException("cannot import the database", e);
+                }
+                reseedPending = false;
+            }
+            try {
+                snapshot();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Load the newest snapshot, replay the log after it and start a new log segment. With no files at all, import
+     * the relational database instead.
+     */
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Long> snapshotNumbers = snapshotNumbers();
+        List<Long> segments = WriteAheadLog.segments(directory);
+        synchronized (writeLock) {
+            if (snapshotNumbers.isEmpty() && segments.isEmpty()) {
+                try {
+                    importDatabase();
+                } catch (SQLException e) {
+                    // Nothing is written, so the next start tries the import again instead of trusting a partial one
+                    throw new IOException("cannot import the database into a new store in " + directory, e);
+                }
+                log = new WriteAheadLog(directory, 1, fsync);
+            } else {
+                long covered = loadNewestSnapshot(snapshotNumbers);
+                long last = covered;
+                for (long segment : segments) {
+                    if (segment > covered) {
+                        replay(WriteAheadLog.segmentPath(directory, segment));
+                    }
+                    last = Math.max(last, segment);
+                }
+                log = new WriteAheadLog(directory, last + 1, fsync);
+            }
+        }
+        if (snapshotNumbers.isEmpty() && segments.isEmpty()) {
+            snapshot();
+        }
+    }
+
+    /**
+     * Copy every account, message and follow from the relational database.
+     *
+     * @throws SQLException if any of it cannot be read; the store then holds part of the data and must not be saved.
+     */
+    private void importDatabase() throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            try (PreparedStatement preparedStatement = connection.prepareStatement(
+                    "SELECT account_id, username, password FROM account");
+                    ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    accounts.put(new Account(rs.getInt("account_id"), rs.getString("username"),
+                            rs.getString("password")));
+                }
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement(
+                    "SELECT message_id, posted_by, message_text, time_posted_epoch FROM message ORDER BY message_id");
+                    ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    messages.put(new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                            rs.getString("message_text"), rs.getLong("time_posted_epoch")));
+                }
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement(
+                    "SELECT follower_id, followee_id FROM follow");
+                    ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    follows.add(rs.getInt("follower_id"), rs.getInt("followee_id"));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of the last log segment the loaded snapshot covers, or 0 if none could be loaded.
+     */
+    private long loadNewestSnapshot(List<Long> snapshotNumbers) throws IOException {
+        for (int i = snapshotNumbers.size() - 1; i >= 0; i--) {
+            long number = snapshotNumbers.get(i);
+            boolean[] complete = new boolean[1];
+            boolean clean = WriteAheadLog.readFile(snapshotPath(number), record -> complete[0] |= apply(record));
+            if (clean && complete[0]) {
+                return number;
+            }
+            // Unreadable; fall back to the one before, whose log segments are only deleted after this one is written
+            System.out.println("skipping damaged snapshot " + snapshotPath(number));
+            accounts.clear();
+            messages.clear();
+            follows.clear();
+        }
+        return 0;
+    }
+
+    private void replay(Path segment) throws IOException {
+        if (!WriteAheadLog.readFile(segment, record -> {
+            apply(record);
+            recoveredRecords.incrementAndGet();
+        })) {
+            // A torn record at the end was never acknowledged, so nothing acknowledged is lost
+            System.out.println("stopped replaying " + segment + " at a torn or damaged record");
+        }
+    }
+
+    /**
+     * Apply every operation in a log or snapshot record.
+     *
+     * @return true if the record ends a snapshot.
+     */
+    private boolean apply(byte[] record) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            boolean end = false;
+            while (in.available() > 0) {
+                byte op = in.readByte();
+                switch (op) {
+                    case ACCOUNT:
+                        accounts.put(new Account(in.readInt(), readString(in), readString(in)));
+                        break;
+                    case ACCOUNT_DELETED:
+                        accounts.remove(in.readInt());
+                        break;
+                    case MESSAGE:
+                        messages.put(new Message(in.readInt(), in.readInt(), readString(in), in.readLong()));
+                        break;
+                    case MESSAGE_TEXT:
+                        messages.putText(in.readInt(), readString(in));
+                        break;
+                    case MESSAGE_DELETED:
+                        messages.remove(in.readInt());
+                        break;
+                    case FOLLOW:
+                        follows.add(in.readInt(), in.readInt());
+                        break;
+                    case UNFOLLOW:
+                        follows.remove(in.readInt(), in.readInt());
+                        break;
+                    case NEXT_IDS:
+                        accounts.setNextAccountId(in.readInt());
+                        messages.setNextMessageId(in.readInt());
+                        break;
+                    case END:
+                        end = true;
+                        break;
+                    default:
+                        throw new IOException("unknown operation " + op);
+                }
+            }
+            return end;
+        } catch (IOException e) {
+            // The checksum matched, so this is a bug rather than damage
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Encode the whole state as snapshot records. Callers hold the write lock.
+     */
+    private List<byte[]> encodeState() {
+        List<byte[]> records = new ArrayList<>();
+        Encoder encoder = new Encoder();
+        encoder.op(NEXT_IDS).writeInt(accounts.getNextAccountId()).writeInt(messages.getNextMessageId());
+        for (Account account : accounts.accounts()) {
+            encodeAccount(encoder, account);
+            encoder.flushEvery(SNAPSHOT_RECORD_OPS, records);
+        }
+        messages.forEach(message -> {
+            encodeMessage(encoder, message);
+            encoder.flushEvery(SNAPSHOT_RECORD_OPS, records);
+        });
+        follows.forEach((follower, followee) -> {
+            encoder.op(FOLLOW).writeInt(follower).writeInt(followee);
+            encoder.flushEvery(SNAPSHOT_RECORD_OPS, records);
+        });
+        encoder.op(END);
+        records.add(encoder.toBytes());
+        return records;
+    }
+
+    static byte[] account(Account account) {
+        Encoder encoder = new Encoder();
+        encodeAccount(encoder, account);
+        return encoder.toBytes();
+    }
+
+    static byte[] accountDeleted(int accountId) {
+        return new Encoder().op(ACCOUNT_DELETED).writeInt(accountId).toBytes();
+    }
+
+    static byte[] messages(List<Message> inserted) {
+        Encoder encoder = new Encoder();
+        for (Message message : inserted) {
+            encodeMessage(encoder, message);
+        }
+        return encoder.toBytes();
+    }
+
+    static byte[] messageText(int messageId, String text) {
+        return new Encoder().op(MESSAGE_TEXT).writeInt(messageId).writeString(text).toBytes();
+    }
+
+    static byte[] messageDeleted(int messageId) {
+        return new Encoder().op(MESSAGE_DELETED).writeInt(messageId).toBytes();
+    }
+
+    static byte[] follow(int followerId, int followeeId) {
+        return new Encoder().op(FOLLOW).writeInt(followerId).writeInt(followeeId).toBytes();
+    }
+
+    static byte[] unfollow(int followerId, int followeeId) {
+        return new Encoder().op(UNFOLLOW).writeInt(followerId).writeInt(followeeId).toBytes();
+    }
+
+    private static void encodeAccount(Encoder encoder, Account account) {
+        encoder.op(ACCOUNT).writeInt(account.getAccount_id()).writeString(account.getUsername())
+                .writeString(account.getPassword());
+    }
+
+    private static void encodeMessage(Encoder encoder, Message message) {
+        encoder.op(MESSAGE).writeInt(message.getMessage_id()).writeInt(message.getPosted_by())
+                .writeString(message.getMessage_text()).writeLong(message.getTime_posted_epoch());
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private Path snapshotPath(long number) {
+        return directory.resolve(String.format("%s%012d%s", SNAPSHOT_PREFIX, number, SNAPSHOT_SUFFIX));
+    }
+
+    private List<Long> snapshotNumbers() throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                numbers.add(Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(),
+                        name.length() - SNAPSHOT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private void deleteSnapshotsBefore(long number) throws IOException {
+        for (long older : snapshotNumbers()) {
+            if (older < number) {
+                Files.deleteIfExists(snapshotPath(older));
+            }
+        }
+    }
+
+    /**
+     * Builds one record out of operations.
+     */
+    private static final class Encoder {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private int ops = 0;
+
+        Encoder op(byte op) {
+            ops++;
+            return write(() -> out.writeByte(op));
+        }
+
+        Encoder writeInt(int value) {
+            return write(() -> out.writeInt(value));
+        }
+
+        Encoder writeLong(long value) {
+            return write(() -> out.writeLong(value));
+        }
+
+        Encoder writeString(String value) {
+            return write(() -> {
+                out.writeBoolean(value != null);
+                if (value != null) {
+                    out.writeUTF(value);
+                }
+            });
+        }
+
+        /**
+         * Move the operations so far into a record of their own once there are enough of them.
+         */
+        void flushEvery(int maxOps, List<byte[]> records) {
+            if (ops >= maxOps) {
+                records.add(toBytes());
+                bytes.reset();
+                ops = 0;
+            }
+        }
+
+        byte[] toBytes() {
+            return bytes.toByteArray();
+        }
+
+        private Encoder write(IOAction action) {
+            try {
+                action.run();
+            } catch (IOException e) {
+                // Writing to a byte array cannot fail
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+    }
+
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    public static class Stats {
+        private final int accounts;
+        private final int messages;
+        private final int follows;
+        private final long logRecords;
+        private final long groupCommits;
+        private final long logBytes;
+        private final long snapshots;
+        private final long lastSnapshotMillis;
+        private final long recoveredRecords;
+        private final MessageColumns.Stats messageColumns;
+
+        public Stats(int accounts, int messages, int follows, long logRecords, long groupCommits, long logBytes,
+                long snapshots, long lastSnapshotMillis, long recoveredRecords, MessageColumns.Stats messageColumns) {
+            this.accounts = accounts;
+            this.messages = messages;
+            this.follows = follows;
+            this.logRecords = logRecords;
+            this.groupCommits = groupCommits;
+            this.logBytes = logBytes;
+            this.snapshots = snapshots;
+            this.lastSnapshotMillis = lastSnapshotMillis;
+            this.recoveredRecords = recoveredRecords;
+            this.messageColumns = messageColumns;
+        }
+
+        /**
+         * @return the number of accounts held.
+         */
+        public int getAccounts() {
+            return accounts;
+        }
+
+        /**
+         * @return the number of messages held.
+         */
+        public int getMessages() {
+            return messages;
+        }
+
+        /**
+         * @return the number of follows held.
+         */
+        public int getFollows() {
+            return follows;
+        }
+
+        /**
+         * @return how many records were appended to the current log since it was opened.
+         */
+        public long getLogRecords() {
+            return logRecords;
+        }
+
+        /**
+         * @return how many group commits wrote those records; fewer than the records means writers shared fsyncs.
+         */
+        public long getGroupCommits() {
+            return groupCommits;
+        }
+
+        /**
+         * @return how many bytes were written to the current log.
+         */
+        public long getLogBytes() {
+            return logBytes;
+        }
+
+        /**
+         * @return how many snapshots were written since startup.
+         */
+        public long getSnapshots() {
+            return snapshots;
+        }
+
+        /**
+         * @return how long the last snapshot took to write, in milliseconds.
+         */
+        public long getLastSnapshotMillis() {
+            return lastSnapshotMillis;
+        }
+
+        /**
+         * @return how many log records were replayed at startup.
+         */
+        public long getRecoveredRecords() {
+            return recoveredRecords;
+        }
+
+        /**
+         * @return the counters of the columns messages are kept in.
+         */
+        public MessageColumns.Stats getMessageColumns() {
+            return messageColumns;
+        }
+    }
+}
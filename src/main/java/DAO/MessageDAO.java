@@ -6,30 +6,52 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import Model.Message;
 import Util.ConnectionUtil;
+import Util.InvertedIndex;
 
-public class MessageDAO {
+public class MessageDAO implements MessageRepository {
     /**
-     * Retrieve all messages from the message table.
+     * How many rows the driver fetches at a time when streaming a listing.
+     */
+    private static final int STREAM_FETCH_SIZE = Integer.getInteger("messages.streamFetchSize", 500);
+
+    /**
+     * Full-text index over message_text. Built from the table on the first search and kept current by every write
+     * below; writes are serialized with the initial build by synchronizing on the index.
+     */
+    private final InvertedIndex textIndex = new InvertedIndex();
+    private volatile boolean textIndexLoaded = false;
+
+    /**
+     * Retrieve one page of messages using keyset pagination on the message ID.
      *
-     * @return all messages
+     * @param afterMessageId only messages with a greater ID are returned; 0 starts from the beginning.
+     * @param limit          the maximum number of messages to return.
+     * @return up to limit messages, in ascending message ID order.
      */
-    public List<Message> getAllMessages() {
-        Connection connection = ConnectionUtil.getConnection();
+    @Override
+    public List<Message> getMessagesAfter(int afterMessageId, int limit) {
         List<Message> messages = new ArrayList<>();
 
-        try {
-            String sql = "SELECT * FROM message";
+        String sql = "SELECT * FROM message WHERE message_id > ? ORDER BY message_id LIMIT ?";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            preparedStatement.setInt(1, afterMessageId);
+            preparedStatement.setInt(2, limit);
 
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-            ResultSet rs = preparedStatement.executeQuery();
-            while (rs.next()) {
-                Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
-                        rs.getString("message_text"), rs.getLong("time_posted_epoch"));
-                messages.add(message);
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                            rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+                    messages.add(message);
+                }
             }
         } catch (SQLException e) {
             System.out.println(e.getMessage());
@@ -43,19 +65,19 @@ public class MessageDAO {
      * @param messageId a message ID.
      * @return the message object with the specified ID, or null if not found
      */
+    @Override
     public Message getMessageById(int messageId) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "SELECT * FROM message WHERE message_id = ?";
-
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        String sql = "SELECT * FROM message WHERE message_id = ?";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
             preparedStatement.setInt(1, messageId);
 
-            ResultSet rs = preparedStatement.executeQuery();
-            if (rs.next()) {
-                Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
-                        rs.getString("message_text"), rs.getLong("time_posted_epoch"));
-                return message;
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                if (rs.next()) {
+                    Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                            rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+                    return message;
+                }
             }
         } catch (SQLException e) {
             System.out.println(e.getMessage());
@@ -71,23 +93,24 @@ public class MessageDAO {
      * @return the newly inserted message object with the generated message ID, or
      *         null if not successful
      */
+    @Override
     public Message insertMessage(Message message) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-
+        String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             preparedStatement.setInt(1, message.getPosted_by());
             preparedStatement.setString(2, message.getMessage_text());
             preparedStatement.setLong(3, message.getTime_posted_epoch());
 
             int affectedRows = preparedStatement.executeUpdate();
             if (affectedRows > 0) {
-                ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys();
-                if (pkeyResultSet.next()) {
-                    int generated_message_id = pkeyResultSet.getInt(1);
-                    return new Message(generated_message_id, message.getPosted_by(), message.getMessage_text(),
-                            message.getTime_posted_epoch());
+                try (ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys()) {
+                    if (pkeyResultSet.next()) {
+                        int generated_message_id = pkeyResultSet.getInt(1);
+                        reindexText(connection, generated_message_id, generated_message_id);
+                        return new Message(generated_message_id, message.getPosted_by(), message.getMessage_text(),
+                                message.getTime_posted_epoch());
+                    }
                 }
             }
         } catch (SQLException e) {
@@ -96,20 +119,69 @@ public class MessageDAO {
         return null;
     }
 
+    /**
+     * Insert several messages as one JDBC batch in a single transaction.
+     *
+     * @param messages the messages to insert; they do not contain message IDs.
+     * @return the inserted messages with their generated message IDs, in the same
+     *         order, or null if the batch failed and was rolled back.
+     */
+    @Override
+    public List<Message> insertMessages(List<Message> messages) {
+        List<Message> insertedMessages = new ArrayList<>();
+        if (messages.isEmpty()) {
+            return insertedMessages;
+        }
+
+        String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (Message message : messages) {
+                    preparedStatement.setInt(1, message.getPosted_by());
+                    preparedStatement.setString(2, message.getMessage_text());
+                    preparedStatement.setLong(3, message.getTime_posted_epoch());
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+
+                try (ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys()) {
+                    for (Message message : messages) {
+                        if (!pkeyResultSet.next()) {
+                            throw new SQLException("missing generated key for batch insert");
+                        }
+                        insertedMessages.add(new Message(pkeyResultSet.getInt(1), message.getPosted_by(),
+                                message.getMessage_text(), message.getTime_posted_epoch()));
+                    }
+                }
+                connection.commit();
+                reindexText(connection, insertedMessages.get(0).getMessage_id(),
+                        insertedMessages.get(insertedMessages.size() - 1).getMessage_id());
+                return insertedMessages;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
     /**
      * Delete the message identified by the message ID.
      *
      * @param messageId a message ID.
      */
+    @Override
     public void deleteMessage(int messageId) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "DELETE FROM message WHERE message_id = ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-
+        String sql = "DELETE FROM message WHERE message_id = ?";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
             preparedStatement.setInt(1, messageId);
 
             preparedStatement.executeUpdate();
+            reindexText(connection, messageId, messageId);
         } catch (SQLException e) {
             System.out.println(e.getMessage());
         }
@@ -121,47 +193,321 @@ public class MessageDAO {
      * @param messageId   a message ID.
      * @param updatedText the updated message text.
      */
+    @Override
     public void updateMessageText(int messageId, String updatedText) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "UPDATE message SET message_text = ? WHERE message_id = ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        String sql = "UPDATE message SET message_text = ? WHERE message_id = ?";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            preparedStatement.setString(1, updatedText);
+            preparedStatement.setInt(2, messageId);
+
+            if (preparedStatement.executeUpdate() > 0) {
+                reindexText(connection, messageId, messageId);
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
 
+    /**
+     * Update the message text identified by the message ID and return the updated
+     * row, in a single statement.
+     *
+     * @param messageId   a message ID.
+     * @param updatedText the updated message text.
+     * @return the message as it is after the update, or null if no message has that ID.
+     */
+    @Override
+    public Message updateMessageTextAndReturn(int messageId, String updatedText) {
+        String sql = "SELECT * FROM FINAL TABLE (UPDATE message SET message_text = ? WHERE message_id = ?)";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
             preparedStatement.setString(1, updatedText);
             preparedStatement.setInt(2, messageId);
 
-            preparedStatement.executeUpdate();
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                if (rs.next()) {
+                    Message updated = new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                            rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+                    reindexText(connection, messageId, messageId);
+                    return updated;
+                }
+            }
         } catch (SQLException e) {
             System.out.println(e.getMessage());
         }
+        return null;
     }
 
     /**
-     * Retrieve all messages written by a particular user.
+     * Delete the message identified by the message ID and return the deleted row,
+     * in a single statement.
      *
-     * @param accountId the ID of the user account.
-     * @return a list of messages written by the user, or an empty list if no
-     *         messages found.
+     * @param messageId a message ID.
+     * @return the message as it was before it was deleted, or null if no message has that ID.
      */
-    public List<Message> getMessagesByAccountId(int accountId) {
-        Connection connection = ConnectionUtil.getConnection();
-        List<Message> messages = new ArrayList<>();
+    @Override
+    public Message deleteMessageAndReturn(int messageId) {
+        String sql = "SELECT * FROM OLD TABLE (DELETE FROM message WHERE message_id = ?)";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            preparedStatement.setInt(1, messageId);
+
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                if (rs.next()) {
+                    reindexText(connection, messageId, messageId);
+                    return new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                            rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
 
-        try {
-            String sql = "SELECT * FROM message WHERE posted_by = ?";
+    /**
+     * Retrieve one page of the messages written by a particular user, using keyset
+     * pagination on the message ID.
+     *
+     * @param accountId      the ID of the user account.
+     * @param afterMessageId only messages with a greater ID are returned; 0 starts from the beginning.
+     * @param limit          the maximum number of messages to return.
+     * @return up to limit messages, in ascending message ID order.
+     */
+    @Override
+    public List<Message> getMessagesByAccountIdAfter(int accountId, int afterMessageId, int limit) {
+        List<Message> messages = new ArrayList<>();
 
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        String sql = "SELECT * FROM message WHERE posted_by = ? AND message_id > ? ORDER BY message_id LIMIT ?";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
             preparedStatement.setInt(1, accountId);
+            preparedStatement.setInt(2, afterMessageId);
+            preparedStatement.setInt(3, limit);
 
-            ResultSet rs = preparedStatement.executeQuery();
-            while (rs.next()) {
-                Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
-                        rs.getString("message_text"), rs.getLong("time_posted_epoch"));
-                messages.add(message);
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                            rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+                    messages.add(message);
+                }
             }
         } catch (SQLException e) {
             System.out.println(e.getMessage());
         }
         return messages;
     }
-}
\ No newline at end of file
+
+    /**
+     * Retrieve the newest message IDs written by any of a set of users, for building home timelines.
+     *
+     * Each author is read separately off the (posted_by, message_id desc) index, which stops after limit rows; a
+     * single IN query would instead read every older message of every author and sort them all.
+     *
+     * @param authorIds       the IDs of the user accounts.
+     * @param beforeMessageId only messages with a smaller ID are returned.
+     * @param limit           the maximum number of IDs to return.
+     * @return up to limit message IDs, newest first.
+     */
+    @Override
+    public List<Integer> getMessageIdsByAuthors(int[] authorIds, int beforeMessageId, int limit) {
+        List<Integer> ids = new ArrayList<>();
+        if (authorIds.length == 0) {
+            return ids;
+        }
+
+        String sql = "SELECT message_id FROM message WHERE posted_by = ? AND message_id < ? "
+                + "ORDER BY posted_by, message_id DESC LIMIT ?";
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            for (int authorId : authorIds) {
+                preparedStatement.setInt(1, authorId);
+                preparedStatement.setInt(2, beforeMessageId);
+                preparedStatement.setInt(3, limit);
+
+                try (ResultSet rs = preparedStatement.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getInt("message_id"));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        ids.sort(Collections.reverseOrder());
+        return ids.size() > limit ? new ArrayList<>(ids.subList(0, limit)) : ids;
+    }
+
+    /**
+     * Stream every message to the given consumer, in ascending message ID order,
+     * without collecting them into a list.
+     *
+     * @param consumer receives each message as its row is read.
+     */
+    @Override
+    public void streamAllMessages(Consumer<Message> consumer) {
+        streamMessages("SELECT * FROM message ORDER BY message_id", consumer);
+    }
+
+    /**
+     * Stream every message written by a particular user to the given consumer, in
+     * ascending message ID order, without collecting them into a list.
+     *
+     * @param accountId the ID of the user account.
+     * @param consumer  receives each message as its row is read.
+     */
+    @Override
+    public void streamMessagesByAccountId(int accountId, Consumer<Message> consumer) {
+        streamMessages("SELECT * FROM message WHERE posted_by = ? ORDER BY message_id", consumer, accountId);
+    }
+
+    /**
+     * Stream the messages posted within a time range to the given consumer, oldest first.
+     *
+     * The range is read straight off the (time_posted_epoch, message_id) index, which already holds rows in this
+     * order, so the scan costs a seek plus one step per message returned and there is no sort. Messages posted at
+     * the same instant come out in message ID order.
+     *
+     * @param since    the earliest time_posted_epoch to include.
+     * @param until    the time_posted_epoch to stop before; exclusive.
+     * @param consumer receives each message as its row is read.
+     */
+    @Override
+    public void streamMessagesInTimeRange(long since, long until, Consumer<Message> consumer) {
+        streamMessages("SELECT * FROM message WHERE time_posted_epoch >= ? AND time_posted_epoch < ? "
+                + "ORDER BY time_posted_epoch, message_id", consumer, since, until);
+    }
+
+    /**
+     * Stream the messages a particular user posted within a time range to the given consumer, oldest first.
+     *
+     * Uses the (posted_by, time_posted_epoch, message_id) index the same way {@link #streamMessagesInTimeRange}
+     * uses the time index. The ORDER BY names every index column so H2 recognizes the index order and skips the
+     * sort.
+     *
+     * @param accountId the ID of the user account.
+     * @param since     the earliest time_posted_epoch to include.
+     * @param until     the time_posted_epoch to stop before; exclusive.
+     * @param consumer  receives each message as its row is read.
+     */
+    @Override
+    public void streamMessagesByAccountIdInTimeRange(int accountId, long since, long until,
+            Consumer<Message> consumer) {
+        streamMessages("SELECT * FROM message WHERE posted_by = ? AND time_posted_epoch >= ? "
+                + "AND time_posted_epoch < ? ORDER BY posted_by, time_posted_epoch, message_id",
+                consumer, accountId, since, until);
+    }
+
+    /**
+     * Full-text search over message_text.
+     *
+     * @param query  the words to look for; a message matches if it contains all of them, in any case.
+     * @param offset how many of the best matches to skip.
+     * @param limit  the most IDs to return.
+     * @return the IDs of the matching messages, best match first.
+     */
+    @Override
+    public List<Integer> searchMessageIds(String query, int offset, int limit) {
+        loadTextIndex();
+        return textIndex.search(query, offset, limit);
+    }
+
+    /**
+     * Bring the text index in line with the committed rows in a range of message IDs, after a write to them.
+     *
+     * The rows are read again under the index lock rather than taken from the write, so when writes to the same
+     * message race, whichever reindexes last reads the latest text, and the index never ends up holding an older
+     * version or a deleted message. If the read fails, the index is dropped and rebuilt by the next search.
+     *
+     * @param connection    the writer's connection, after its commit.
+     * @param fromMessageId the first message ID written.
+     * @param toMessageId   the last message ID written.
+     */
+    private void reindexText(Connection connection, int fromMessageId, int toMessageId) {
+        String sql = "SELECT message_id, message_text FROM message WHERE message_id BETWEEN ? AND ?";
+        synchronized (textIndex) {
+            if (!textIndexLoaded) {
+                return;
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                preparedStatement.setInt(1, fromMessageId);
+                preparedStatement.setInt(2, toMessageId);
+
+                Map<Integer, String> texts = new HashMap<>();
+                try (ResultSet rs = preparedStatement.executeQuery()) {
+                    while (rs.next()) {
+                        texts.put(rs.getInt("message_id"), rs.getString("message_text"));
+                    }
+                }
+                for (int messageId = fromMessageId; messageId <= toMessageId; messageId++) {
+                    if (texts.containsKey(messageId)) {
+                        textIndex.put(messageId, texts.get(messageId));
+                    } else {
+                        textIndex.remove(messageId);
+                    }
+                }
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+                textIndexLoaded = false;
+            }
+        }
+    }
+
+    /**
+     * Build the text index from the table the first time it is needed. Writes wait for the build, so none is lost
+     * between the table scan and the index going live.
+     */
+    private void loadTextIndex() {
+        if (textIndexLoaded) {
+            return;
+        }
+        synchronized (textIndex) {
+            if (textIndexLoaded) {
+                return;
+            }
+            textIndex.clear();
+            // Left unloaded if the scan fails, so the next search tries again
+            textIndexLoaded = streamMessages("SELECT * FROM message ORDER BY message_id",
+                    message -> textIndex.put(message.getMessage_id(), message.getMessage_text()));
+        }
+    }
+
+    /**
+     * Run a listing query with lazy execution turned on for the session, so H2 hands
+     * rows over as it finds them instead of materializing the whole result first.
+     *
+     * @param parameters values for the query's placeholders, in order.
+     * @return true if every row was read, false if the query failed.
+     */
+    private boolean streamMessages(String sql, Consumer<Message> consumer, Object... parameters) {
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            setLazyQueryExecution(connection, true);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                preparedStatement.setFetchSize(STREAM_FETCH_SIZE);
+                for (int i = 0; i < parameters.length; i++) {
+                    preparedStatement.setObject(i + 1, parameters[i]);
+                }
+
+                try (ResultSet rs = preparedStatement.executeQuery()) {
+                    while (rs.next()) {
+                        consumer.accept(new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                                rs.getString("message_text"), rs.getLong("time_posted_epoch")));
+                    }
+                }
+            } finally {
+                setLazyQueryExecution(connection, false);
+            }
+            return true;
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return false;
+    }
+
+    private void setLazyQueryExecution(Connection connection, boolean lazy) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET LAZY_QUERY_EXECUTION " + (lazy ? "TRUE" : "FALSE"));
+        }
+    }
+}
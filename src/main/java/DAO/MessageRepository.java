@@ -0,0 +1,141 @@
+package DAO;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import Model.Message;
+
+/**
+ * Storage for messages. Implementations are thread-safe and report failures by returning null, never by throwing.
+ * Every message returned is a fresh object the caller may keep or change.
+ */
+public interface MessageRepository {
+    /**
+     * Retrieve one page of messages using keyset pagination on the message ID.
+     *
+     * @param afterMessageId only messages with a greater ID are returned; 0 starts from the beginning.
+     * @param limit          the maximum number of messages to return.
+     * @return up to limit messages, in ascending message ID order.
+     */
+    List<Message> getMessagesAfter(int afterMessageId, int limit);
+
+    /**
+     * @param messageId a message ID.
+     * @return the message with that ID, or null if there is none.
+     */
+    Message getMessageById(int messageId);
+
+    /**
+     * Add a new message with a generated message ID.
+     *
+     * @param message the message, without a message ID; its author must exist.
+     * @return the new message with its message ID, or null if it could not be added.
+     */
+    Message insertMessage(Message message);
+
+    /**
+     * Add several messages, all or none.
+     *
+     * @param messages the messages to insert; they do not contain message IDs.
+     * @return the inserted messages with their generated message IDs, in the same order, or null if none were
+     *         inserted.
+     */
+    List<Message> insertMessages(List<Message> messages);
+
+    /**
+     * Delete a message; does nothing if there is none with that ID.
+     *
+     * @param messageId a message ID.
+     */
+    void deleteMessage(int messageId);
+
+    /**
+     * Replace the text of a message; does nothing if there is none with that ID.
+     *
+     * @param messageId   a message ID.
+     * @param updatedText the updated message text.
+     */
+    void updateMessageText(int messageId, String updatedText);
+
+    /**
+     * Replace the text of a message and return the result.
+     *
+     * @param messageId   a message ID.
+     * @param updatedText the updated message text.
+     * @return the message as it is after the update, or null if no message has that ID.
+     */
+    Message updateMessageTextAndReturn(int messageId, String updatedText);
+
+    /**
+     * Delete a message and return what was deleted.
+     *
+     * @param messageId a message ID.
+     * @return the message as it was before it was deleted, or null if no message has that ID.
+     */
+    Message deleteMessageAndReturn(int messageId);
+
+    /**
+     * Retrieve one page of the messages written by a particular user, using keyset pagination on the message ID.
+     *
+     * @param accountId      the ID of the user account.
+     * @param afterMessageId only messages with a greater ID are returned; 0 starts from the beginning.
+     * @param limit          the maximum number of messages to return.
+     * @return up to limit messages, in ascending message ID order.
+     */
+    List<Message> getMessagesByAccountIdAfter(int accountId, int afterMessageId, int limit);
+
+    /**
+     * Retrieve the newest message IDs written by any of a set of users, for building home timelines.
+     *
+     * @param authorIds       the IDs of the user accounts.
+     * @param beforeMessageId only messages with a smaller ID are returned.
+     * @param limit           the maximum number of IDs to return.
+     * @return up to limit message IDs, newest first.
+     */
+    List<Integer> getMessageIdsByAuthors(int[] authorIds, int beforeMessageId, int limit);
+
+    /**
+     * Hand every message to a consumer, in ascending message ID order, without collecting them into a list.
+     *
+     * @param consumer receives each message.
+     */
+    void streamAllMessages(Consumer<Message> consumer);
+
+    /**
+     * Hand every message written by a particular user to a consumer, in ascending message ID order.
+     *
+     * @param accountId the ID of the user account.
+     * @param consumer  receives each message.
+     */
+    void streamMessagesByAccountId(int accountId, Consumer<Message> consumer);
+
+    /**
+     * Hand the messages posted within a time range to a consumer, oldest first; messages posted at the same instant
+     * in message ID order.
+     *
+     * @param since    the earliest time_posted_epoch to include.
+     * @param until    the time_posted_epoch to stop before; exclusive.
+     * @param consumer receives each message.
+     */
+    void streamMessagesInTimeRange(long since, long until, Consumer<Message> consumer);
+
+    /**
+     * Hand the messages a particular user posted within a time range to a consumer, oldest first.
+     *
+     * @param accountId the ID of the user account.
+     * @param since     the earliest time_posted_epoch to include.
+     * @param until     the time_posted_epoch to stop before; exclusive.
+     * @param consumer  receives each message.
+     */
+    void streamMessagesByAccountIdInTimeRange(int accountId, long since, long until, Consumer<Message> consumer);
+
+    /**
+     * Full-text search over message_text.
+     *
+     * @param query  the words to look for; a message matches if it contains all of them, in any case.
+     * @param offset how many of the best matches to skip.
+     * @param limit  the most IDs to return.
+     * @return the IDs of the matching messages, best match first.
+     */
+    List<Integer> searchMessageIds(String query, int offset, int limit);
+}
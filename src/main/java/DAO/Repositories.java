@@ -0,0 +1,53 @@
+package DAO;
+
+import java.util.function.Supplier;
+
+/**
+ * One storage engine's repositories, to be shared by every service of an application instance.
+ */
+public class Repositories {
+    private final String engine;
+    private final AccountRepository accountRepository;
+    private final MessageRepository messageRepository;
+    private final FollowRepository followRepository;
+    private final Supplier<Object> stats;
+
+    /**
+     * @param engine            the name the engine is registered under.
+     * @param accountRepository the engine's accounts.
+     * @param messageRepository the engine's messages.
+     * @param followRepository  the engine's follow graph.
+     * @param stats             supplies the engine's own counters for the metrics endpoint, or null if it has none.
+     */
+    public Repositories(String engine, AccountRepository accountRepository, MessageRepository messageRepository,
+            FollowRepository followRepository, Supplier<Object> stats) {
+        this.engine = engine;
+        this.accountRepository = accountRepository;
+        this.messageRepository = messageRepository;
+        this.followRepository = followRepository;
+        this.stats = stats;
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public AccountRepository getAccountRepository() {
+        return accountRepository;
+    }
+
+    public MessageRepository getMessageRepository() {
+        return messageRepository;
+    }
+
+    public FollowRepository getFollowRepository() {
+        return followRepository;
+    }
+
+    /**
+     * @return the engine's counters, or null if it has none.
+     */
+    public Object getStats() {
+        return stats == null ? null : stats.get();
+    }
+}
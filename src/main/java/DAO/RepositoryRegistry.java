@@ -0,0 +1,84 @@
+package DAO;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The storage engines the application can run on, by name. The engine is chosen at startup with
+ * {@code -Dstore.engine=<name>}:
+ * <ul>
+ * <li>jdbc - the H2 database through the JDBC DAOs (the default)</li>
+ * <li>cached-jdbc - the same, with accounts by username cached in front ({@code store.cache.maxSize},
+ * {@code store.cache.ttlMillis}); messages by ID are cached by the message service on every engine</li>
+ * <li>memory - the {@link MemoryStore}</li>
+ * </ul>
+ * Further engines can be registered before the application starts, e.g. by benchmarks or tests.
+ */
+public class RepositoryRegistry {
+    public static final String JDBC = "jdbc";
+    public static final String CACHED_JDBC = "cached-jdbc";
+    public static final String MEMORY = "memory";
+
+    private static final Map<String, Supplier<Repositories>> engines = new LinkedHashMap<>();
+
+    static {
+        register(JDBC, () -> new Repositories(JDBC, new AccountDAO(), new MessageDAO(), new FollowDAO(), null));
+        register(CACHED_JDBC, RepositoryRegistry::cachedJdbc);
+        register(MEMORY, () -> MemoryStore.getInstance().getRepositories());
+    }
+
+    /**
+     * Make an engine available under a name, replacing any engine registered under it before.
+     *
+     * @param name    the engine's name.
+     * @param factory creates the engine's repositories; called once per application instance.
+     */
+    public static synchronized void register(String name, Supplier<Repositories> factory) {
+        engines.put(name, factory);
+    }
+
+    /**
+     * @return the names of the registered engines, in registration order.
+     */
+    public static synchronized List<String> getEngineNames() {
+        return new ArrayList<>(engines.keySet());
+    }
+
+    /**
+     * @param name a registered engine's name.
+     * @return new repositories of that engine.
+     * @throws IllegalArgumentException if no engine is registered under the name.
+     */
+    public static Repositories create(String name) {
+        Supplier<Repositories> factory;
+        synchronized (RepositoryRegistry.class) {
+            factory = engines.get(name);
+        }
+        if (factory == null) {
+            throw new IllegalArgumentException("unknown store.engine " + name + "; expected one of "
+                    + getEngineNames());
+        }
+        return factory.get();
+    }
+
+    /**
+     * @return new repositories of the engine named by {@code store.engine}, jdbc by default.
+     */
+    public static Repositories fromSystemProperties() {
+        return create(System.getProperty("store.engine", JDBC));
+    }
+
+    private static Repositories cachedJdbc() {
+        int maxSize = Integer.getInteger("store.cache.maxSize", 100_000);
+        long ttlMillis = Long.getLong("store.cache.ttlMillis", 60_000);
+        CachingAccountRepository accounts = new CachingAccountRepository(new AccountDAO(), maxSize, ttlMillis);
+        return new Repositories(CACHED_JDBC, accounts, new MessageDAO(), new FollowDAO(), () -> {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("accounts_by_username", accounts.getStats());
+            return stats;
+        });
+    }
+}
@@ -0,0 +1,93 @@
+package Model;
+
+/**
+ * This is a class that models the outcome of one item in a batch of new messages.
+ *
+ * Exactly one of message and error is set: message holds the created message, including its generated
+ * message_id, and error explains why the item was rejected.
+ */
+public class BatchItemResult {
+    /**
+     * The position of the item in the submitted batch, starting at 0.
+     */
+    public int index;
+    /**
+     * The created message, or null if the item was rejected.
+     */
+    public Message message;
+    /**
+     * Why the item was rejected, or null if it was created.
+     */
+    public String error;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public BatchItemResult() {
+
+    }
+    /**
+     * @param index   the position of the item in the batch
+     * @param message the created message, or null if the item was rejected
+     * @param error   why the item was rejected, or null if it was created
+     */
+    public BatchItemResult(int index, Message message, String error) {
+        this.index = index;
+        this.message = message;
+        this.error = error;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @return index
+     */
+    public int getIndex() {
+        return index;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @param index
+     */
+    public void setIndex(int index) {
+        this.index = index;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @return message
+     */
+    public Message getMessage() {
+        return message;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @param message
+     */
+    public void setMessage(Message message) {
+        this.message = message;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @return error
+     */
+    public String getError() {
+        return error;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @param error
+     */
+    public void setError(String error) {
+        this.error = error;
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "BatchItemResult{" +
+                "index=" + index +
+                ", message=" + message +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
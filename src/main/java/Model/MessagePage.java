@@ -0,0 +1,75 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is a class that models one page of a message listing.
+ *
+ * Pages are ordered by message_id. next_cursor is an opaque token to pass back as the "after" query parameter to
+ * fetch the following page; it is null on the last page.
+ */
+public class MessagePage {
+    /**
+     * The messages on this page, in ascending message_id order.
+     */
+    public List<Message> messages;
+    /**
+     * The cursor for the next page, or null if there are no more messages.
+     */
+    public String next_cursor;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public MessagePage() {
+        this.messages = new ArrayList<>();
+    }
+    /**
+     * @param messages    the messages on this page
+     * @param next_cursor the cursor for the next page, or null on the last page
+     */
+    public MessagePage(List<Message> messages, String next_cursor) {
+        this.messages = messages;
+        this.next_cursor = next_cursor;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @return messages
+     */
+    public List<Message> getMessages() {
+        return messages;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @param messages
+     */
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @return next_cursor
+     */
+    public String getNext_cursor() {
+        return next_cursor;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @param next_cursor
+     */
+    public void setNext_cursor(String next_cursor) {
+        this.next_cursor = next_cursor;
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "MessagePage{" +
+                "messages=" + messages +
+                ", next_cursor='" + next_cursor + '\'' +
+                '}';
+    }
+}
@@ -1,30 +1,82 @@
 package Service;
 
-import DAO.AccountDAO;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import DAO.AccountRepository;
 import Model.Account;
+import Util.HandlerExecutor;
+import Util.LruCache;
+import Util.PasswordHasher;
 
 public class AccountService {
-    private final AccountDAO accountDAO;
+    /**
+     * Hashing is deliberately slow and CPU-bound, so it runs on its own pool sized to the CPU count. During a login
+     * storm the excess is refused quickly instead of tying up every request thread.
+     */
+    private static final HandlerExecutor HASHING = new HandlerExecutor("password-hash",
+            Integer.getInteger("auth.hash.threads", Runtime.getRuntime().availableProcessors()),
+            Integer.getInteger("auth.hash.queueSize", 128));
+    /**
+     * Mixed into the cached credential digests, so they are useless outside this process.
+     */
+    private static final byte[] DIGEST_KEY = new byte[32];
+
+    static {
+        new SecureRandom().nextBytes(DIGEST_KEY);
+    }
+
+    private final AccountRepository accountDAO;
+    private final PasswordHasher passwordHasher;
+    /**
+     * Recently verified credentials, as a fast digest of the stored hash and the password, by username. A repeated
+     * login with the same password skips the slow hash; a changed password changes the stored hash and misses.
+     */
+    private final LruCache<String, byte[]> verifiedCredentials;
 
-    public AccountService() {
-        this.accountDAO = new AccountDAO();
+    /**
+     * @param accountDAO the DAO for accounts.
+     */
+    public AccountService(AccountRepository accountDAO) {
+        this(accountDAO, PasswordHasher.getDefault());
+    }
+
+    /**
+     * @param accountDAO     the DAO for accounts.
+     * @param passwordHasher hashes new passwords and checks stored ones.
+     */
+    public AccountService(AccountRepository accountDAO, PasswordHasher passwordHasher) {
+        this.accountDAO = accountDAO;
+        this.passwordHasher = passwordHasher;
+        this.verifiedCredentials = new LruCache<>(Integer.getInteger("auth.credentialCache.maxSize", 10_000),
+                Long.getLong("auth.credentialCache.ttlMillis", 60_000));
     }
 
     /**
      * Registers a new account with the given username and password.
      *
+     * Only a salted hash of the password is stored.
+     *
      * @param username the username for the account
      * @param password the password for the account
-     * @return the registered Account object if successful, or null if not
+     * @return the registered Account object, holding the password as submitted, if successful, or null if not
+     * @throws RejectedExecutionException if the password hashing pool is saturated
      */
     public Account registerAccount(String username, String password) {
         if (username.isBlank() || password.length() < 4 || (accountDAO.getAccountByUsername(username) != null)) {
             return null;
         }
 
-        Account registeredAccount = accountDAO.insertAccount(username, password);
+        String hash = onHashingPool(() -> passwordHasher.hash(password));
+        Account registeredAccount = accountDAO.insertAccount(username, hash);
         if (registeredAccount != null) {
-            return registeredAccount;
+            verifiedCredentials.put(username, credentialDigest(hash, password));
+            return new Account(registeredAccount.getAccount_id(), username, password);
         } else {
             return null;
         }
@@ -33,15 +85,81 @@ public class AccountService {
     /**
      * Performs the login process for the specified username and password.
      *
+     * A password stored in plaintext before hashing was introduced, or hashed at a lower cost than the current
+     * one, is rehashed once it has been verified.
+     *
      * @param username the username for the account
      * @param password the password for the account
-     * @return the Account object if login is successful, or null if not
+     * @return the Account object, holding the password as submitted, if login is successful, or null if not
+     * @throws RejectedExecutionException if the password hashing pool is saturated
      */
     public Account login(String username, String password) {
-        Account account = accountDAO.getAccountByUsernameAndPassword(username, password);
-        if (account != null) {
-            return account;
+        if (username == null || password == null) {
+            return null;
+        }
+        Account account = accountDAO.getAccountByUsername(username);
+        if (account == null || account.getPassword() == null) {
+            return null;
+        }
+        String stored = account.getPassword();
+        byte[] cached = verifiedCredentials.peek(username);
+        if (cached == null || !MessageDigest.isEqual(cached, credentialDigest(stored, password))) {
+            if (!onHashingPool(() -> passwordHasher.verify(password, stored))) {
+                return null;
+            }
+            String current = stored;
+            if (passwordHasher.needsRehash(stored)) {
+                String rehashed = onHashingPool(() -> passwordHasher.hash(password));
+                if (accountDAO.updatePassword(account.getAccount_id(), rehashed)) {
+                    current = rehashed;
+                }
+            }
+            verifiedCredentials.put(username, credentialDigest(current, password));
+        }
+        return new Account(account.getAccount_id(), account.getUsername(), password);
+    }
+
+    /**
+     * @return live statistics for the password hashing pool.
+     */
+    public HandlerExecutor.Stats getHashingStats() {
+        return HASHING.getStats();
+    }
+
+    /**
+     * @return live statistics for the verified-credential cache.
+     */
+    public LruCache.Stats getCredentialCacheStats() {
+        return verifiedCredentials.getStats();
+    }
+
+    /**
+     * Run a hashing task on the hashing pool and wait for it.
+     */
+    private static <T> T onHashingPool(Callable<T> task) {
+        try {
+            return HASHING.supply(task).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * A fast keyed digest of a stored password together with a submitted one.
+     */
+    private static byte[] credentialDigest(String stored, String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(DIGEST_KEY);
+            digest.update(stored.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(password.getBytes(StandardCharsets.UTF_8));
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
         }
-        return null;
     }
 }
@@ -0,0 +1,365 @@
+package Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import DAO.AccountRepository;
+import DAO.FollowRepository;
+import DAO.MessageRepository;
+import Model.Message;
+import Util.LruCache;
+import Util.Timeline;
+
+/**
+ * The follow graph and the home timelines built from it.
+ *
+ * An account's home timeline holds the messages of the accounts it follows and its own, newest first. Timelines
+ * are kept in memory as bounded lists of message IDs and filled on write: a new message's ID is pushed into the
+ * timeline of every follower that has one. An account with more than {@code feed.celebrityThreshold} followers
+ * is not pushed, since one message would touch too many timelines; its followers pull its newest messages off the
+ * (posted_by, message_id) index when they read and merge them in.
+ *
+ * Pushing reads nothing from the database. Each kept timeline registers with the accounts it takes pushes from, so
+ * a new message goes straight to the timelines registered with its author; followers without a kept timeline pick
+ * the message up when theirs is built. Whether the author is a celebrity is known from the splits below.
+ *
+ * A timeline is built from the database the first time its owner reads it, and thrown away whenever its owner
+ * follows or unfollows someone. At most {@code feed.maxTimelines} are kept; the least recently used go first and
+ * are rebuilt if read again. A page is read from the timeline in O(page size), plus one index seek per celebrity
+ * followed. Pages older than the timeline holds are read from the database.
+ *
+ * Which of an account's sources are pushed and which are pulled is worked out once and kept with its timeline. The
+ * split is worked out again after a follow or unfollow of the account's own, or once any account has gained or lost
+ * celebrity status since.
+ */
+public class FeedService {
+    private final FollowRepository followDAO;
+    private final MessageRepository messageDAO;
+    private final AccountRepository accountDAO;
+    private final int timelineSize;
+    private final int celebrityThreshold;
+    private final LruCache<Integer, Home> homes;
+    /**
+     * Bumped whenever an account gains or loses celebrity status, which makes every kept split out of date.
+     */
+    private final AtomicLong celebrityChanges = new AtomicLong();
+    /**
+     * For each pushed account, the accounts whose kept timeline takes its pushes by their current split. Accounts
+     * whose timeline has since been dropped are removed by the next push that finds it gone.
+     */
+    private final Map<Integer, Set<Integer>> pushTargets = new ConcurrentHashMap<>();
+    /**
+     * The accounts found to be celebrities the last time their followers were counted, for a split or a follow or
+     * unfollow of theirs.
+     */
+    private final Set<Integer> celebrities = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong pushes = new AtomicLong();
+    private final AtomicLong celebrityMessages = new AtomicLong();
+    private final AtomicLong timelineBuilds = new AtomicLong();
+    private final AtomicLong databaseReads = new AtomicLong();
+
+    /**
+     * @param followDAO  the DAO for the follow graph.
+     * @param messageDAO the DAO timelines are built from.
+     * @param accountDAO the DAO used to check that followed accounts exist.
+     */
+    public FeedService(FollowRepository followDAO, MessageRepository messageDAO, AccountRepository accountDAO) {
+        this.followDAO = followDAO;
+        this.messageDAO = messageDAO;
+        this.accountDAO = accountDAO;
+        this.timelineSize = Integer.getInteger("feed.timelineSize", 800);
+        this.celebrityThreshold = Integer.getInteger("feed.celebrityThreshold", 10_000);
+        this.homes = new LruCache<>(Integer.getInteger("feed.maxTimelines", 10_000), 0);
+    }
+
+    /**
+     * Make one account follow another.
+     *
+     * @param followerId the account that follows.
+     * @param followeeId the account to follow.
+     * @return true if the follow exists now, false if either account does not exist, they are the same account or
+     *         the follow could not be saved.
+     */
+    public boolean follow(int followerId, int followeeId) {
+        if (followerId == followeeId || !accountDAO.doesAccountExistAccountID(followerId)
+                || !accountDAO.doesAccountExistAccountID(followeeId)) {
+            return false;
+        }
+        boolean wasCelebrity = isCelebrity(followeeId);
+        if (!followDAO.insertFollow(followerId, followeeId)) {
+            return false;
+        }
+        // Rebuilt on the next read, with the new followee's messages in it
+        homes.invalidate(followerId);
+        if (!wasCelebrity && isCelebrity(followeeId)) {
+            // Its followers now pull its new messages; the ones already pushed stay in their timelines
+            celebrityChanges.incrementAndGet();
+        }
+        return true;
+    }
+
+    /**
+     * Make one account stop following another; does nothing if it was not following.
+     *
+     * @param followerId the account that follows.
+     * @param followeeId the account to unfollow.
+     * @return true if the follow no longer exists, false if it could not be removed.
+     */
+    public boolean unfollow(int followerId, int followeeId) {
+        boolean wasCelebrity = isCelebrity(followeeId);
+        if (!followDAO.deleteFollow(followerId, followeeId)) {
+            return false;
+        }
+        homes.invalidate(followerId);
+        unregister(followeeId, followerId);
+        if (wasCelebrity && !isCelebrity(followeeId)) {
+            // Its followers go back to being pushed to, but nothing it wrote as a celebrity is in their timelines
+            celebrityChanges.incrementAndGet();
+            for (int follower : followDAO.getFollowerIds(followeeId)) {
+                homes.invalidate(follower);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Push a new message into the kept timelines of its author and its author's followers, unless the author is a
+     * celebrity.
+     *
+     * @param message the message just created, with its message ID.
+     */
+    public void messageCreated(Message message) {
+        int author = message.getPosted_by();
+        if (celebrities.contains(author)) {
+            celebrityMessages.incrementAndGet();
+            return;
+        }
+        Set<Integer> targets = pushTargets.get(author);
+        if (targets == null) {
+            return;
+        }
+        for (Iterator<Integer> it = targets.iterator(); it.hasNext(); ) {
+            Home home = homes.peek(it.next());
+            if (home == null) {
+                it.remove();
+            } else {
+                home.timeline.add(message.getMessage_id());
+                pushes.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Read one page of an account's home timeline.
+     *
+     * @param accountId       the account whose timeline to read.
+     * @param beforeMessageId only messages with a smaller ID are returned; Integer.MAX_VALUE starts from the newest.
+     * @param limit           the most IDs to return.
+     * @return up to limit message IDs, newest first.
+     */
+    public List<Integer> getTimeline(int accountId, int beforeMessageId, int limit) {
+        Home home = homes.get(accountId, id -> new Home(timelineSize));
+        Sources sources = sources(accountId, home);
+        Timeline timeline = timeline(home.timeline, sources.pushed);
+        List<Integer> ids = timeline.before(beforeMessageId, limit);
+        if (ids.size() < limit && timeline.isTruncated()) {
+            // The page reaches past the oldest message the timeline holds
+            databaseReads.incrementAndGet();
+            ids = messageDAO.getMessageIdsByAuthors(sources.pushed, beforeMessageId, limit);
+        }
+
+        int[] pulled = sources.pulled;
+        if (pulled.length == 0) {
+            return ids;
+        }
+        TreeSet<Integer> merged = new TreeSet<>(Collections.reverseOrder());
+        merged.addAll(ids);
+        // A celebrity's older messages may also be in the timeline from before it became one
+        merged.addAll(messageDAO.getMessageIdsByAuthors(pulled, beforeMessageId, limit));
+        List<Integer> page = new ArrayList<>(limit);
+        for (Integer id : merged) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(id);
+        }
+        return page;
+    }
+
+    /**
+     * @return a point-in-time snapshot of the follow graph and timeline counters.
+     */
+    public Stats getStats() {
+        return new Stats(followDAO.countFollows(), homes.getStats().getSize(), pushes.get(), celebrityMessages.get(),
+                timelineBuilds.get(), databaseReads.get());
+    }
+
+    private Timeline timeline(Timeline timeline, int[] pushedSources) {
+        // Pushes to this timeline wait while it loads, then merge with what was loaded
+        synchronized (timeline) {
+            if (!timeline.isLoaded()) {
+                timelineBuilds.incrementAndGet();
+                List<Integer> ids = messageDAO.getMessageIdsByAuthors(pushedSources, Integer.MAX_VALUE, timelineSize);
+                timeline.load(ids, ids.size() < timelineSize);
+            }
+        }
+        return timeline;
+    }
+
+    private boolean isCelebrity(int accountId) {
+        boolean celebrity = followDAO.countFollowers(accountId) > celebrityThreshold;
+        if (celebrity) {
+            celebrities.add(accountId);
+        } else {
+            celebrities.remove(accountId);
+        }
+        return celebrity;
+    }
+
+    /**
+     * @return the account's split of its sources, worked out again if no longer current.
+     */
+    private Sources sources(int accountId, Home home) {
+        // Read first, so a change while the split is worked out leaves it out of date rather than wrongly current
+        long changes = celebrityChanges.get();
+        Sources sources = home.sources;
+        if (sources == null || sources.celebrityChanges != changes) {
+            sources = split(accountId, changes);
+            // Registered before the timeline loads, so a message either is in the load or is pushed afterwards
+            for (int source : sources.pushed) {
+                pushTargets.computeIfAbsent(source, id -> ConcurrentHashMap.newKeySet()).add(accountId);
+            }
+            for (int source : sources.pulled) {
+                unregister(source, accountId);
+            }
+            home.sources = sources;
+        }
+        return sources;
+    }
+
+    private void unregister(int source, int accountId) {
+        Set<Integer> targets = pushTargets.get(source);
+        if (targets != null) {
+            targets.remove(accountId);
+        }
+    }
+
+    private Sources split(int accountId, long changes) {
+        int[] followees = followDAO.getFolloweeIds(accountId);
+        int[] pushed = new int[followees.length + 1];
+        int[] pulled = new int[followees.length + 1];
+        int pushedCount = 0;
+        int pulledCount = 0;
+        if (isCelebrity(accountId)) {
+            pulled[pulledCount++] = accountId;
+        } else {
+            pushed[pushedCount++] = accountId;
+        }
+        for (int followee : followees) {
+            if (isCelebrity(followee)) {
+                pulled[pulledCount++] = followee;
+            } else {
+                pushed[pushedCount++] = followee;
+            }
+        }
+        return new Sources(Arrays.copyOf(pushed, pushedCount), Arrays.copyOf(pulled, pulledCount), changes);
+    }
+
+    /**
+     * One account's timeline and the split of its sources it was built from.
+     */
+    private static class Home {
+        private final Timeline timeline;
+        private volatile Sources sources;
+
+        private Home(int timelineSize) {
+            this.timeline = new Timeline(timelineSize);
+        }
+    }
+
+    /**
+     * The account itself and the accounts it follows, split into those pushed to their followers and those whose
+     * messages are pulled when read.
+     */
+    private static class Sources {
+        private final int[] pushed;
+        private final int[] pulled;
+        private final long celebrityChanges;
+
+        private Sources(int[] pushed, int[] pulled, long celebrityChanges) {
+            this.pushed = pushed;
+            this.pulled = pulled;
+            this.celebrityChanges = celebrityChanges;
+        }
+    }
+
+    public static class Stats {
+        private final int follows;
+        private final int timelines;
+        private final long pushes;
+        private final long celebrityMessages;
+        private final long timelineBuilds;
+        private final long databaseReads;
+
+        public Stats(int follows, int timelines, long pushes, long celebrityMessages, long timelineBuilds,
+                long databaseReads) {
+            this.follows = follows;
+            this.timelines = timelines;
+            this.pushes = pushes;
+            this.celebrityMessages = celebrityMessages;
+            this.timelineBuilds = timelineBuilds;
+            this.databaseReads = databaseReads;
+        }
+
+        /**
+         * @return the number of follows recorded.
+         */
+        public int getFollows() {
+            return follows;
+        }
+
+        /**
+         * @return the number of home timelines held in memory.
+         */
+        public int getTimelines() {
+            return timelines;
+        }
+
+        /**
+         * @return how many message IDs were pushed into timelines.
+         */
+        public long getPushes() {
+            return pushes;
+        }
+
+        /**
+         * @return how many messages were written by celebrities and so not pushed.
+         */
+        public long getCelebrityMessages() {
+            return celebrityMessages;
+        }
+
+        /**
+         * @return how many timelines were built from the database.
+         */
+        public long getTimelineBuilds() {
+            return timelineBuilds;
+        }
+
+        /**
+         * @return how many pages reached past their timeline and were read from the database.
+         */
+        public long getDatabaseReads() {
+            return databaseReads;
+        }
+    }
+}
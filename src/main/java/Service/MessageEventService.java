@@ -0,0 +1,369 @@
+package Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import Model.Message;
+import Util.RingBuffer;
+
+/**
+ * Publishes message changes to live subscribers, such as the Server-Sent Events stream.
+ *
+ * Every event gets the next ID in one sequence and is kept in a replay ring of the latest
+ * {@code events.replaySize} events, so a subscriber that reconnects with the last ID it saw picks up where it left
+ * off. Each subscriber has its own bounded buffer, and publishing only ever adds to those buffers without waiting,
+ * so a slow subscriber cannot hold up a writer. When a subscriber's buffer is full, its overflow policy decides:
+ * DROP discards the oldest buffered event and counts it, DISCONNECT closes the subscription so the client
+ * reconnects and resumes from the replay ring.
+ *
+ * Only numbering an event and storing it in the replay ring happen under the publishing lock. The event is then
+ * queued, and whichever publisher finds no other thread delivering hands the queue out in order, to the
+ * subscriptions for the message's author and those for all accounts; other publishers return at once.
+ */
+public class MessageEventService {
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String DELETED = "deleted";
+
+    public enum Overflow {
+        DROP, DISCONNECT
+    }
+
+    private final int bufferSize;
+    private final MessageEvent[] replay;
+    private long lastEventId = 0;
+    private final Queue<MessageEvent> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean delivering = new AtomicBoolean();
+    private final List<Subscription> allAccounts = new CopyOnWriteArrayList<>();
+    private final Map<Integer, List<Subscription>> byAccount = new ConcurrentHashMap<>();
+    private final List<Consumer<MessageEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong disconnected = new AtomicLong();
+
+    public MessageEventService() {
+        this(Integer.getInteger("events.replaySize", 4096), Integer.getInteger("events.bufferSize", 256));
+    }
+
+    /**
+     * @param replaySize how many of the latest events are kept for resuming subscribers.
+     * @param bufferSize how many events each subscriber may fall behind before its overflow policy applies.
+     */
+    public MessageEventService(int replaySize, int bufferSize) {
+        if (replaySize < 1 || bufferSize < 1) {
+            throw new IllegalArgumentException("replaySize and bufferSize must be positive");
+        }
+        this.replay = new MessageEvent[replaySize];
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Record a change and hand it to every matching subscriber, here or on whichever publishing thread is already
+     * handing out events.
+     *
+     * @param type    {@link #CREATED}, {@link #UPDATED} or {@link #DELETED}.
+     * @param message the message as it is after the change; for a deletion, as it was.
+     */
+    public void publish(String type, Message message) {
+        synchronized (this) {
+            MessageEvent event = new MessageEvent(++lastEventId, type, message);
+            replay[(int) (event.getId() % replay.length)] = event;
+            // Queued under the lock, so the queue is in ID order
+            pending.add(event);
+        }
+        deliverPending();
+    }
+
+    /**
+     * Have every published event handed to a callback, in publishing order. The callback runs on a publishing
+     * thread while later events wait, so it must queue the event rather than do any I/O.
+     *
+     * @param listener receives each event.
+     */
+    public void addListener(Consumer<MessageEvent> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<MessageEvent> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Start receiving events.
+     *
+     * Events after lastEventId that are still in the replay ring are queued first. Replay and registration happen
+     * under the publishing lock, so nothing published in between is missed or repeated.
+     *
+     * @param accountId   only events for messages posted by this account, or null for all.
+     * @param lastEventId the last event the subscriber saw, or null to start with the next new event.
+     * @param overflow    what to do when the subscriber falls too far behind.
+     * @return the subscription; close it with {@link #unsubscribe}.
+     */
+    public synchronized Subscription subscribe(Integer accountId, Long lastEventId, Overflow overflow) {
+        long oldest = Math.max(1, this.lastEventId - replay.length + 1);
+        // Too old to replay, or from before a restart; the subscriber has to reload
+        boolean reset = lastEventId != null && (lastEventId < oldest - 1 || lastEventId > this.lastEventId);
+        long backlog = lastEventId == null || reset ? 0 : this.lastEventId - lastEventId;
+        // Room for the whole backlog on top of the usual buffer, so a replay can never overflow on its own
+        Subscription subscription = new Subscription(accountId, overflow, bufferSize + (int) backlog, reset,
+                this.lastEventId - backlog, this.lastEventId);
+        for (long id = this.lastEventId - backlog + 1; id <= this.lastEventId; id++) {
+            MessageEvent event = replay[(int) (id % replay.length)];
+            if (accountId == null || accountId == event.getMessage().getPosted_by()) {
+                deliver(subscription, event);
+            }
+        }
+        if (!subscription.buffer.isClosed()) {
+            if (accountId == null) {
+                allAccounts.add(subscription);
+            } else {
+                byAccount.compute(accountId, (id, subscriptions) -> {
+                    List<Subscription> list = subscriptions == null ? new CopyOnWriteArrayList<>() : subscriptions;
+                    list.add(subscription);
+                    return list;
+                });
+            }
+            subscribers.incrementAndGet();
+        }
+        return subscription;
+    }
+
+    public void unsubscribe(Subscription subscription) {
+        remove(subscription);
+        subscription.buffer.close();
+    }
+
+    /**
+     * Close every subscription, e.g. when the server stops.
+     */
+    public void unsubscribeAll() {
+        for (Subscription subscription : allAccounts) {
+            unsubscribe(subscription);
+        }
+        for (List<Subscription> subscriptions : byAccount.values()) {
+            for (Subscription subscription : subscriptions) {
+                unsubscribe(subscription);
+            }
+        }
+    }
+
+    /**
+     * @return a point-in-time snapshot of the event counters.
+     */
+    public Stats getStats() {
+        long lastEventId;
+        synchronized (this) {
+            lastEventId = this.lastEventId;
+        }
+        return new Stats(subscribers.get(), lastEventId, dropped.get(), disconnected.get());
+    }
+
+    /**
+     * Hand out queued events until the queue is empty, unless another thread already is. The queue is checked again
+     * after letting go, since an event queued just before then was left for this thread.
+     */
+    private void deliverPending() {
+        while (!pending.isEmpty() && delivering.compareAndSet(false, true)) {
+            try {
+                MessageEvent event;
+                while ((event = pending.poll()) != null) {
+                    for (Subscription subscription : allAccounts) {
+                        deliverNew(subscription, event);
+                    }
+                    List<Subscription> subscriptions = byAccount.get(event.getMessage().getPosted_by());
+                    if (subscriptions != null) {
+                        for (Subscription subscription : subscriptions) {
+                            deliverNew(subscription, event);
+                        }
+                    }
+                    for (Consumer<MessageEvent> listener : listeners) {
+                        listener.accept(event);
+                    }
+                }
+            } finally {
+                delivering.set(false);
+            }
+        }
+    }
+
+    private void deliverNew(Subscription subscription, MessageEvent event) {
+        // Still queued when the subscription was made, and so already replayed to it
+        if (event.getId() > subscription.subscribedAt) {
+            deliver(subscription, event);
+        }
+    }
+
+    private void deliver(Subscription subscription, MessageEvent event) {
+        if (subscription.overflow == Overflow.DROP) {
+            if (subscription.buffer.push(event)) {
+                subscription.dropped.incrementAndGet();
+                dropped.incrementAndGet();
+            }
+        } else if (!subscription.buffer.offer(event) && !subscription.buffer.isClosed()) {
+            subscription.buffer.close();
+            remove(subscription);
+            disconnected.incrementAndGet();
+        }
+    }
+
+    private void remove(Subscription subscription) {
+        if (subscription.accountId == null) {
+            if (allAccounts.remove(subscription)) {
+                subscribers.decrementAndGet();
+            }
+            return;
+        }
+        // An account's list goes once it is empty, so accounts nobody watches any more do not keep one
+        byAccount.computeIfPresent(subscription.accountId, (id, subscriptions) -> {
+            if (subscriptions.remove(subscription)) {
+                subscribers.decrementAndGet();
+            }
+            return subscriptions.isEmpty() ? null : subscriptions;
+        });
+    }
+
+    /**
+     * One change to one message.
+     */
+    public static class MessageEvent {
+        private final long id;
+        private final String type;
+        private final Message message;
+
+        public MessageEvent(long id, String type, Message message) {
+            this.id = id;
+            this.type = type;
+            this.message = message;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public Message getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * One subscriber's view of the event stream.
+     */
+    public class Subscription {
+        private final Integer accountId;
+        private final Overflow overflow;
+        private final RingBuffer<MessageEvent> buffer;
+        private final boolean reset;
+        private final long startedAfter;
+        private final long subscribedAt;
+        private final AtomicLong dropped = new AtomicLong();
+
+        private Subscription(Integer accountId, Overflow overflow, int bufferSize, boolean reset, long startedAfter,
+                long subscribedAt) {
+            this.accountId = accountId;
+            this.overflow = overflow;
+            this.buffer = new RingBuffer<>(bufferSize);
+            this.reset = reset;
+            this.startedAfter = startedAfter;
+            this.subscribedAt = subscribedAt;
+        }
+
+        /**
+         * Wait for the next event.
+         *
+         * @param timeoutMillis the most time to wait.
+         * @return the next event, or null if none arrived in time or the subscription is closed.
+         * @throws InterruptedException if the thread is interrupted while waiting.
+         */
+        public MessageEvent poll(long timeoutMillis) throws InterruptedException {
+            if (isClosed()) {
+                return null;
+            }
+            return buffer.poll(timeoutMillis);
+        }
+
+        /**
+         * @return true once the subscription has been closed, or disconnected for falling behind; buffered events
+         *         are then abandoned and the subscriber should resume from the last event it handled.
+         */
+        public boolean isClosed() {
+            return buffer.isClosed();
+        }
+
+        /**
+         * @return true if the subscriber asked to resume from an event that is no longer kept.
+         */
+        public boolean isReset() {
+            return reset;
+        }
+
+        /**
+         * @return the ID of the event the subscription starts after; after a reset, the ID to resume from once the
+         *         subscriber has reloaded.
+         */
+        public long getStartedAfter() {
+            return startedAfter;
+        }
+
+        /**
+         * @return how many events were dropped since the last call, under the DROP policy.
+         */
+        public long takeDropped() {
+            return dropped.getAndSet(0);
+        }
+    }
+
+    public static class Stats {
+        private final int subscribers;
+        private final long lastEventId;
+        private final long dropped;
+        private final long disconnected;
+
+        public Stats(int subscribers, long lastEventId, long dropped, long disconnected) {
+            this.subscribers = subscribers;
+            this.lastEventId = lastEventId;
+            this.dropped = dropped;
+            this.disconnected = disconnected;
+        }
+
+        /**
+         * @return the number of live subscriptions.
+         */
+        public int getSubscribers() {
+            return subscribers;
+        }
+
+        /**
+         * @return the ID of the latest event published.
+         */
+        public long getLastEventId() {
+            return lastEventId;
+        }
+
+        /**
+         * @return how many events were dropped for subscribers under the DROP policy.
+         */
+        public long getDropped() {
+            return dropped;
+        }
+
+        /**
+         * @return how many subscriptions were closed for falling behind.
+         */
+        public long getDisconnected() {
+            return disconnected;
+        }
+    }
+}
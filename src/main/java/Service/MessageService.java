@@ -1,16 +1,77 @@
 package Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.function.Consumer;
 
-import DAO.AccountDAO;
-import DAO.MessageDAO;
+import DAO.AccountRepository;
+import DAO.MessageRepository;
+import Model.BatchItemResult;
 import Model.Message;
+import Model.MessagePage;
+import Util.LruCache;
 
 public class MessageService {
-    private final MessageDAO messageDAO;
+    /**
+     * The largest page a client may ask for. Listings requested without paging parameters are capped at this size too.
+     */
+    public static final int MAX_PAGE_SIZE = Integer.getInteger("messages.maxPageSize", 1000);
+    /**
+     * The page size used when a client asks for a page without giving a limit.
+     */
+    public static final int DEFAULT_PAGE_SIZE = Math.min(100, MAX_PAGE_SIZE);
+
+    /**
+     * The most messages accepted in one batch.
+     */
+    public static final int MAX_BATCH_SIZE = Integer.getInteger("messages.maxBatchSize", 1000);
+
+    /**
+     * How far into the ranking a search can be paged. Skipped matches are still ranked, so a deeper page would cost
+     * as much as one page holding every match before it.
+     */
+    public static final int MAX_SEARCH_RESULTS = Integer.getInteger("messages.maxSearchResults", 10_000);
+
+    private static final String CURSOR_PREFIX = "m:";
+    private static final String SEARCH_CURSOR_PREFIX = "s:";
+    private static final String FEED_CURSOR_PREFIX = "f:";
+
+    private final MessageRepository messageDAO;
+    private final AccountRepository accountDAO;
+    private final FeedService feedService;
+    private final MessageEventService eventService;
+    /**
+     * Read-through cache of messages by ID. Missing IDs are cached as null; every write below updates it.
+     */
+    private final LruCache<Integer, Message> messageCache;
 
-    public MessageService() {
-        this.messageDAO = new MessageDAO();
+    /**
+     * @param messageDAO  the DAO for messages.
+     * @param accountDAO  the DAO used to check message authors.
+     * @param feedService the home timelines new messages are pushed into; share it with whoever serves the follow
+     *                    endpoints.
+     */
+    public MessageService(MessageRepository messageDAO, AccountRepository accountDAO, FeedService feedService) {
+        this(messageDAO, accountDAO, feedService, new MessageEventService());
+    }
+
+    /**
+     * @param messageDAO   the DAO for messages.
+     * @param accountDAO   the DAO used to check message authors.
+     * @param feedService  the home timelines new messages are pushed into.
+     * @param eventService where every created, updated and deleted message is published; share it with whoever
+     *                     serves the event stream.
+     */
+    public MessageService(MessageRepository messageDAO, AccountRepository accountDAO, FeedService feedService,
+            MessageEventService eventService) {
+        this.messageDAO = messageDAO;
+        this.accountDAO = accountDAO;
+        this.feedService = feedService;
+        this.eventService = eventService;
+        this.messageCache = new LruCache<>(Integer.getInteger("messages.cache.maxSize", 10_000),
+                Long.getLong("messages.cache.ttlMillis", 60_000));
     }
 
     /**
@@ -21,20 +82,206 @@ public class MessageService {
      *         successful.
      */
     public Message createMessage(Message message) {
-        AccountDAO accountDAO = new AccountDAO();
         if (isMessageValid(message.getMessage_text()) && accountDAO.doesAccountExistAccountID(message.getPosted_by())) {
-            return messageDAO.insertMessage(message);
+            Message createdMessage = messageDAO.insertMessage(message);
+            if (createdMessage != null) {
+                messageCache.put(createdMessage.getMessage_id(), createdMessage);
+                feedService.messageCreated(createdMessage);
+                eventService.publish(MessageEventService.CREATED, createdMessage);
+            }
+            return createdMessage;
         }
         return null;
     }
 
     /**
-     * Retrieve all messages from the database.
+     * Create a batch of messages. Every item is checked with the same rules as
+     * {@link #createMessage(Message)}; the valid ones are inserted together in one
+     * transaction.
      *
-     * @return a list of all messages.
+     * @param messages the messages to create, without message IDs.
+     * @return one result per submitted item, in order, holding either the created
+     *         message or the reason it was rejected.
+     * @throws IllegalArgumentException if the batch holds more than {@link #MAX_BATCH_SIZE} messages.
      */
-    public List<Message> getAllMessages() {
-        return messageDAO.getAllMessages();
+    public List<BatchItemResult> createMessages(List<Message> messages) {
+        if (messages.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("batch holds more than " + MAX_BATCH_SIZE + " messages");
+        }
+        List<BatchItemResult> results = new ArrayList<>(messages.size());
+        List<Message> accepted = new ArrayList<>();
+        List<BatchItemResult> acceptedResults = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            BatchItemResult result = new BatchItemResult(i, null, null);
+            if (message == null || !isMessageValid(message.getMessage_text())) {
+                result.setError("message_text must not be blank and must be under 255 characters");
+            } else if (!accountDAO.doesAccountExistAccountID(message.getPosted_by())) {
+                result.setError("posted_by does not refer to an existing account");
+            } else {
+                accepted.add(message);
+                acceptedResults.add(result);
+            }
+            results.add(result);
+        }
+
+        List<Message> createdMessages = messageDAO.insertMessages(accepted);
+        for (int i = 0; i < acceptedResults.size(); i++) {
+            if (createdMessages == null) {
+                acceptedResults.get(i).setError("the batch could not be saved");
+            } else {
+                Message createdMessage = createdMessages.get(i);
+                acceptedResults.get(i).setMessage(createdMessage);
+                messageCache.put(createdMessage.getMessage_id(), createdMessage);
+                feedService.messageCreated(createdMessage);
+                eventService.publish(MessageEventService.CREATED, createdMessage);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Retrieve one page of all messages, ordered by message ID.
+     *
+     * @param after a cursor returned with the previous page, or null for the first page.
+     * @param limit the requested page size, or null for the default; capped at {@link #MAX_PAGE_SIZE}.
+     * @return the requested page.
+     * @throws IllegalArgumentException if the cursor is malformed or the limit is not positive.
+     */
+    public MessagePage getMessagesPage(String after, Integer limit) {
+        int pageSize = resolvePageSize(limit);
+        List<Message> messages = messageDAO.getMessagesAfter(decodeCursor(after), pageSize + 1);
+        return toPage(messages, pageSize);
+    }
+
+    /**
+     * Retrieve one page of the messages written by a particular user, ordered by message ID.
+     *
+     * @param accountId the ID of the user account.
+     * @param after     a cursor returned with the previous page, or null for the first page.
+     * @param limit     the requested page size, or null for the default; capped at {@link #MAX_PAGE_SIZE}.
+     * @return the requested page.
+     * @throws IllegalArgumentException if the cursor is malformed or the limit is not positive.
+     */
+    public MessagePage getMessagesPageByAccountId(int accountId, String after, Integer limit) {
+        int pageSize = resolvePageSize(limit);
+        List<Message> messages = messageDAO.getMessagesByAccountIdAfter(accountId, decodeCursor(after), pageSize + 1);
+        return toPage(messages, pageSize);
+    }
+
+    /**
+     * Search message texts for all the words of a query, best match first.
+     *
+     * Pages are positions in the ranking, so a message written between two requests can shift later pages by a
+     * place. Only the first {@link #MAX_SEARCH_RESULTS} matches are served.
+     *
+     * @param query the words to look for; case and punctuation are ignored.
+     * @param after the cursor returned with the previous page, or null for the first page.
+     * @param limit the page size, or null for the default.
+     * @return the page of matching messages, with a cursor if more follow.
+     * @throws IllegalArgumentException if the query has no words, or the limit or cursor is invalid or the cursor is
+     *                                  past the last match served.
+     */
+    public MessagePage searchMessages(String query, String after, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("query must not be blank");
+        }
+        int offset = decodeCursor(SEARCH_CURSOR_PREFIX, after);
+        if (offset >= MAX_SEARCH_RESULTS) {
+            throw new IllegalArgumentException("cursor is past the last search result served");
+        }
+        int pageSize = Math.min(resolvePageSize(limit), MAX_SEARCH_RESULTS - offset);
+        List<Integer> ids = messageDAO.searchMessageIds(query, offset, pageSize + 1);
+
+        List<Message> page = new ArrayList<>();
+        for (Integer id : ids.subList(0, Math.min(ids.size(), pageSize))) {
+            // Served from the message cache; a message deleted behind the DAO's back is simply left out
+            Message message = getMessageById(id);
+            if (message != null) {
+                page.add(message);
+            }
+        }
+        boolean more = ids.size() > pageSize && offset + pageSize < MAX_SEARCH_RESULTS;
+        String next = more ? encodeCursor(SEARCH_CURSOR_PREFIX, offset + pageSize) : null;
+        return new MessagePage(page, next);
+    }
+
+    /**
+     * Retrieve one page of an account's home timeline: its own messages and those of the accounts it follows,
+     * newest first.
+     *
+     * @param accountId the ID of the user account.
+     * @param after     a cursor returned with the previous page, or null for the first page.
+     * @param limit     the requested page size, or null for the default; capped at {@link #MAX_PAGE_SIZE}.
+     * @return the requested page.
+     * @throws IllegalArgumentException if the cursor is malformed or the limit is not positive.
+     */
+    public MessagePage getFeedPage(int accountId, String after, Integer limit) {
+        int pageSize = resolvePageSize(limit);
+        int before = after == null || after.isEmpty() ? Integer.MAX_VALUE : decodeCursor(FEED_CURSOR_PREFIX, after);
+        List<Integer> ids = feedService.getTimeline(accountId, before, pageSize + 1);
+
+        List<Message> page = new ArrayList<>();
+        for (Integer id : ids.subList(0, Math.min(ids.size(), pageSize))) {
+            // Served from the message cache; a message deleted since it was pushed is left out
+            Message message = getMessageById(id);
+            if (message != null) {
+                page.add(message);
+            }
+        }
+        String next = ids.size() > pageSize ? encodeCursor(FEED_CURSOR_PREFIX, ids.get(pageSize - 1)) : null;
+        return new MessagePage(page, next);
+    }
+
+    /**
+     * Stream every message, in message ID order, to the given consumer without
+     * holding the listing in memory.
+     *
+     * @param consumer receives each message as it is read.
+     */
+    public void streamAllMessages(Consumer<Message> consumer) {
+        messageDAO.streamAllMessages(consumer);
+    }
+
+    /**
+     * Stream every message written by a particular user, in message ID order, to
+     * the given consumer without holding the listing in memory.
+     *
+     * @param accountId the ID of the user account.
+     * @param consumer  receives each message as it is read.
+     */
+    public void streamMessagesByAccountId(int accountId, Consumer<Message> consumer) {
+        messageDAO.streamMessagesByAccountId(accountId, consumer);
+    }
+
+    /**
+     * Stream the messages posted within a time range, oldest first, to the given
+     * consumer without holding the listing in memory.
+     *
+     * @param since    the earliest time_posted_epoch to include.
+     * @param until    the time_posted_epoch to stop before; exclusive.
+     * @param consumer receives each message as it is read.
+     * @throws IllegalArgumentException if until comes before since.
+     */
+    public void streamMessagesInTimeRange(long since, long until, Consumer<Message> consumer) {
+        checkTimeRange(since, until);
+        messageDAO.streamMessagesInTimeRange(since, until, consumer);
+    }
+
+    /**
+     * Stream the messages a particular user posted within a time range, oldest
+     * first, to the given consumer without holding the listing in memory.
+     *
+     * @param accountId the ID of the user account.
+     * @param since     the earliest time_posted_epoch to include.
+     * @param until     the time_posted_epoch to stop before; exclusive.
+     * @param consumer  receives each message as it is read.
+     * @throws IllegalArgumentException if until comes before since.
+     */
+    public void streamMessagesByAccountIdInTimeRange(int accountId, long since, long until,
+            Consumer<Message> consumer) {
+        checkTimeRange(since, until);
+        messageDAO.streamMessagesByAccountIdInTimeRange(accountId, since, until, consumer);
     }
 
     /**
@@ -44,49 +291,54 @@ public class MessageService {
      * @return the message with the specified ID, or null if not found.
      */
     public Message getMessageById(int messageId) {
-        return messageDAO.getMessageById(messageId);
+        return messageCache.get(messageId, messageDAO::getMessageById);
     }
 
     /**
      * Delete a message by its ID.
      *
+     * The row is deleted and returned by a single statement, so there is no window
+     * between reading the message and deleting it.
+     *
      * @param messageId the ID of the message to delete.
-     * @return true if the deletion is successful, false otherwise.
+     * @return the deleted message, or null if there was no message with that ID.
      */
     public Message deleteMessage(int messageId) {
-        Message message = getMessageById(messageId);
-        if (message != null) {
-            messageDAO.deleteMessage(messageId);
-            return message;
+        Message deletedMessage = messageDAO.deleteMessageAndReturn(messageId);
+        messageCache.put(messageId, null);
+        if (deletedMessage != null) {
+            eventService.publish(MessageEventService.DELETED, deletedMessage);
         }
-        return null;
+        return deletedMessage;
     }
 
     /**
      * Update the text of a message.
      *
-     * @param messageId   the ID of the message to update.
-     * @param updatedText the updated message text.
+     * The text is validated first; the row is then updated and returned by a single
+     * statement.
+     *
+     * @param message    the updated message text.
+     * @param message_id the ID of the message to update.
      * @return the updated message, or null if the update is not successful.
      */
     public Message updateMessageText(String message, int message_id) {
-        Message existingmessage = getMessageById(message_id);
-        if ((existingmessage != null) && isMessageValid(message)) {
-            messageDAO.updateMessageText(message_id, message);
-            return messageDAO.getMessageById(message_id);
+        if (!isMessageValid(message)) {
+            return null;
         }
-        return null;
+        Message updatedMessage = messageDAO.updateMessageTextAndReturn(message_id, message);
+        messageCache.put(message_id, updatedMessage);
+        if (updatedMessage != null) {
+            eventService.publish(MessageEventService.UPDATED, updatedMessage);
+        }
+        return updatedMessage;
     }
 
     /**
-     * Retrieve all messages written by a particular user.
-     *
-     * @param accountId the ID of the user account.
-     * @return a list of messages written by the user, or an empty list if no
-     *         messages found.
+     * @return hit, miss, eviction and load latency statistics for the message cache.
      */
-    public List<Message> getMessagesByAccountId(int accountId) {
-        return messageDAO.getMessagesByAccountId(accountId);
+    public LruCache.Stats getMessageCacheStats() {
+        return messageCache.getStats();
     }
 
     /**
@@ -96,6 +348,61 @@ public class MessageService {
      * @return true if the message is valid, false otherwise.
      */
     private boolean isMessageValid(String message) {
-        return !message.isBlank() && message.length() < 255;
+        return message != null && !message.isBlank() && message.length() < 255;
+    }
+
+    private static void checkTimeRange(long since, long until) {
+        if (until < since) {
+            throw new IllegalArgumentException("until is before since");
+        }
+    }
+
+    private int resolvePageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Build a page from a query that fetched one row more than the page size, so we know whether another page follows.
+     */
+    private MessagePage toPage(List<Message> messages, int pageSize) {
+        if (messages.size() <= pageSize) {
+            return new MessagePage(messages, null);
+        }
+        List<Message> page = messages.subList(0, pageSize);
+        return new MessagePage(page, encodeCursor(page.get(pageSize - 1).getMessage_id()));
+    }
+
+    private static String encodeCursor(int messageId) {
+        return encodeCursor(CURSOR_PREFIX, messageId);
+    }
+
+    private static int decodeCursor(String cursor) {
+        return decodeCursor(CURSOR_PREFIX, cursor);
+    }
+
+    private static String encodeCursor(String prefix, int position) {
+        byte[] cursor = (prefix + position).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor);
+    }
+
+    private static int decodeCursor(String prefix, String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        if (!decoded.startsWith(prefix)) {
+            throw new IllegalArgumentException("malformed cursor");
+        }
+        int position = Integer.parseInt(decoded.substring(prefix.length()));
+        if (position < 0) {
+            throw new IllegalArgumentException("malformed cursor");
+        }
+        return position;
     }
 }
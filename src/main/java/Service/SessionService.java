@@ -0,0 +1,265 @@
+package Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Issues and checks the bearer tokens handed out at login.
+ *
+ * A token is self-contained: it carries the account ID, when it was issued, when it expires and a random session
+ * ID, followed by an HMAC-SHA256 signature of those fields. Checking a token therefore needs no database lookup, only
+ * a signature check and a map lookup for revocation. Revocation is kept in memory: the IDs of logged-out sessions
+ * are remembered until every token of the session would have expired anyway.
+ *
+ * Expiry is sliding: once half of a token's lifetime has passed, {@link #refresh} issues a replacement with the same
+ * session ID, so an active client never has to log in again while an idle one does. Logging out revokes the session,
+ * and with it every token issued since the login.
+ *
+ * The signing key comes from the auth.secret system property. Without it a random key is generated at startup, and
+ * tokens stop being valid when the server restarts.
+ */
+public class SessionService {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String VERSION = "v1";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final long ttlMillis;
+    private final SecureRandom random = new SecureRandom();
+    /**
+     * A Mac is not thread-safe and costly to look up, so every thread keeps its own.
+     */
+    private final ThreadLocal<Mac> macs;
+
+    /**
+     * IDs of revoked sessions, mapped to when the last of their tokens expires and the entry can be dropped.
+     */
+    private final Map<String, Long> revokedSessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextPurge = new AtomicLong();
+
+    private final AtomicLong issued = new AtomicLong();
+    private final AtomicLong verified = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public SessionService() {
+        this(secretFromSystemProperties(), Long.getLong("auth.tokenTtlMillis", 30 * 60_000));
+    }
+
+    /**
+     * @param secret    the HMAC signing key; at least 32 bytes.
+     * @param ttlMillis how long a token stays valid after it is issued.
+     */
+    public SessionService(byte[] secret, long ttlMillis) {
+        if (secret.length < 32) {
+            throw new IllegalArgumentException("the token signing key must be at least 32 bytes");
+        }
+        if (ttlMillis < 1) {
+            throw new IllegalArgumentException("ttlMillis must be positive");
+        }
+        this.key = new SecretKeySpec(secret.clone(), ALGORITHM);
+        this.ttlMillis = ttlMillis;
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(ALGORITHM + " is not available", e);
+            }
+        });
+    }
+
+    /**
+     * Start a new session for the account.
+     *
+     * @param accountId the account that logged in.
+     * @return the signed token.
+     */
+    public String issueToken(int accountId) {
+        byte[] sessionId = new byte[12];
+        random.nextBytes(sessionId);
+        return issueToken(accountId, ENCODER.encodeToString(sessionId));
+    }
+
+    private String issueToken(int accountId, String sessionId) {
+        long now = System.currentTimeMillis();
+        String fields = VERSION + ":" + accountId + ":" + now + ":" + (now + ttlMillis) + ":" + sessionId;
+        byte[] payload = fields.getBytes(StandardCharsets.UTF_8);
+        issued.incrementAndGet();
+        return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload));
+    }
+
+    /**
+     * Check a token's signature, expiry and revocation.
+     *
+     * @param token the token presented by the client.
+     * @return the session the token stands for, or null if the token is not valid.
+     */
+    public Session verify(String token) {
+        Session session = parse(token);
+        long now = System.currentTimeMillis();
+        if (session == null
+                || session.expiresAt <= now
+                || revokedSessions.containsKey(session.sessionId)) {
+            rejected.incrementAndGet();
+            return null;
+        }
+        verified.incrementAndGet();
+        return session;
+    }
+
+    /**
+     * Replace a token once half of its lifetime has passed, which slides the expiry of an active session forward.
+     *
+     * @param session a verified session.
+     * @return a new token for the same account and session, or null if the current token is still fresh enough.
+     */
+    public String refresh(Session session) {
+        if (System.currentTimeMillis() < session.issuedAt + ttlMillis / 2) {
+            return null;
+        }
+        // The old token stays valid until it expires, so requests already in flight with it are not refused
+        return issueToken(session.accountId, session.sessionId);
+    }
+
+    /**
+     * Revoke a session, e.g. at logout: the token presented and every other token issued for it since the login.
+     *
+     * @param session a verified session.
+     */
+    public void revoke(Session session) {
+        // Every token of the session was issued by now, so none outlives this
+        revokedSessions.put(session.sessionId, System.currentTimeMillis() + ttlMillis);
+        purgeExpiredRevocations();
+    }
+
+    /**
+     * @return a point-in-time snapshot of the session counters.
+     */
+    public Stats getStats() {
+        return new Stats(issued.get(), verified.get(), rejected.get(), revokedSessions.size());
+    }
+
+    private Session parse(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        try {
+            byte[] payload = DECODER.decode(token.substring(0, dot));
+            byte[] signature = DECODER.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(sign(payload), signature)) {
+                return null;
+            }
+            String[] fields = new String(payload, StandardCharsets.UTF_8).split(":");
+            if (fields.length != 5 || !VERSION.equals(fields[0])) {
+                return null;
+            }
+            return new Session(Integer.parseInt(fields[1]), Long.parseLong(fields[2]), Long.parseLong(fields[3]),
+                    fields[4]);
+        } catch (IllegalArgumentException e) {
+            // Not base64, or a field that is not a number
+            return null;
+        }
+    }
+
+    private byte[] sign(byte[] payload) {
+        return macs.get().doFinal(payload);
+    }
+
+    /**
+     * Forget revoked sessions whose tokens have all expired by now; at most once per second, so revoking stays cheap.
+     */
+    private void purgeExpiredRevocations() {
+        long now = System.currentTimeMillis();
+        long due = nextPurge.get();
+        if (now >= due && nextPurge.compareAndSet(due, now + 1_000)) {
+            revokedSessions.values().removeIf(expiresAt -> expiresAt <= now);
+        }
+    }
+
+    private static byte[] secretFromSystemProperties() {
+        String secret = System.getProperty("auth.secret");
+        if (secret != null) {
+            return secret.getBytes(StandardCharsets.UTF_8);
+        }
+        byte[] generated = new byte[32];
+        new SecureRandom().nextBytes(generated);
+        return generated;
+    }
+
+    /**
+     * The identity carried by a valid token.
+     */
+    public static class Session {
+        private final int accountId;
+        private final long issuedAt;
+        private final long expiresAt;
+        private final String sessionId;
+
+        private Session(int accountId, long issuedAt, long expiresAt, String sessionId) {
+            this.accountId = accountId;
+            this.issuedAt = issuedAt;
+            this.expiresAt = expiresAt;
+            this.sessionId = sessionId;
+        }
+
+        public int getAccountId() {
+            return accountId;
+        }
+
+        public long getIssuedAt() {
+            return issuedAt;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+
+    /**
+     * A snapshot of the session counters, suitable for serializing as JSON.
+     */
+    public static class Stats {
+        private final long issued;
+        private final long verified;
+        private final long rejected;
+        private final int revoked;
+
+        private Stats(long issued, long verified, long rejected, int revoked) {
+            this.issued = issued;
+            this.verified = verified;
+            this.rejected = rejected;
+            this.revoked = revoked;
+        }
+
+        public long getIssued() {
+            return issued;
+        }
+
+        public long getVerified() {
+            return verified;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public int getRevoked() {
+            return revoked;
+        }
+    }
+}
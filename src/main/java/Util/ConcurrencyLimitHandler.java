@@ -0,0 +1,133 @@
+package Util;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+/**
+ * A Jetty handler that lets at most a fixed number of requests run through the wrapped handlers at once.
+ *
+ * Requests beyond the limit wait in arrival order for a free slot, and are answered with 503 Service Unavailable
+ * if none frees up within the admission timeout. A slot is held while the handler thread runs; a request that
+ * continues asynchronously after that gives its slot back, since its remaining work is bounded elsewhere.
+ */
+public class ConcurrencyLimitHandler extends HandlerWrapper {
+    private final int maxConcurrentRequests;
+    private final long admissionTimeoutMillis;
+    private final Semaphore permits;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final LatencyHistogram admissionLatency = new LatencyHistogram();
+
+    /**
+     * @param maxConcurrentRequests  the most requests allowed through at once.
+     * @param admissionTimeoutMillis how long a request may wait for a slot before it is rejected.
+     */
+    public ConcurrencyLimitHandler(int maxConcurrentRequests, long admissionTimeoutMillis) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.admissionTimeoutMillis = admissionTimeoutMillis;
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+    }
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+            throws IOException, ServletException {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(admissionTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        admissionLatency.recordNanos(System.nanoTime() - start);
+        if (!acquired) {
+            rejected.incrementAndGet();
+            baseRequest.setHandled(true);
+            response.setHeader("Retry-After", "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        admitted.incrementAndGet();
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            super.handle(target, baseRequest, request, response);
+        } finally {
+            inFlight.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    /**
+     * @return a point-in-time snapshot of the limiter's counters.
+     */
+    public Stats getStats() {
+        return new Stats(maxConcurrentRequests, inFlight.get(), peakInFlight.get(), permits.getQueueLength(),
+                admitted.get(), rejected.get(), admissionLatency.snapshot());
+    }
+
+    /**
+     * A snapshot of the limiter's state, suitable for serializing as JSON.
+     */
+    public static class Stats {
+        private final int maxConcurrentRequests;
+        private final int inFlight;
+        private final int peakInFlight;
+        private final int waiting;
+        private final long admitted;
+        private final long rejected;
+        private final LatencyHistogram admissionLatency;
+
+        private Stats(int maxConcurrentRequests, int inFlight, int peakInFlight, int waiting, long admitted,
+                long rejected, LatencyHistogram admissionLatency) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            this.inFlight = inFlight;
+            this.peakInFlight = peakInFlight;
+            this.waiting = waiting;
+            this.admitted = admitted;
+            this.rejected = rejected;
+            this.admissionLatency = admissionLatency;
+        }
+
+        public int getMaxConcurrentRequests() {
+            return maxConcurrentRequests;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        public int getPeakInFlight() {
+            return peakInFlight;
+        }
+
+        public int getWaiting() {
+            return waiting;
+        }
+
+        public long getAdmitted() {
+            return admitted;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public LatencyHistogram getAdmissionLatency() {
+            return admissionLatency;
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded JDBC connection pool.
+ *
+ * Callers borrow a connection with {@link #borrow()} and hand it back by calling {@link Connection#close()} on it,
+ * so DAOs can simply use try-with-resources. The pool never holds more than {@code maxSize} physical connections;
+ * when all of them are in use, callers wait up to the acquire timeout and then get a {@link SQLTimeoutException}.
+ *
+ * Each physical connection keeps its own {@link StatementCache}, so repeated SQL is only parsed and planned once
+ * per connection.
+ *
+ * A background housekeeper closes connections that have been idle too long, tops the pool back up to its
+ * minimum size, and reports connections that have been borrowed for longer than the leak detection threshold.
+ * Where they were borrowed is only reported with {@code db.pool.leakStackTraces}, as recording it costs a stack
+ * trace per borrow.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private final String url;
+    private final String username;
+    private final String password;
+    private final PoolConfig config;
+
+    /**
+     * Idle connections, most recently returned first so the warmest connections are reused.
+     */
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    /**
+     * One permit per connection that may be handed out; this is what bounds the pool.
+     */
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final AtomicLong acquireTimeouts = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong connectionsEvicted = new AtomicLong();
+    private final LatencyHistogram acquireLatency = new LatencyHistogram();
+    private final StatementCache.Counters statementCacheCounters = new StatementCache.Counters();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed = false;
+
+    public ConnectionPool(String url, String username, String password, PoolConfig config) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = config.getHousekeepingPeriodMillis();
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+        fillToMinimum();
+    }
+
+    /**
+     * Borrow a connection from the pool, waiting up to the configured acquire timeout.
+     *
+     * @return a connection that returns itself to the pool when closed.
+     * @throws SQLException if no connection became available in time or a new one could not be opened.
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("connection pool is closed");
+        }
+        long start = System.nanoTime();
+        waiters.incrementAndGet();
+        try {
+            if (!permits.tryAcquire(config.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                acquireTimeouts.incrementAndGet();
+                throw new SQLTimeoutException("timed out after " + config.getAcquireTimeoutMillis()
+                        + "ms waiting for a connection (active=" + borrowed.size() + ", max=" + config.getMaxSize() + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for a connection", e);
+        } finally {
+            waiters.decrementAndGet();
+        }
+
+        try {
+            PooledConnection pooled = takeIdleOrCreate();
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowedBy = config.isLeakStackTraces() ? new Throwable("connection borrowed here") : null;
+            pooled.leakReported = false;
+            Connection handle = pooled.newHandle();
+            borrowed.add(pooled);
+            acquireLatency.recordNanos(System.nanoTime() - start);
+            return handle;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return a point-in-time snapshot of the pool's counters.
+     */
+    public Stats getStats() {
+        return new Stats(this);
+    }
+
+    /**
+     * Take back every connection that is still borrowed, as if its borrower had closed it. Their handles fail from
+     * then on, and the physical connections are closed rather than pooled again, since their borrowers may have left
+     * statements open on them. Only for points where nothing may still be borrowed, such as between tests.
+     *
+     * @return how many connections were taken back.
+     */
+    public int reclaimBorrowed() {
+        int reclaimed = 0;
+        for (PooledConnection pooled : borrowed) {
+            if (pooled.handle.markReturned()) {
+                borrowed.remove(pooled);
+                discard(pooled);
+                permits.release();
+                reclaimed++;
+            }
+        }
+        return reclaimed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.poll()) != null) {
+            discard(pooled);
+        }
+    }
+
+    private PooledConnection takeIdleOrCreate() throws SQLException {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            validationFailures.incrementAndGet();
+            discard(pooled);
+        }
+        return open();
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.returnedAt < config.getValidationIntervalMillis()) {
+            return true;
+        }
+        try {
+            return pooled.physical.isValid(config.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        PooledConnection pooled = new PooledConnection(DriverManager.getConnection(url, username, password));
+        totalConnections.incrementAndGet();
+        return pooled;
+    }
+
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        pooled.statementCache.clear();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Return a borrowed connection. Connections left in a transaction are rolled back; broken ones are discarded.
+     */
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        try {
+            boolean healthy = !pooled.physical.isClosed();
+            if (healthy && !pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            if (healthy && !closed) {
+                pooled.returnedAt = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            } else {
+                discard(pooled);
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void housekeep() {
+        try {
+            evictIdle();
+            detectLeaks();
+            fillToMinimum();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - config.getIdleTimeoutMillis();
+        Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext() && totalConnections.get() > config.getMinSize()) {
+            PooledConnection pooled = oldestFirst.next();
+            if (pooled.returnedAt < cutoff && idle.remove(pooled)) {
+                connectionsEvicted.incrementAndGet();
+                discard(pooled);
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        long threshold = config.getLeakDetectionThresholdMillis();
+        if (threshold <= 0) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - threshold;
+        for (PooledConnection pooled : borrowed) {
+            if (!pooled.leakReported && pooled.borrowedAt < cutoff) {
+                pooled.leakReported = true;
+                leaksDetected.incrementAndGet();
+                System.err.println("Possible connection leak: connection borrowed for more than " + threshold + "ms"
+                        + (pooled.borrowedBy == null ? "; set db.pool.leakStackTraces=true to see where" : ""));
+                if (pooled.borrowedBy != null) {
+                    pooled.borrowedBy.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void fillToMinimum() {
+        while (!closed && totalConnections.get() < config.getMinSize()) {
+            try {
+                PooledConnection pooled = open();
+                pooled.returnedAt = System.currentTimeMillis();
+                idle.offerLast(pooled);
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool, plus the bookkeeping for its current borrower.
+     */
+    private class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statementCache;
+        private volatile long borrowedAt;
+        private volatile long returnedAt;
+        private volatile Throwable borrowedBy;
+        private volatile boolean leakReported;
+        private volatile Handle handle;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = new StatementCache(physical, config.getStatementCacheSize(), statementCacheCounters);
+        }
+
+        private Connection newHandle() {
+            handle = new Handle(this);
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, handle);
+        }
+    }
+
+    /**
+     * The connection handed to callers. Closing it returns the physical connection to the pool exactly once;
+     * any use after that fails the same way a closed JDBC connection would.
+     */
+    private class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private volatile boolean returned = false;
+
+        private Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        /**
+         * @return true for the first caller only, who then gives the connection back.
+         */
+        private synchronized boolean markReturned() {
+            if (returned) {
+                return false;
+            }
+            returned = true;
+            return true;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (markReturned()) {
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "prepareStatement":
+                    if (args.length <= 2 && !returned
+                            && (args.length == 1 || method.getParameterTypes()[1] == int.class)) {
+                        int autoGeneratedKeys = args.length == 1 ? Statement.NO_GENERATED_KEYS : (Integer) args[1];
+                        return pooled.statementCache.prepare((Connection) proxy, (String) args[0], autoGeneratedKeys);
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + pooled.physical + "]";
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("connection has already been returned to the pool");
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * A snapshot of the pool's state, suitable for serializing as JSON.
+     */
+    public static class Stats {
+        private final int total;
+        private final int active;
+        private final int idle;
+        private final int waiters;
+        private final int maxSize;
+        private final long acquireTimeouts;
+        private final long leaksDetected;
+        private final long validationFailures;
+        private final long connectionsEvicted;
+        private final long statementCacheHits;
+        private final long statementCacheMisses;
+        private final long statementCacheEvictions;
+        private final LatencyHistogram acquireLatency;
+
+        private Stats(ConnectionPool pool) {
+            this.total = pool.totalConnections.get();
+            this.active = pool.borrowed.size();
+            this.idle = pool.idle.size();
+            this.waiters = pool.waiters.get();
+            this.maxSize = pool.config.getMaxSize();
+            this.acquireTimeouts = pool.acquireTimeouts.get();
+            this.leaksDetected = pool.leaksDetected.get();
+            this.validationFailures = pool.validationFailures.get();
+            this.connectionsEvicted = pool.connectionsEvicted.get();
+            this.statementCacheHits = pool.statementCacheCounters.hits.get();
+            this.statementCacheMisses = pool.statementCacheCounters.misses.get();
+            this.statementCacheEvictions = pool.statementCacheCounters.evictions.get();
+            this.acquireLatency = pool.acquireLatency.snapshot();
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getWaiters() {
+            return waiters;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public long getAcquireTimeouts() {
+            return acquireTimeouts;
+        }
+
+        public long getLeaksDetected() {
+            return leaksDetected;
+        }
+
+        public long getValidationFailures() {
+            return validationFailures;
+        }
+
+        public long getConnectionsEvicted() {
+            return connectionsEvicted;
+        }
+
+        public long getStatementCacheHits() {
+            return statementCacheHits;
+        }
+
+        public long getStatementCacheMisses() {
+            return statementCacheMisses;
+        }
+
+        public long getStatementCacheEvictions() {
+            return statementCacheEvictions;
+        }
+
+        public double getStatementCacheHitRatio() {
+            long lookups = statementCacheHits + statementCacheMisses;
+            return lookups == 0 ? 0 : (double) statementCacheHits / lookups;
+        }
+
+        public LatencyHistogram getAcquireLatency() {
+            return acquireLatency;
+        }
+    }
+}
@@ -3,23 +3,32 @@ package Util;
 import org.h2.tools.RunScript;
 
 import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * The ConnectionUtil class will be utilized to create an active connection to our database. This class utilizes the singleton design pattern.
+ * The ConnectionUtil class will be utilized to hand out connections to our database. All connections come from a
+ * single, lazily created {@link ConnectionPool}, so concurrent requests each get their own JDBC session.
  * We will be utilizing an in-memory called h2database for the sql demos.
  *
- * DO NOT CHANGE ANYTHING IN THIS CLASS
+ * Connections must be closed by the caller (preferably with try-with-resources); closing a connection returns it
+ * to the pool.
  */
 public class ConnectionUtil {
 
     /**
-     * url will represent our connection string. Since this is an in-memory db, we will represent a file location to store the data
+     * url will represent our connection string. Since this is an in-memory db, we will represent a file location to store the data.
+     * It can be overridden with the db.url system property, e.g. to point benchmarks at a private in-memory database.
      */
-    private static String url = "jdbc:h2:./h2/db";
+    private static String url = System.getProperty("db.url", "jdbc:h2:./h2/db");
     /**
      * Default username for connecting to h2
      */
@@ -29,43 +38,102 @@ public class ConnectionUtil {
      */
     private static String password = "sa";
     /**
-     * a static object which represents the connection to h2. Because it is static, any DAO interacting
-     * with this connection object is referring to the same object.
+     * a static pool shared by every DAO. Because it is static, all DAOs draw from the same bounded set of connections.
+     * Volatile so that, once it is created, every borrow reads it without taking a lock.
      */
-    private static Connection connection = null;
+    private static volatile ConnectionPool pool = null;
     /**
-     * @return an active connection to the database and set up the database tables if this is the first time the
-     * Connection has been established
+     * Run after every reset, so stores that keep their own copy of the data can start over from the seed data.
      */
-    public static Connection getConnection(){
-        if(connection == null){
-            try {
-                connection = DriverManager.getConnection(url, username, password);
-                resetTestDatabase();
-            } catch (SQLException e) {
-                e.printStackTrace();
+    private static final List<Runnable> resetListeners = new CopyOnWriteArrayList<>();
+    private static volatile boolean reset = false;
+
+    /**
+     * @return an active connection borrowed from the pool, applying any pending schema migrations if this is the first
+     * time a connection has been requested. Close it to give it back.
+     * @throws SQLException if no connection could be obtained within the pool's acquire timeout
+     */
+    public static Connection getConnection() throws SQLException {
+        return getPool().borrow();
+    }
+
+    /**
+     * @return live statistics for the connection pool.
+     */
+    public static ConnectionPool.Stats getPoolStats() {
+        return getPool().getStats();
+    }
+
+    /**
+     * For the purpose of testing, we will need to drop and recreate our database tables to keep it consistent across
+     * all tests. The method drops every table, rebuilds the schema from the migrations and then loads the seed data
+     * in SocialMedia.sql. This will be performed before every test. The reset listeners run afterwards.
+     *
+     * Nothing should be borrowed across a reset, so any connection a test left open is taken back first; otherwise
+     * every such test would keep one of the pool's connections for good.
+     */
+    public static void resetTestDatabase() {
+        int reclaimed = getPool().reclaimBorrowed();
+        if (reclaimed > 0) {
+            System.err.println("Reclaimed " + reclaimed + " connection(s) left open before the test database reset");
+        }
+        try (Connection connection = getPool().borrow();
+                Reader seedReader = openResource("SocialMedia.sql")) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP ALL OBJECTS");
             }
+            MigrationRunner.migrate(connection);
+            RunScript.execute(connection, seedReader);
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+        }
+        reset = true;
+        for (Runnable listener : resetListeners) {
+            listener.run();
         }
+    }
 
-        return connection;
+    /**
+     * @param listener run after every {@link #resetTestDatabase()}, once the seed data is loaded. If the database
+     *                 has already been reset in this process, it also runs right away.
+     */
+    public static void addResetListener(Runnable listener) {
+        resetListeners.add(listener);
+        if (reset) {
+            listener.run();
+        }
     }
+
     /**
-     * For the purpose of testing, we will need to drop and recreate our database tables to keep it consistent across
-     * all tests. The method will read the sql file in resources. This will be performed before every test.
+     * Create the pool on first use and bring the schema up to date. Existing data is kept; only migrations that
+     * have not been applied yet are run.
      */
-    public static void resetTestDatabase(){
-//        if there is no connection, use the getConnection method to set it up
-        if(connection == null){
-            getConnection();
-        }else {
-//            otherwise, recreate the tables without setting up a new connection
-            try {
-                FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql");
-                RunScript.execute(connection, sqlReader);
-            } catch (SQLException | FileNotFoundException e) {
-                e.printStackTrace();
+    private static ConnectionPool getPool() {
+        ConnectionPool current = pool;
+        if (current != null) {
+            return current;
+        }
+        synchronized (ConnectionUtil.class) {
+            if (pool == null) {
+                ConnectionPool created = new ConnectionPool(url, username, password,
+                        PoolConfig.fromSystemProperties());
+                try (Connection connection = created.borrow()) {
+                    MigrationRunner.migrate(connection);
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+                pool = created;
             }
+            return pool;
+        }
+    }
+
+    private static Reader openResource(String name) throws FileNotFoundException {
+        InputStream in = ConnectionUtil.class.getClassLoader().getResourceAsStream(name);
+        if (in == null) {
+            throw new FileNotFoundException(name);
         }
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
     }
 
 }
@@ -0,0 +1,163 @@
+package Util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed-size thread pool with a bounded queue for request work that blocks on the database or burns CPU.
+ *
+ * Once every worker is busy and the queue is full, new work is refused immediately rather than queued without
+ * limit, so a burst is answered with fast rejections instead of ever-growing latency for everyone.
+ */
+public class HandlerExecutor {
+    /**
+     * A task that may throw, such as a Javalin handler.
+     */
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final AtomicLong rejected = new AtomicLong();
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+
+    /**
+     * @param threads       the number of worker threads.
+     * @param queueCapacity the most tasks waiting for a worker before new ones are refused.
+     */
+    public HandlerExecutor(int threads, int queueCapacity) {
+        this("handler", threads, queueCapacity);
+    }
+
+    /**
+     * @param name          the prefix of the worker thread names.
+     * @param threads       the number of worker threads.
+     * @param queueCapacity the most tasks waiting for a worker before new ones are refused.
+     */
+    public HandlerExecutor(String name, int threads, int queueCapacity) {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("invalid executor size: threads=" + threads + ", queue=" + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Run the task on a worker thread.
+     *
+     * @param task the work to run.
+     * @return a future completed when the task finishes, exceptionally if it throws.
+     * @throws RejectedExecutionException if every worker is busy and the queue is full.
+     */
+    public CompletableFuture<Void> submit(Task task) {
+        return supply(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Compute a value on a worker thread.
+     *
+     * @param task the computation to run.
+     * @return a future completed with the task's result, exceptionally if it throws.
+     * @throws RejectedExecutionException if every worker is busy and the queue is full.
+     */
+    public <T> CompletableFuture<T> supply(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long queuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                queueLatency.recordNanos(System.nanoTime() - queuedAt);
+                try {
+                    result.complete(task.call());
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+        return result;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return a point-in-time snapshot of the executor's counters.
+     */
+    public Stats getStats() {
+        return new Stats(executor.getMaximumPoolSize(), executor.getActiveCount(), executor.getQueue().size(),
+                queueCapacity, executor.getCompletedTaskCount(), rejected.get(), queueLatency.snapshot());
+    }
+
+    /**
+     * A snapshot of the executor's state, suitable for serializing as JSON.
+     */
+    public static class Stats {
+        private final int threads;
+        private final int active;
+        private final int queued;
+        private final int queueCapacity;
+        private final long completed;
+        private final long rejected;
+        private final LatencyHistogram queueLatency;
+
+        private Stats(int threads, int active, int queued, int queueCapacity, long completed, long rejected,
+                LatencyHistogram queueLatency) {
+            this.threads = threads;
+            this.active = active;
+            this.queued = queued;
+            this.queueCapacity = queueCapacity;
+            this.completed = completed;
+            this.rejected = rejected;
+            this.queueLatency = queueLatency;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public LatencyHistogram getQueueLatency() {
+            return queueLatency;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package Util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A {@link TextArena} in 1 MiB byte arrays on the heap. A chunk is only allocated once text is stored in it.
+ */
+public class HeapTextArena implements TextArena {
+    private static final int CHUNK_BITS = 20;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private volatile byte[][] chunks = new byte[0][];
+    private long end = 0;
+
+    @Override
+    public long append(byte[] source, int from, int length) {
+        if ((end & (CHUNK_SIZE - 1)) + length > CHUNK_SIZE) {
+            end = (end >>> CHUNK_BITS) + 1 << CHUNK_BITS;
+        }
+        int chunk = (int) (end >>> CHUNK_BITS);
+        if (chunk == chunks.length) {
+            byte[][] grown = Arrays.copyOf(chunks, chunk + 1);
+            grown[chunk] = new byte[CHUNK_SIZE];
+            chunks = grown;
+        }
+        System.arraycopy(source, from, chunks[chunk], (int) (end & (CHUNK_SIZE - 1)), length);
+        long offset = end;
+        end += length;
+        return offset;
+    }
+
+    @Override
+    public String read(long offset, int length) {
+        return new String(chunks[(int) (offset >>> CHUNK_BITS)], (int) (offset & (CHUNK_SIZE - 1)), length,
+                StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void copy(long offset, int length, byte[] target, int at) {
+        System.arraycopy(chunks[(int) (offset >>> CHUNK_BITS)], (int) (offset & (CHUNK_SIZE - 1)), target, at,
+                length);
+    }
+
+    @Override
+    public long size() {
+        return end;
+    }
+
+    @Override
+    public TextArena empty() {
+        return new HeapTextArena();
+    }
+
+    @Override
+    public void close() {
+        chunks = new byte[0][];
+    }
+}
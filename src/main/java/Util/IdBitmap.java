@@ -0,0 +1,64 @@
+package Util;
+
+import java.util.BitSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A thread-safe set of non-negative int IDs backed by a bitmap.
+ *
+ * Auto-increment IDs are dense, so one bit per possible ID is far smaller than a set of boxed Integers and a
+ * membership test is a single word lookup. Reads share a lock and only writes are exclusive.
+ */
+public class IdBitmap {
+    private final BitSet bits = new BitSet();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public boolean contains(int id) {
+        if (id < 0) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return bits.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void add(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("negative id: " + id);
+        }
+        lock.writeLock().lock();
+        try {
+            bits.set(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        if (id < 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            bits.clear(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of IDs in the set.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return bits.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
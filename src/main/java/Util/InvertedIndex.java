@@ -0,0 +1,280 @@
+package Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A thread-safe, in-memory full-text index from words to the IDs of the documents containing them.
+ *
+ * Text is split into lower-cased runs of letters and digits. Every word maps to a postings list: the IDs of the
+ * documents containing it, sorted ascending, with how often the word occurs in each. A query matches the documents
+ * that contain all of its words; the rarest word's postings are walked and the others are probed by binary search,
+ * so a selective query touches few entries however large the index grows. Matches are ranked with BM25, and ties
+ * go to the higher, i.e. newer, ID.
+ *
+ * Documents are added, replaced and removed one at a time, so the index can be kept in step with the table it
+ * covers. Appending a document with a higher ID than any indexed one, the common case, is amortized O(1) per word.
+ */
+public class InvertedIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    /**
+     * The distinct words and total word count of every indexed document, needed to remove or replace it.
+     */
+    private final Map<Integer, Document> documents = new HashMap<>();
+    private long totalLength = 0;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Index a document, replacing any earlier version with the same ID.
+     *
+     * @param id   the document ID.
+     * @param text the document's text.
+     */
+    public void put(int id, String text) {
+        Map<String, Integer> frequencies = termFrequencies(text);
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            int length = 0;
+            for (Map.Entry<String, Integer> term : frequencies.entrySet()) {
+                postings.computeIfAbsent(term.getKey(), t -> new Postings()).add(id, term.getValue());
+                length += term.getValue();
+            }
+            documents.put(id, new Document(frequencies.keySet().toArray(new String[0]), length));
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a document; does nothing if it is not indexed.
+     *
+     * @param id the document ID.
+     */
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of indexed documents.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the documents containing every word of the query, best match first.
+     *
+     * @param query  the words to look for.
+     * @param offset how many of the best matches to skip.
+     * @param limit  the most IDs to return.
+     * @return the matching document IDs, ranked; empty if the query has no words.
+     */
+    public List<Integer> search(String query, int offset, int limit) {
+        String[] terms = termFrequencies(query).keySet().toArray(new String[0]);
+        if (terms.length == 0 || limit <= 0) {
+            return Collections.emptyList();
+        }
+        int wanted = offset + limit;
+        // A min-heap of the best matches so far; its head is the weakest one to beat
+        Comparator<ScoredId> ranking = Comparator.comparingDouble((ScoredId s) -> s.score).thenComparingInt(s -> s.id);
+        PriorityQueue<ScoredId> best = new PriorityQueue<>(Math.min(wanted, 1024) + 1, ranking);
+
+        lock.readLock().lock();
+        try {
+            Postings[] lists = new Postings[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                lists[i] = postings.get(terms[i]);
+                if (lists[i] == null) {
+                    return Collections.emptyList();
+                }
+            }
+            Arrays.sort(lists, Comparator.comparingInt((Postings p) -> p.size));
+
+            double averageLength = documents.isEmpty() ? 1 : (double) totalLength / documents.size();
+            double[] idf = new double[lists.length];
+            for (int i = 0; i < lists.length; i++) {
+                idf[i] = Math.log(1 + (documents.size() - lists[i].size + 0.5) / (lists[i].size + 0.5));
+            }
+
+            Postings rarest = lists[0];
+            int[] cursors = new int[lists.length];
+            candidates:
+            for (int c = 0; c < rarest.size; c++) {
+                int id = rarest.ids[c];
+                double lengthNorm = K1 * (1 - B + B * documents.get(id).length / averageLength);
+                double score = idf[0] * bm25(rarest.frequencies[c], lengthNorm);
+                for (int i = 1; i < lists.length; i++) {
+                    // Candidates arrive in ascending order, so each list is only searched past its last hit
+                    int at = Arrays.binarySearch(lists[i].ids, cursors[i], lists[i].size, id);
+                    if (at < 0) {
+                        cursors[i] = -at - 1;
+                        continue candidates;
+                    }
+                    cursors[i] = at;
+                    score += idf[i] * bm25(lists[i].frequencies[at], lengthNorm);
+                }
+                ScoredId scored = new ScoredId(id, score);
+                if (best.size() < wanted) {
+                    best.add(scored);
+                } else if (ranking.compare(scored, best.peek()) > 0) {
+                    best.poll();
+                    best.add(scored);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<ScoredId> ranked = new ArrayList<>(best);
+        ranked.sort(ranking.reversed());
+        List<Integer> ids = new ArrayList<>();
+        for (int i = offset; i < ranked.size(); i++) {
+            ids.add(ranked.get(i).id);
+        }
+        return ids;
+    }
+
+    /**
+     * Split text into lower-cased words of letters and digits.
+     *
+     * @param text the text to split; may be null.
+     * @return the words in order of appearance, with repeats.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static Map<String, Integer> termFrequencies(String text) {
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        for (String token : tokenize(text)) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        return frequencies;
+    }
+
+    private static double bm25(int frequency, double lengthNorm) {
+        return frequency * (K1 + 1) / (frequency + lengthNorm);
+    }
+
+    private void removeLocked(int id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        for (String term : document.terms) {
+            Postings list = postings.get(term);
+            if (list != null && list.remove(id) && list.size == 0) {
+                postings.remove(term);
+            }
+        }
+        totalLength -= document.length;
+    }
+
+    /**
+     * The IDs of the documents containing one word, ascending, with the word's count in each.
+     */
+    private static final class Postings {
+        private int[] ids = new int[2];
+        private int[] frequencies = new int[2];
+        private int size = 0;
+
+        private void add(int id, int frequency) {
+            int at = size == 0 || ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0 && at < size) {
+                frequencies[at] = frequency;
+                return;
+            }
+            int insertAt = at < 0 ? -at - 1 : at;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+            System.arraycopy(frequencies, insertAt, frequencies, insertAt + 1, size - insertAt);
+            ids[insertAt] = id;
+            frequencies[insertAt] = frequency;
+            size++;
+        }
+
+        private boolean remove(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at < 0) {
+                return false;
+            }
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            System.arraycopy(frequencies, at + 1, frequencies, at, size - at - 1);
+            size--;
+            return true;
+        }
+    }
+
+    private static final class Document {
+        private final String[] terms;
+        private final int length;
+
+        private Document(String[] terms, int length) {
+            this.terms = terms;
+            this.length = length;
+        }
+    }
+
+    private static final class ScoredId {
+        private final int id;
+        private final double score;
+
+        private ScoredId(int id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+}
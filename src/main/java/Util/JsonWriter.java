@@ -0,0 +1,363 @@
+package Util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+import Model.Account;
+import Model.BatchItemResult;
+import Model.Message;
+import Model.MessagePage;
+
+/**
+ * Writes the models as UTF-8 JSON into a byte buffer that is kept and reused, without going through reflection or an
+ * intermediate String. The field names and punctuation around them are encoded once, up front, and text is escaped
+ * and encoded in a single pass over its characters.
+ *
+ * The output is byte for byte what Jackson's default ObjectMapper writes for the same objects as a String, encoded in
+ * UTF-8: fields in declaration order, nulls written out, quotes, backslashes and control characters escaped and
+ * everything else, including non-ASCII text, left as it is. A lone surrogate, which has no UTF-8 encoding, is written
+ * as '?'.
+ *
+ * A writer is not thread-safe; {@link #forThread()} hands each thread its own.
+ */
+public class JsonWriter {
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    /**
+     * Buffers grown beyond this by a large listing are dropped on reset, so an idle thread does not keep one.
+     */
+    private static final int RETAINED_CAPACITY = 1 << 17;
+
+    private static final ThreadLocal<JsonWriter> WRITERS = ThreadLocal.withInitial(JsonWriter::new);
+
+    private static final byte[] MESSAGE_ID = ascii("{\"message_id\":");
+    private static final byte[] POSTED_BY = ascii(",\"posted_by\":");
+    private static final byte[] MESSAGE_TEXT = ascii(",\"message_text\":");
+    private static final byte[] TIME_POSTED_EPOCH = ascii(",\"time_posted_epoch\":");
+    private static final byte[] ACCOUNT_ID = ascii("{\"account_id\":");
+    private static final byte[] USERNAME = ascii(",\"username\":");
+    private static final byte[] PASSWORD = ascii(",\"password\":");
+    private static final byte[] MESSAGES = ascii("{\"messages\":");
+    private static final byte[] NEXT_CURSOR = ascii(",\"next_cursor\":");
+    private static final byte[] INDEX = ascii("{\"index\":");
+    private static final byte[] MESSAGE = ascii(",\"message\":");
+    private static final byte[] ERROR = ascii(",\"error\":");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] INT_MIN_VALUE = ascii(Integer.toString(Integer.MIN_VALUE));
+    private static final byte[] LONG_MIN_VALUE = ascii(Long.toString(Long.MIN_VALUE));
+    private static final byte[] HEX_DIGITS = ascii("0123456789ABCDEF");
+
+    /**
+     * For each ASCII character, 0 if it is written as it is, otherwise the character after the backslash in its
+     * escape: a short escape where JSON has one, 'u' for \\u00XX.
+     */
+    private static final byte[] ESCAPES = new byte[128];
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = 'u';
+        }
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\t'] = 't';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\f'] = 'f';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+    }
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int count = 0;
+
+    /**
+     * @return the calling thread's writer, emptied.
+     */
+    public static JsonWriter forThread() {
+        JsonWriter writer = WRITERS.get();
+        writer.reset();
+        return writer;
+    }
+
+    /**
+     * @param value any object.
+     * @return whether {@link #write(Object)} can write it: a model, null, or a collection of those.
+     */
+    public static boolean canWrite(Object value) {
+        // The model checks first: they are cheaper than the check for an interface, and a listing runs them per element
+        if (value == null || value instanceof Message || value instanceof Account || value instanceof MessagePage
+                || value instanceof BatchItemResult) {
+            return true;
+        }
+        if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) {
+                if (!canWrite(element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param value an object {@link #canWrite(Object)} accepts.
+     * @return this writer.
+     */
+    public JsonWriter write(Object value) {
+        if (value instanceof Message) {
+            writeMessage((Message) value);
+        } else if (value instanceof Account) {
+            writeAccount((Account) value);
+        } else if (value instanceof MessagePage) {
+            writeMessagePage((MessagePage) value);
+        } else if (value instanceof BatchItemResult) {
+            writeBatchItemResult((BatchItemResult) value);
+        } else if (value instanceof Collection) {
+            writeByte('[');
+            boolean first = true;
+            for (Object element : (Collection<?>) value) {
+                if (!first) {
+                    writeByte(',');
+                }
+                write(element);
+                first = false;
+            }
+            writeByte(']');
+        } else if (value == null) {
+            writeBytes(NULL);
+        } else {
+            throw new IllegalArgumentException("cannot write a " + value.getClass().getName());
+        }
+        return this;
+    }
+
+    /**
+     * @param message the message to write.
+     * @return this writer.
+     */
+    public JsonWriter writeMessage(Message message) {
+        writeBytes(MESSAGE_ID);
+        writeInt(message.getMessage_id());
+        writeBytes(POSTED_BY);
+        writeInt(message.getPosted_by());
+        writeBytes(MESSAGE_TEXT);
+        writeString(message.getMessage_text());
+        writeBytes(TIME_POSTED_EPOCH);
+        writeLong(message.getTime_posted_epoch());
+        writeByte('}');
+        return this;
+    }
+
+    /**
+     * @param account the account to write.
+     * @return this writer.
+     */
+    public JsonWriter writeAccount(Account account) {
+        writeBytes(ACCOUNT_ID);
+        writeInt(account.getAccount_id());
+        writeBytes(USERNAME);
+        writeString(account.getUsername());
+        writeBytes(PASSWORD);
+        writeString(account.getPassword());
+        writeByte('}');
+        return this;
+    }
+
+    /**
+     * @param page the page to write.
+     * @return this writer.
+     */
+    public JsonWriter writeMessagePage(MessagePage page) {
+        writeBytes(MESSAGES);
+        write(page.getMessages());
+        writeBytes(NEXT_CURSOR);
+        writeString(page.getNext_cursor());
+        writeByte('}');
+        return this;
+    }
+
+    /**
+     * @param result the batch result to write.
+     * @return this writer.
+     */
+    public JsonWriter writeBatchItemResult(BatchItemResult result) {
+        writeBytes(INDEX);
+        writeInt(result.getIndex());
+        writeBytes(MESSAGE);
+        write(result.getMessage());
+        writeBytes(ERROR);
+        writeString(result.getError());
+        writeByte('}');
+        return this;
+    }
+
+    /**
+     * Write one byte of JSON as it is, such as the brackets and commas of an array written piece by piece.
+     *
+     * @param b an ASCII character.
+     * @return this writer.
+     */
+    public JsonWriter writeByte(char b) {
+        ensureCapacity(1);
+        buffer[count++] = (byte) b;
+        return this;
+    }
+
+    /**
+     * @return the number of bytes written since the last reset.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return a copy of the bytes written since the last reset.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, count);
+    }
+
+    /**
+     * Copy the bytes written since the last reset to a stream.
+     *
+     * @param out the stream to copy to.
+     * @throws IOException if the stream fails.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, count);
+    }
+
+    /**
+     * Empty the writer, keeping its buffer unless a large listing grew it.
+     */
+    public void reset() {
+        count = 0;
+        if (buffer.length > RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+    }
+
+    /**
+     * @return the bytes written since the last reset, decoded.
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, 0, count, StandardCharsets.UTF_8);
+    }
+
+    private void writeBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    private void writeLong(long value) {
+        if ((int) value == value) {
+            writeInt((int) value);
+            return;
+        }
+        if (value == Long.MIN_VALUE) {
+            writeBytes(LONG_MIN_VALUE);
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        int at = count + digits;
+        count = at;
+        do {
+            buffer[--at] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+    }
+
+    private void writeInt(int value) {
+        if (value == Integer.MIN_VALUE) {
+            writeBytes(INT_MIN_VALUE);
+            return;
+        }
+        ensureCapacity(11);
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (int bound = 10; digits < 10 && value >= bound; bound *= 10) {
+            digits++;
+        }
+        int at = count + digits;
+        count = at;
+        do {
+            buffer[--at] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+    }
+
+    private void writeString(String value) {
+        if (value == null) {
+            writeBytes(NULL);
+            return;
+        }
+        int length = value.length();
+        // The longest a character can get is six bytes, as \\u00XX
+        ensureCapacity(length * 6 + 2);
+        byte[] buffer = this.buffer;
+        int at = count;
+        buffer[at++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                byte escape = ESCAPES[c];
+                if (escape == 0) {
+                    buffer[at++] = (byte) c;
+                } else {
+                    buffer[at++] = '\\';
+                    buffer[at++] = escape;
+                    if (escape == 'u') {
+                        buffer[at++] = '0';
+                        buffer[at++] = '0';
+                        buffer[at++] = HEX_DIGITS[c >> 4];
+                        buffer[at++] = HEX_DIGITS[c & 0xF];
+                    }
+                }
+            } else if (c < 0x800) {
+                buffer[at++] = (byte) (0xC0 | c >> 6);
+                buffer[at++] = (byte) (0x80 | c & 0x3F);
+            } else if (!Character.isSurrogate(c)) {
+                buffer[at++] = (byte) (0xE0 | c >> 12);
+                buffer[at++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[at++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[at++] = (byte) (0xF0 | codePoint >> 18);
+                buffer[at++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                buffer[at++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                buffer[at++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                buffer[at++] = '?';
+            }
+        }
+        buffer[at++] = '"';
+        count = at;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (count + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + extra));
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
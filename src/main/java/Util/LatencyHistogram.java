@@ -0,0 +1,122 @@
+package Util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free latency histogram with power-of-two microsecond buckets.
+ *
+ * Recording is a couple of atomic increments, so it is cheap enough to sit on a hot path such as
+ * borrowing a connection. Percentiles are reported as the upper bound of the bucket they fall in.
+ */
+public class LatencyHistogram {
+    /**
+     * Bucket i counts samples in (2^(i-1), 2^i] microseconds; the last bucket is open-ended.
+     */
+    private static final int BUCKETS = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Record one sample.
+     *
+     * @param nanos the measured latency in nanoseconds.
+     */
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1_000);
+        buckets.incrementAndGet(bucketFor(micros));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * @return a copy of the histogram as it is now, which later samples do not change.
+     */
+    public LatencyHistogram snapshot() {
+        LatencyHistogram copy = new LatencyHistogram();
+        long copied = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long n = buckets.get(i);
+            copy.buckets.set(i, n);
+            copied += n;
+        }
+        // The count from the buckets themselves, so percentiles add up even if samples arrived while copying
+        copy.count.set(copied);
+        copy.totalMicros.set(totalMicros.get());
+        copy.maxMicros.set(maxMicros.get());
+        return copy;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public double getMeanMicros() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) totalMicros.get() / n;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    public long getP50Micros() {
+        return percentileMicros(0.50);
+    }
+
+    public long getP99Micros() {
+        return percentileMicros(0.99);
+    }
+
+    public long getP999Micros() {
+        return percentileMicros(0.999);
+    }
+
+    /**
+     * @return the non-empty buckets keyed by their upper bound, e.g. "<=64us".
+     */
+    public Map<String, Long> getBuckets() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            long n = buckets.get(i);
+            if (n > 0) {
+                result.put(i == BUCKETS - 1 ? ">" + (1L << (BUCKETS - 2)) + "us" : "<=" + (1L << i) + "us", n);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param quantile a value between 0 and 1.
+     * @return the upper bound, in microseconds, of the bucket holding the given quantile.
+     */
+    public long percentileMicros(double quantile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(1L << i, maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    private static int bucketFor(long micros) {
+        if (micros <= 1) {
+            return 0;
+        }
+        int bucket = 64 - Long.numberOfLeadingZeros(micros - 1);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+}
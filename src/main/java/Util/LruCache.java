@@ -0,0 +1,207 @@
+package Util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A size-bounded, optionally expiring, read-through cache with least-recently-used eviction.
+ *
+ * A loader returning null is cached as well, so repeated lookups of a missing key do not reach the backing store.
+ * Writers keep the cache coherent by calling {@link #put} or {@link #invalidate} right after they change the
+ * backing store; a load that overlaps such a write is returned to its caller but not cached, so a stale value
+ * can never overwrite a newer one.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class LruCache<K, V> {
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LatencyHistogram loadLatency = new LatencyHistogram();
+
+    private long writes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long expirations = 0;
+
+    /**
+     * @param maxSize   the most entries to keep; the least recently used entry is evicted beyond this.
+     * @param ttlMillis how long an entry stays valid after it is stored; 0 means entries never expire.
+     */
+    public LruCache(int maxSize, long ttlMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Return the cached value for the key, loading and caching it on a miss.
+     *
+     * @param key    the key to look up.
+     * @param loader reads the value from the backing store; may return null.
+     * @return the cached or freshly loaded value, possibly null.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        long writesBeforeLoad;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && !entry.isExpired()) {
+                hits++;
+                return entry.value;
+            }
+            if (entry != null) {
+                entries.remove(key);
+                expirations++;
+            }
+            misses++;
+            writesBeforeLoad = writes;
+        }
+
+        long start = System.nanoTime();
+        V value = loader.apply(key);
+        loadLatency.recordNanos(System.nanoTime() - start);
+
+        synchronized (this) {
+            if (writes == writesBeforeLoad) {
+                store(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Return the cached value for the key without loading it on a miss.
+     *
+     * @param key the key to look up.
+     * @return the cached value, or null if the key is not cached, has expired or is cached as missing.
+     */
+    public synchronized V peek(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && !entry.isExpired()) {
+            hits++;
+            return entry.value;
+        }
+        if (entry != null) {
+            entries.remove(key);
+            expirations++;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Store a value written to the backing store; null records that the key does not exist.
+     */
+    public synchronized void put(K key, V value) {
+        writes++;
+        store(key, value);
+    }
+
+    /**
+     * Forget the key, so the next lookup reads the backing store again.
+     */
+    public synchronized void invalidate(K key) {
+        writes++;
+        entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        writes++;
+        entries.clear();
+    }
+
+    /**
+     * @return a point-in-time snapshot of the cache's counters.
+     */
+    public synchronized Stats getStats() {
+        return new Stats(entries.size(), maxSize, hits, misses, evictions, expirations, loadLatency.snapshot());
+    }
+
+    private void store(K key, V value) {
+        long expiresAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE;
+        entries.put(key, new Entry<>(value, expiresAt));
+        Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxSize && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+
+    /**
+     * A snapshot of the cache's state, suitable for serializing as JSON.
+     */
+    public static class Stats {
+        private final int size;
+        private final int maxSize;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final LatencyHistogram loadLatency;
+
+        private Stats(int size, int maxSize, long hits, long misses, long evictions, long expirations,
+                LatencyHistogram loadLatency) {
+            this.size = size;
+            this.maxSize = maxSize;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.loadLatency = loadLatency;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public double getHitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getExpirations() {
+            return expirations;
+        }
+
+        public LatencyHistogram getLoadLatency() {
+            return loadLatency;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package Util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A {@link TextArena} in memory-mapped segment files, outside the Java heap, so the text it holds neither counts
+ * against the heap limit nor gets copied or scanned by the garbage collector. The operating system pages it in and
+ * out as it is used.
+ *
+ * Each segment is a file of a fixed size, mapped in full when the first text is stored in it. The file is deleted
+ * as soon as it is mapped: the mapping keeps its pages, and nothing is left behind if the process dies. The text is
+ * a cache of what the store's log holds, so it never needs to be read back from disk. {@link #close()} unmaps the
+ * segments at once where the JVM allows it and otherwise leaves them to the garbage collector.
+ */
+public class MappedTextArena implements TextArena {
+    private static final Method INVOKE_CLEANER;
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Unmapped by the garbage collector instead
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    /**
+     * Scratch space for decoding, so a read does not allocate more than the string it returns.
+     */
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[MAX_LENGTH]);
+
+    private final Path directory;
+    private final int segmentBits;
+    private final int segmentSize;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private long end = 0;
+
+    /**
+     * @param directory   where the segment files are created; created if missing.
+     * @param segmentSize the size of each segment file in bytes; a power of two of at least 64 KiB.
+     */
+    public MappedTextArena(Path directory, int segmentSize) {
+        if (Integer.bitCount(segmentSize) != 1 || segmentSize < 1 << 16) {
+            throw new IllegalArgumentException("segment size " + segmentSize + " is not a power of two of 64 KiB or "
+                    + "more");
+        }
+        this.directory = directory;
+        this.segmentBits = Integer.numberOfTrailingZeros(segmentSize);
+        this.segmentSize = segmentSize;
+    }
+
+    @Override
+    public long append(byte[] source, int from, int length) {
+        if ((end & (segmentSize - 1)) + length > segmentSize) {
+            end = (end >>> segmentBits) + 1 << segmentBits;
+        }
+        int segment = (int) (end >>> segmentBits);
+        if (segment == segments.length) {
+            MappedByteBuffer[] grown = Arrays.copyOf(segments, segment + 1);
+            grown[segment] = map();
+            segments = grown;
+        }
+        ByteBuffer target = segments[segment].duplicate();
+        target.position((int) (end & (segmentSize - 1)));
+        target.put(source, from, length);
+        long offset = end;
+        end += length;
+        return offset;
+    }
+
+    @Override
+    public String read(long offset, int length) {
+        byte[] scratch = SCRATCH.get();
+        copy(offset, length, scratch, 0);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void copy(long offset, int length, byte[] target, int at) {
+        ByteBuffer source = segments[(int) (offset >>> segmentBits)].duplicate();
+        source.position((int) (offset & (segmentSize - 1)));
+        source.get(target, at, length);
+    }
+
+    @Override
+    public long size() {
+        return end;
+    }
+
+    @Override
+    public TextArena empty() {
+        return new MappedTextArena(directory, segmentSize);
+    }
+
+    @Override
+    public void close() {
+        MappedByteBuffer[] closed = segments;
+        segments = new MappedByteBuffer[0];
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        for (MappedByteBuffer segment : closed) {
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, segment);
+            } catch (ReflectiveOperationException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Create, map and delete one segment file.
+     */
+    private MappedByteBuffer map() {
+        try {
+            Files.createDirectories(directory);
+            Path file = Files.createTempFile(directory, "text-", ".arena");
+            MappedByteBuffer segment;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            }
+            try {
+                Files.delete(file);
+            } catch (IOException e) {
+                // Some platforms refuse to delete a mapped file
+                file.toFile().deleteOnExit();
+            }
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot map a text segment in " + directory, e);
+        }
+    }
+}
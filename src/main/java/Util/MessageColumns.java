@@ -0,0 +1,830 @@
+package Util;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+
+import Model.Message;
+
+/**
+ * A thread-safe, in-memory message table stored column by column, so that holding tens of millions of messages
+ * costs little more than their text.
+ *
+ * Each message is a row: its ID and author in int columns, its time posted in a long column, and a reference to its
+ * text, which is kept UTF-8 encoded in a {@link TextArena}, on the heap or off it. Columns are split into fixed-size
+ * blocks, so they grow without copying and hold no more than one partly filled block of slack. Rows are appended in
+ * ID order, so a lookup by ID is a binary search. Every author has a postings list of their rows, and a time index
+ * lists the rows by time posted, then ID. Both hold row numbers, four bytes per message. No {@link Message} objects
+ * are stored; one is built each time a message is read.
+ *
+ * Deleting a message only marks its row, and changing its text appends the new text to the arena. Once a quarter of
+ * the rows are deleted or half the arena is stale, the table is compacted: live rows and their text are copied into
+ * fresh columns and a fresh arena, the old arena is released, and the postings and time index are rebuilt. Readers
+ * wait for the compaction to finish.
+ *
+ * Streams are read in batches, taking the read lock once per batch, so a slow consumer does not hold up writers.
+ */
+public class MessageColumns {
+    private static final int BLOCK_BITS = 16;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    /**
+     * A text reference is the text's position in the arena, shifted left by this many bits, plus its length in
+     * bytes. 255 characters take at most 765 bytes.
+     */
+    private static final int LENGTH_BITS = 10;
+    private static final int NULL_TEXT = (1 << LENGTH_BITS) - 1;
+    private static final long DELETED = -1L;
+    private static final int BATCH = 256;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private IntColumn ids;
+    private IntColumn authors;
+    private LongColumn times;
+    private LongColumn texts;
+    private TextArena arena;
+    private Map<Integer, Postings> byAuthor;
+    /**
+     * Rows in time order. Rows that arrive in order are appended to the main run; the rest are kept in a small
+     * sorted pending run, which is merged in once it grows past the square root of the main run.
+     */
+    private IntColumn byTime;
+    private int[] pendingByTime;
+    private int pendingSize;
+    private int deletedRows;
+    private long staleBytes;
+    private long compactions = 0;
+
+    /**
+     * Columns that keep their text on the heap.
+     */
+    public MessageColumns() {
+        this(new HeapTextArena());
+    }
+
+    /**
+     * @param arena where to keep the text; compaction moves it to a new arena from {@link TextArena#empty()}.
+     */
+    public MessageColumns(TextArena arena) {
+        this.arena = arena;
+        init();
+    }
+
+    /**
+     * Add a message.
+     *
+     * @param messageId the message ID; greater than that of every message added before.
+     * @param authorId  the author's account ID.
+     * @param text      the message text, at most 255 characters; may be null.
+     * @param time      the time the message was posted.
+     * @throws IllegalArgumentException if the ID is not the greatest yet or the text is too long.
+     */
+    public void add(int messageId, int authorId, String text, long time) {
+        byte[] bytes = encode(text);
+        lock.writeLock().lock();
+        try {
+            int row = ids.size();
+            if (row > 0 && messageId <= ids.get(row - 1)) {
+                throw new IllegalArgumentException("message " + messageId + " is not after message "
+                        + ids.get(row - 1));
+            }
+            // Stored first, so a failure leaves the columns as they were
+            long stored = bytes == null ? NULL_TEXT : store(arena, bytes, 0, bytes.length);
+            ids.add(messageId);
+            authors.add(authorId);
+            times.add(time);
+            texts.add(stored);
+            byAuthor.computeIfAbsent(authorId, id -> new Postings()).add(row, time);
+            indexTime(row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the text of a message.
+     *
+     * @param messageId a message ID.
+     * @param text      the new text, at most 255 characters; may be null.
+     * @return false if there is no message with that ID.
+     */
+    public boolean setText(int messageId, String text) {
+        byte[] bytes = encode(text);
+        lock.writeLock().lock();
+        try {
+            int row = find(messageId);
+            if (row < 0) {
+                return false;
+            }
+            staleBytes += length(texts.get(row));
+            texts.set(row, bytes == null ? NULL_TEXT : store(arena, bytes, 0, bytes.length));
+            compactIfWasteful();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param messageId a message ID.
+     * @return false if there is no message with that ID.
+     */
+    public boolean remove(int messageId) {
+        lock.writeLock().lock();
+        try {
+            int row = find(messageId);
+            if (row < 0) {
+                return false;
+            }
+            staleBytes += length(texts.get(row));
+            texts.set(row, DELETED);
+            deletedRows++;
+            byAuthor.get(authors.get(row)).live--;
+            compactIfWasteful();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            init();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param messageId a message ID.
+     * @return the message with that ID, or null if there is none.
+     */
+    public Message get(int messageId) {
+        lock.readLock().lock();
+        try {
+            int row = find(messageId);
+            return row < 0 ? null : message(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param afterMessageId only messages with a greater ID are returned.
+     * @param limit          the most messages to return.
+     * @return up to limit messages, in ascending ID order.
+     */
+    public List<Message> getAfter(int afterMessageId, int limit) {
+        List<Message> messages = new ArrayList<>(Math.min(limit, BATCH));
+        lock.readLock().lock();
+        try {
+            for (int row = firstRowAfter(afterMessageId); row < ids.size() && messages.size() < limit; row++) {
+                if (texts.get(row) != DELETED) {
+                    messages.add(message(row));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return messages;
+    }
+
+    /**
+     * @param authorId       the author's account ID.
+     * @param afterMessageId only messages with a greater ID are returned.
+     * @param limit          the most messages to return.
+     * @return up to limit of the author's messages, in ascending ID order.
+     */
+    public List<Message> getByAuthorAfter(int authorId, int afterMessageId, int limit) {
+        List<Message> messages = new ArrayList<>(Math.min(limit, BATCH));
+        lock.readLock().lock();
+        try {
+            Postings postings = byAuthor.get(authorId);
+            if (postings == null) {
+                return messages;
+            }
+            int[] rows = postings.rows;
+            for (int i = firstAfter(postings, afterMessageId); i < postings.size && messages.size() < limit; i++) {
+                if (texts.get(rows[i]) != DELETED) {
+                    messages.add(message(rows[i]));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return messages;
+    }
+
+    /**
+     * @param authorIds       the authors' account IDs.
+     * @param beforeMessageId only messages with a smaller ID are counted.
+     * @param limit           the most IDs to return.
+     * @return the IDs of the newest of the authors' messages, newest first.
+     */
+    public List<Integer> getIdsByAuthors(int[] authorIds, int beforeMessageId, int limit) {
+        List<Integer> messageIds = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int authorId : authorIds) {
+                Postings postings = byAuthor.get(authorId);
+                if (postings == null) {
+                    continue;
+                }
+                int taken = 0;
+                for (int i = firstAfter(postings, beforeMessageId - 1) - 1; i >= 0 && taken < limit; i--) {
+                    int row = postings.rows[i];
+                    if (texts.get(row) != DELETED) {
+                        messageIds.add(ids.get(row));
+                        taken++;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        messageIds.sort(Collections.reverseOrder());
+        return messageIds.size() > limit ? new ArrayList<>(messageIds.subList(0, limit)) : messageIds;
+    }
+
+    /**
+     * @param consumer receives every message, in ascending ID order.
+     */
+    public void forEach(Consumer<Message> consumer) {
+        List<Message> batch;
+        int after = Integer.MIN_VALUE;
+        do {
+            batch = getAfter(after, BATCH);
+            batch.forEach(consumer);
+            after = batch.isEmpty() ? after : batch.get(batch.size() - 1).getMessage_id();
+        } while (batch.size() == BATCH);
+    }
+
+    /**
+     * @param authorId the author's account ID.
+     * @param consumer receives the author's messages, in ascending ID order.
+     */
+    public void forEachByAuthor(int authorId, Consumer<Message> consumer) {
+        List<Message> batch;
+        int after = Integer.MIN_VALUE;
+        do {
+            batch = getByAuthorAfter(authorId, after, BATCH);
+            batch.forEach(consumer);
+            after = batch.isEmpty() ? after : batch.get(batch.size() - 1).getMessage_id();
+        } while (batch.size() == BATCH);
+    }
+
+    /**
+     * @param since    the earliest time posted to include.
+     * @param until    the time posted to stop before.
+     * @param consumer receives the messages posted in that range, by time posted, then ID.
+     */
+    public void forEachInTimeRange(long since, long until, Consumer<Message> consumer) {
+        forEachInTimeRange(null, since, until, consumer);
+    }
+
+    /**
+     * @param authorId the author's account ID.
+     * @param since    the earliest time posted to include.
+     * @param until    the time posted to stop before.
+     * @param consumer receives the author's messages posted in that range, by time posted, then ID.
+     */
+    public void forEachByAuthorInTimeRange(int authorId, long since, long until, Consumer<Message> consumer) {
+        forEachInTimeRange(authorId, since, until, consumer);
+    }
+
+    /**
+     * @param authorId the author's account ID.
+     * @return whether the author has any messages.
+     */
+    public boolean hasMessagesBy(int authorId) {
+        lock.readLock().lock();
+        try {
+            Postings postings = byAuthor.get(authorId);
+            return postings != null && postings.live > 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of messages.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size() - deletedRows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return a point-in-time snapshot of the table's counters.
+     */
+    public Stats getStats() {
+        lock.readLock().lock();
+        try {
+            return new Stats(ids.size() - deletedRows, deletedRows, arena.size(), staleBytes, compactions);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void init() {
+        ids = new IntColumn();
+        authors = new IntColumn();
+        times = new LongColumn();
+        texts = new LongColumn();
+        arena.close();
+        arena = arena.empty();
+        byAuthor = new HashMap<>();
+        byTime = new IntColumn();
+        pendingByTime = new int[16];
+        pendingSize = 0;
+        deletedRows = 0;
+        staleBytes = 0;
+    }
+
+    /**
+     * Stream a time range in batches, resuming each batch after the last message of the one before.
+     *
+     * @param authorId the author to restrict the range to, or null for all messages.
+     */
+    private void forEachInTimeRange(Integer authorId, long since, long until, Consumer<Message> consumer) {
+        if (since >= until) {
+            return;
+        }
+        List<Message> batch;
+        long afterTime = since;
+        int afterId = Integer.MIN_VALUE;
+        boolean sorted = true;
+        do {
+            batch = new ArrayList<>();
+            lock.readLock().lock();
+            try {
+                if (authorId == null) {
+                    timeBatch(afterTime, afterId, until, batch);
+                } else if (!authorTimeBatch(authorId, afterTime, afterId, until, batch)) {
+                    // The author's postings are not in time order; sort them instead, all at once
+                    authorTimeRange(authorId, since, until, batch);
+                    sorted = false;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            batch.forEach(consumer);
+            if (!sorted) {
+                return;
+            }
+            if (!batch.isEmpty()) {
+                Message last = batch.get(batch.size() - 1);
+                afterTime = last.getTime_posted_epoch();
+                afterId = last.getMessage_id();
+            }
+        } while (batch.size() == BATCH);
+    }
+
+    /**
+     * Fill a batch from the time index, merging its main and pending runs. Callers hold the read lock.
+     */
+    private void timeBatch(long afterTime, int afterId, long until, List<Message> batch) {
+        int main = seek(byTime::get, byTime.size(), afterTime, afterId);
+        int pending = seek(i -> pendingByTime[i], pendingSize, afterTime, afterId);
+        while (batch.size() < BATCH) {
+            int row;
+            if (main < byTime.size() && (pending == pendingSize
+                    || compareRows(byTime.get(main), pendingByTime[pending]) < 0)) {
+                row = byTime.get(main++);
+            } else if (pending < pendingSize) {
+                row = pendingByTime[pending++];
+            } else {
+                break;
+            }
+            if (times.get(row) >= until) {
+                break;
+            }
+            if (texts.get(row) != DELETED) {
+                batch.add(message(row));
+            }
+        }
+    }
+
+    /**
+     * Fill a batch from an author's postings, if they are in time order. Callers hold the read lock.
+     *
+     * @return false if the postings are not in time order.
+     */
+    private boolean authorTimeBatch(int authorId, long afterTime, int afterId, long until, List<Message> batch) {
+        Postings postings = byAuthor.get(authorId);
+        if (postings == null) {
+            return true;
+        }
+        if (!postings.timeOrdered) {
+            return false;
+        }
+        int[] rows = postings.rows;
+        for (int i = seek(at -> rows[at], postings.size, afterTime, afterId); i < postings.size
+                && batch.size() < BATCH && times.get(rows[i]) < until; i++) {
+            if (texts.get(rows[i]) != DELETED) {
+                batch.add(message(rows[i]));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collect an author's messages in a time range by scanning and sorting their postings. Callers hold the read
+     * lock.
+     */
+    private void authorTimeRange(int authorId, long since, long until, List<Message> messages) {
+        Postings postings = byAuthor.get(authorId);
+        List<Integer> rows = new ArrayList<>();
+        for (int i = 0; i < postings.size; i++) {
+            int row = postings.rows[i];
+            long time = times.get(row);
+            if (time >= since && time < until && texts.get(row) != DELETED) {
+                rows.add(row);
+            }
+        }
+        rows.sort(this::compareRows);
+        for (int row : rows) {
+            messages.add(message(row));
+        }
+    }
+
+    /**
+     * @return the first position in a run of rows sorted by time, then ID, whose key is after the given one.
+     */
+    private int seek(IntUnaryOperator rowAt, int size, long afterTime, int afterId) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int row = rowAt.applyAsInt(middle);
+            int cmp = Long.compare(times.get(row), afterTime);
+            if (cmp < 0 || (cmp == 0 && ids.get(row) <= afterId)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Rows are in ID order, so comparing rows by time, then row, compares their messages by time, then ID.
+     */
+    private int compareRows(int a, int b) {
+        int byTimePosted = Long.compare(times.get(a), times.get(b));
+        return byTimePosted != 0 ? byTimePosted : Integer.compare(a, b);
+    }
+
+    private void indexTime(int row) {
+        if (byTime.size() == 0 || compareRows(byTime.get(byTime.size() - 1), row) < 0) {
+            byTime.add(row);
+            return;
+        }
+        int at = 0;
+        int high = pendingSize;
+        while (at < high) {
+            int middle = (at + high) >>> 1;
+            if (compareRows(pendingByTime[middle], row) < 0) {
+                at = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (pendingSize == pendingByTime.length) {
+            pendingByTime = Arrays.copyOf(pendingByTime, pendingSize * 2);
+        }
+        System.arraycopy(pendingByTime, at, pendingByTime, at + 1, pendingSize - at);
+        pendingByTime[at] = row;
+        pendingSize++;
+        if (pendingSize > Math.max(1024, (int) Math.sqrt(byTime.size()))) {
+            byTime = mergedTimeIndex(null);
+            pendingByTime = new int[16];
+            pendingSize = 0;
+        }
+    }
+
+    /**
+     * Merge the main and pending runs of the time index, leaving out deleted rows.
+     *
+     * @param newRows maps each row to its number after compaction, or null to keep the numbers.
+     */
+    private IntColumn mergedTimeIndex(int[] newRows) {
+        IntColumn merged = new IntColumn();
+        int main = 0;
+        int pending = 0;
+        while (main < byTime.size() || pending < pendingSize) {
+            int row;
+            if (pending == pendingSize
+                    || (main < byTime.size() && compareRows(byTime.get(main), pendingByTime[pending]) < 0)) {
+                row = byTime.get(main++);
+            } else {
+                row = pendingByTime[pending++];
+            }
+            if (texts.get(row) != DELETED) {
+                merged.add(newRows == null ? row : newRows[row]);
+            }
+        }
+        return merged;
+    }
+
+    private void compactIfWasteful() {
+        boolean wastedRows = deletedRows > 1024 && deletedRows * 4L > ids.size();
+        boolean wastedBytes = staleBytes > 1 << 20 && staleBytes * 2 > arena.size();
+        if (wastedRows || wastedBytes) {
+            try {
+                compact();
+            } catch (UncheckedIOException e) {
+                // Nothing was changed; the waste stays until a later compaction succeeds
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Copy the live rows and their text into fresh columns and rebuild the indexes. Callers hold the write lock.
+     */
+    private void compact() {
+        int rows = ids.size();
+        int[] newRows = new int[rows];
+        IntColumn newIds = new IntColumn();
+        IntColumn newAuthors = new IntColumn();
+        LongColumn newTimes = new LongColumn();
+        LongColumn newTexts = new LongColumn();
+        TextArena newArena = arena.empty();
+        byte[] scratch = new byte[TextArena.MAX_LENGTH];
+        try {
+            for (int row = 0; row < rows; row++) {
+                long text = texts.get(row);
+                if (text == DELETED) {
+                    newRows[row] = -1;
+                    continue;
+                }
+                newRows[row] = newIds.size();
+                newIds.add(ids.get(row));
+                newAuthors.add(authors.get(row));
+                newTimes.add(times.get(row));
+                int length = (int) (text & NULL_TEXT);
+                if (length == NULL_TEXT) {
+                    newTexts.add(NULL_TEXT);
+                } else {
+                    arena.copy(text >>> LENGTH_BITS, length, scratch, 0);
+                    newTexts.add(store(newArena, scratch, 0, length));
+                }
+            }
+        } catch (UncheckedIOException e) {
+            newArena.close();
+            throw e;
+        }
+        IntColumn newByTime = mergedTimeIndex(newRows);
+        Map<Integer, Postings> newByAuthor = new HashMap<>();
+        for (Map.Entry<Integer, Postings> entry : byAuthor.entrySet()) {
+            Postings postings = entry.getValue();
+            if (postings.live == 0) {
+                continue;
+            }
+            Postings compacted = new Postings();
+            for (int i = 0; i < postings.size; i++) {
+                int row = newRows[postings.rows[i]];
+                if (row >= 0) {
+                    compacted.add(row, newTimes.get(row));
+                }
+            }
+            newByAuthor.put(entry.getKey(), compacted);
+        }
+        ids = newIds;
+        authors = newAuthors;
+        times = newTimes;
+        texts = newTexts;
+        arena.close();
+        arena = newArena;
+        byTime = newByTime;
+        pendingByTime = new int[16];
+        pendingSize = 0;
+        byAuthor = newByAuthor;
+        deletedRows = 0;
+        staleBytes = 0;
+        compactions++;
+    }
+
+    /**
+     * @return the row holding a message, or -1 if there is none.
+     */
+    private int find(int messageId) {
+        int row = firstRowAfter(messageId - 1);
+        return row < ids.size() && ids.get(row) == messageId && texts.get(row) != DELETED ? row : -1;
+    }
+
+    /**
+     * @return the first position in an author's postings whose message has a greater ID.
+     */
+    private int firstAfter(Postings postings, int messageId) {
+        int low = 0;
+        int high = postings.size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ids.get(postings.rows[middle]) <= messageId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int firstRowAfter(int messageId) {
+        int low = 0;
+        int high = ids.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ids.get(middle) <= messageId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private Message message(int row) {
+        return new Message(ids.get(row), authors.get(row), text(texts.get(row)), times.get(row));
+    }
+
+    private String text(long text) {
+        int length = (int) (text & NULL_TEXT);
+        if (length == NULL_TEXT) {
+            return null;
+        }
+        return arena.read(text >>> LENGTH_BITS, length);
+    }
+
+    /**
+     * @return the reference to store in the text column.
+     */
+    private static long store(TextArena arena, byte[] source, int from, int length) {
+        return arena.append(source, from, length) << LENGTH_BITS | length;
+    }
+
+    private static int length(long text) {
+        int length = (int) (text & NULL_TEXT);
+        return length == NULL_TEXT ? 0 : length;
+    }
+
+    private static byte[] encode(String text) {
+        if (text == null) {
+            return null;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_TEXT) {
+            throw new IllegalArgumentException("message text of " + bytes.length + " bytes is too long");
+        }
+        return bytes;
+    }
+
+    /**
+     * One author's rows, ascending.
+     */
+    private static final class Postings {
+        private int[] rows = new int[4];
+        private int size = 0;
+        private int live = 0;
+        /**
+         * Whether the rows are also in order of time posted, so a time range can be found by binary search.
+         */
+        private boolean timeOrdered = true;
+        private long lastTime = Long.MIN_VALUE;
+
+        private void add(int row, long time) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size + (size >> 1));
+            }
+            rows[size++] = row;
+            live++;
+            timeOrdered &= time >= lastTime;
+            lastTime = time;
+        }
+    }
+
+    /**
+     * An int column split into blocks. The first block starts small and doubles until it is full size.
+     */
+    private static final class IntColumn {
+        private int[][] blocks = new int[1][8];
+        private int size = 0;
+
+        private int get(int index) {
+            return blocks[index >>> BLOCK_BITS][index & (BLOCK_SIZE - 1)];
+        }
+
+        private void set(int index, int value) {
+            blocks[index >>> BLOCK_BITS][index & (BLOCK_SIZE - 1)] = value;
+        }
+
+        private void add(int value) {
+            int block = size >>> BLOCK_BITS;
+            int slot = size & (BLOCK_SIZE - 1);
+            if (block == blocks.length) {
+                blocks = Arrays.copyOf(blocks, block * 2);
+            }
+            if (blocks[block] == null) {
+                blocks[block] = new int[BLOCK_SIZE];
+            } else if (slot == blocks[block].length) {
+                blocks[block] = Arrays.copyOf(blocks[block], Math.min(slot * 2, BLOCK_SIZE));
+            }
+            blocks[block][slot] = value;
+            size++;
+        }
+
+        private int size() {
+            return size;
+        }
+    }
+
+    /**
+     * A long column split into blocks, as {@link IntColumn}.
+     */
+    private static final class LongColumn {
+        private long[][] blocks = new long[1][8];
+        private int size = 0;
+
+        private long get(int index) {
+            return blocks[index >>> BLOCK_BITS][index & (BLOCK_SIZE - 1)];
+        }
+
+        private void set(int index, long value) {
+            blocks[index >>> BLOCK_BITS][index & (BLOCK_SIZE - 1)] = value;
+        }
+
+        private void add(long value) {
+            int block = size >>> BLOCK_BITS;
+            int slot = size & (BLOCK_SIZE - 1);
+            if (block == blocks.length) {
+                blocks = Arrays.copyOf(blocks, block * 2);
+            }
+            if (blocks[block] == null) {
+                blocks[block] = new long[BLOCK_SIZE];
+            } else if (slot == blocks[block].length) {
+                blocks[block] = Arrays.copyOf(blocks[block], Math.min(slot * 2, BLOCK_SIZE));
+            }
+            blocks[block][slot] = value;
+            size++;
+        }
+    }
+
+    public static class Stats {
+        private final int messages;
+        private final int deletedRows;
+        private final long arenaBytes;
+        private final long staleBytes;
+        private final long compactions;
+
+        private Stats(int messages, int deletedRows, long arenaBytes, long staleBytes, long compactions) {
+            this.messages = messages;
+            this.deletedRows = deletedRows;
+            this.arenaBytes = arenaBytes;
+            this.staleBytes = staleBytes;
+            this.compactions = compactions;
+        }
+
+        public int getMessages() {
+            return messages;
+        }
+
+        /**
+         * @return rows marked deleted and not yet compacted away.
+         */
+        public int getDeletedRows() {
+            return deletedRows;
+        }
+
+        /**
+         * @return bytes used in the text arena, including stale text.
+         */
+        public long getArenaBytes() {
+            return arenaBytes;
+        }
+
+        /**
+         * @return bytes of deleted or replaced text not yet compacted away.
+         */
+        public long getStaleBytes() {
+            return staleBytes;
+        }
+
+        public long getCompactions() {
+            return compactions;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package Util;
+
+import org.h2.tools.RunScript;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Applies the versioned schema scripts in src/main/resources/db/migration.
+ *
+ * Every applied script is recorded in the schema_version table together with a checksum of its contents. Running
+ * the migrations again only applies scripts that are not recorded yet, and refuses to continue if a script that
+ * was already applied has since been edited. New scripts must be appended to {@link #MIGRATIONS}; never change one
+ * that has shipped.
+ */
+public class MigrationRunner {
+    /**
+     * The migration scripts, in the order they must be applied. The version is the number after the leading "V".
+     */
+    private static final String[] MIGRATIONS = {
+            "V1__create_account_and_message.sql",
+            "V2__message_indexes.sql",
+            "V3__follow_graph.sql",
+            "V4__message_time_indexes_by_id.sql",
+    };
+
+    private static final String LOCATION = "db/migration/";
+
+    /**
+     * Apply every migration that has not been applied to this database yet.
+     *
+     * @param connection a connection to the database to migrate.
+     * @return the number of migrations applied by this call.
+     * @throws SQLException          if a script fails; that script's changes are rolled back where H2 allows it.
+     * @throws IllegalStateException if an applied script no longer matches its recorded checksum.
+     */
+    public static int migrate(Connection connection) throws SQLException {
+        createVersionTable(connection);
+        Map<Integer, Long> applied = appliedChecksums(connection);
+
+        int count = 0;
+        for (String name : MIGRATIONS) {
+            int version = versionOf(name);
+            String script = load(name);
+            long checksum = checksum(script);
+
+            Long recorded = applied.get(version);
+            if (recorded != null) {
+                if (recorded != checksum) {
+                    throw new IllegalStateException("migration " + name + " has changed since it was applied");
+                }
+                continue;
+            }
+            apply(connection, version, name, script, checksum);
+            count++;
+        }
+        return count;
+    }
+
+    private static void createVersionTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                    + "version INT PRIMARY KEY, "
+                    + "script VARCHAR(255) NOT NULL, "
+                    + "checksum BIGINT NOT NULL, "
+                    + "applied_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        }
+    }
+
+    private static Map<Integer, Long> appliedChecksums(Connection connection) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        String sql = "SELECT version, checksum FROM schema_version";
+        try (PreparedStatement preparedStatement = connection.prepareStatement(sql);
+                ResultSet rs = preparedStatement.executeQuery()) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getLong("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    private static void apply(Connection connection, int version, String name, String script, long checksum)
+            throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            RunScript.execute(connection, new StringReader(script));
+            String sql = "INSERT INTO schema_version (version, script, checksum) VALUES (?, ?, ?)";
+            try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                preparedStatement.setInt(1, version);
+                preparedStatement.setString(2, name);
+                preparedStatement.setLong(3, checksum);
+                preparedStatement.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static int versionOf(String name) {
+        return Integer.parseInt(name.substring(1, name.indexOf("__")));
+    }
+
+    private static String load(String name) {
+        try (InputStream in = MigrationRunner.class.getClassLoader().getResourceAsStream(LOCATION + name)) {
+            if (in == null) {
+                throw new IllegalStateException("missing migration script " + LOCATION + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("could not read migration script " + LOCATION + name, e);
+        }
+    }
+
+    private static long checksum(String script) {
+        CRC32 crc = new CRC32();
+        // Normalize line endings so a checkout on another platform does not look like an edited script
+        crc.update(script.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
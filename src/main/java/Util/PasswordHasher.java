@@ -0,0 +1,165 @@
+package Util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted, adaptive password hashing with PBKDF2-HMAC-SHA256.
+ *
+ * A stored hash looks like {@code pbkdf2-sha256$<iterations>$<salt>$<hash>}, so it carries its own cost: raising
+ * the iteration count later does not invalidate existing hashes, and {@link #needsRehash} tells when one should be
+ * replaced at the next successful login. A stored password without that prefix predates hashing and is treated as
+ * plaintext.
+ *
+ * The iteration count is the cost knob. {@link #getDefault()} calibrates it once per JVM so that one hash takes
+ * about auth.hash.targetMillis (50 by default) on this machine, unless auth.hash.iterations fixes it.
+ */
+public class PasswordHasher {
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    /**
+     * Calibration never goes below this, however slow the machine seems while starting up.
+     */
+    private static final int MIN_ITERATIONS = 10_000;
+
+    private static final Base64.Encoder ENCODER = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+    private static PasswordHasher defaultHasher;
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * @param iterations the PBKDF2 iteration count for new hashes.
+     */
+    public PasswordHasher(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("iterations must be positive");
+        }
+        this.iterations = iterations;
+    }
+
+    /**
+     * @return the shared hasher, calibrated on first use.
+     */
+    public static synchronized PasswordHasher getDefault() {
+        if (defaultHasher == null) {
+            Integer iterations = Integer.getInteger("auth.hash.iterations");
+            if (iterations == null) {
+                iterations = calibrate(Long.getLong("auth.hash.targetMillis", 50));
+            }
+            defaultHasher = new PasswordHasher(iterations);
+        }
+        return defaultHasher;
+    }
+
+    /**
+     * Find the iteration count at which one hash takes about the target time on this machine.
+     *
+     * @param targetMillis the desired time per hash.
+     * @return the iteration count, rounded to a thousand and at least {@link #MIN_ITERATIONS}.
+     */
+    public static int calibrate(long targetMillis) {
+        char[] password = "calibration".toCharArray();
+        byte[] salt = new byte[SALT_BYTES];
+        // The first rounds also warm up the JIT; keep the fastest, which is closest to the steady state
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            pbkdf2(password, salt, MIN_ITERATIONS);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        long iterations = MIN_ITERATIONS * (targetMillis * 1_000_000L) / Math.max(fastest, 1);
+        return (int) Math.max(MIN_ITERATIONS, Math.min(Integer.MAX_VALUE, iterations / 1_000 * 1_000));
+    }
+
+    /**
+     * @param password the plaintext password.
+     * @return the salted hash to store.
+     */
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = pbkdf2(password.toCharArray(), salt, iterations);
+        return PREFIX + "$" + iterations + "$" + ENCODER.encodeToString(salt) + "$" + ENCODER.encodeToString(hash);
+    }
+
+    /**
+     * Check a password against a stored hash, or against a legacy plaintext password.
+     *
+     * @param password the password to check.
+     * @param stored   the stored hash or legacy plaintext password.
+     * @return true if the password matches.
+     */
+    public boolean verify(String password, String stored) {
+        if (stored == null) {
+            return false;
+        }
+        if (!isHashed(stored)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                    stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[1]);
+            byte[] salt = DECODER.decode(parts[2]);
+            byte[] expected = DECODER.decode(parts[3]);
+            return MessageDigest.isEqual(expected, pbkdf2(password.toCharArray(), salt, storedIterations));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param stored a stored password.
+     * @return true if it is a hash made by this class, false for a legacy plaintext password.
+     */
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX + "$");
+    }
+
+    /**
+     * @param stored a stored password.
+     * @return true if it is plaintext or was hashed with fewer iterations than this hasher uses.
+     */
+    public boolean needsRehash(String stored) {
+        if (!isHashed(stored)) {
+            return true;
+        }
+        String[] parts = stored.split("\\$");
+        try {
+            return parts.length != 4 || Integer.parseInt(parts[1]) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    private static byte[] pbkdf2(char[] password, byte[] salt, int iterations) {
+        KeySpec spec = new PBEKeySpec(password, salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            Arrays.fill(password, '\0');
+        }
+    }
+}
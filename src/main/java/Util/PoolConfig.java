@@ -0,0 +1,110 @@
+package Util;
+
+/**
+ * Sizing and housekeeping settings for the {@link ConnectionPool}.
+ *
+ * Every value can be overridden with a system property, e.g. {@code -Ddb.pool.maxSize=32}.
+ */
+public class PoolConfig {
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakDetectionThresholdMillis;
+    private final boolean leakStackTraces;
+    private final long validationIntervalMillis;
+    private final int validationTimeoutSeconds;
+    private final long housekeepingPeriodMillis;
+    private final int statementCacheSize;
+
+    public PoolConfig(int minSize, int maxSize, long acquireTimeoutMillis, long idleTimeoutMillis,
+            long leakDetectionThresholdMillis, boolean leakStackTraces, long validationIntervalMillis,
+            int validationTimeoutSeconds, long housekeepingPeriodMillis, int statementCacheSize) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+        this.leakStackTraces = leakStackTraces;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.housekeepingPeriodMillis = housekeepingPeriodMillis;
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * @return the pool configuration, using the db.pool.* system properties where present.
+     */
+    public static PoolConfig fromSystemProperties() {
+        return new PoolConfig(
+                Integer.getInteger("db.pool.minSize", 2),
+                Integer.getInteger("db.pool.maxSize", 10),
+                Long.getLong("db.pool.acquireTimeoutMillis", 5_000),
+                Long.getLong("db.pool.idleTimeoutMillis", 600_000),
+                Long.getLong("db.pool.leakDetectionThresholdMillis", 30_000),
+                Boolean.getBoolean("db.pool.leakStackTraces"),
+                Long.getLong("db.pool.validationIntervalMillis", 5_000),
+                Integer.getInteger("db.pool.validationTimeoutSeconds", 2),
+                Long.getLong("db.pool.housekeepingPeriodMillis", 30_000),
+                Integer.getInteger("db.pool.statementCacheSize", 64));
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    /**
+     * @return how long a connection may sit idle before it is closed, while the pool is above its minimum size.
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * @return how long a connection may be borrowed before it is reported as a possible leak; 0 disables the check.
+     */
+    public long getLeakDetectionThresholdMillis() {
+        return leakDetectionThresholdMillis;
+    }
+
+    /**
+     * @return whether every borrow records its stack trace, to be printed if the connection is reported as a leak.
+     *         Off by default: capturing a stack trace on every borrow is too slow to leave on.
+     */
+    public boolean isLeakStackTraces() {
+        return leakStackTraces;
+    }
+
+    /**
+     * @return connections idle for longer than this are validated before being handed out.
+     */
+    public long getValidationIntervalMillis() {
+        return validationIntervalMillis;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public long getHousekeepingPeriodMillis() {
+        return housekeepingPeriodMillis;
+    }
+
+    /**
+     * @return how many prepared statements each connection keeps cached; 0 disables statement caching.
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+}
@@ -0,0 +1,111 @@
+package Util;
+
+/**
+ * A thread-safe, fixed-capacity FIFO queue for handing items from producers that must never wait to one consumer
+ * that may.
+ *
+ * Producers either offer an item, which fails when the buffer is full, or push it, which makes room by discarding
+ * the oldest item. Neither blocks. The consumer polls with a timeout. Closing the buffer wakes the consumer and
+ * makes every later offer fail.
+ *
+ * @param <T> the item type
+ */
+public class RingBuffer<T> {
+    private final Object[] items;
+    private int head = 0;
+    private int size = 0;
+    private boolean closed = false;
+
+    /**
+     * @param capacity the most items to hold.
+     */
+    public RingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.items = new Object[capacity];
+    }
+
+    /**
+     * Add an item unless the buffer is full or closed.
+     *
+     * @param item the item to add.
+     * @return true if the item was added.
+     */
+    public synchronized boolean offer(T item) {
+        if (closed || size == items.length) {
+            return false;
+        }
+        items[(head + size) % items.length] = item;
+        size++;
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Add an item, discarding the oldest one if the buffer is full. Does nothing if the buffer is closed.
+     *
+     * @param item the item to add.
+     * @return true if an older item was discarded to make room.
+     */
+    public synchronized boolean push(T item) {
+        if (closed) {
+            return false;
+        }
+        boolean discarded = size == items.length;
+        if (discarded) {
+            items[head] = null;
+            head = (head + 1) % items.length;
+            size--;
+        }
+        offer(item);
+        return discarded;
+    }
+
+    /**
+     * Take the oldest item, waiting up to the given time for one to arrive.
+     *
+     * @param timeoutMillis the most time to wait.
+     * @return the oldest item, or null if none arrived in time or the buffer is closed and empty.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T poll(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (size == 0 && !closed) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return null;
+            }
+            wait(remaining);
+        }
+        if (size == 0) {
+            return null;
+        }
+        T item = (T) items[head];
+        items[head] = null;
+        head = (head + 1) % items.length;
+        size--;
+        return item;
+    }
+
+    /**
+     * Stop accepting items and wake the consumer. Items already buffered can still be polled.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return items.length;
+    }
+}
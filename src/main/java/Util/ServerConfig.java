@@ -0,0 +1,105 @@
+package Util;
+
+/**
+ * How the HTTP server executes requests.
+ *
+ * By default every request runs on a platform thread from Jetty's bounded pool, so the thread count caps how many
+ * requests are in flight. With {@code -Dserver.threads=virtual} each request runs on its own virtual thread
+ * instead (JDK 21 or newer). Threads are then no longer a limit, so a {@link ConcurrencyLimitHandler} admits at most
+ * {@link #getMaxConcurrentRequests()} requests at a time, by default the size of the connection pool: more
+ * concurrent handlers than connections would only queue inside the pool.
+ *
+ * With {@code -Dserver.async=true} the handlers themselves only schedule their work on a dedicated
+ * {@link HandlerExecutor} and hand Javalin the resulting future, so the server's threads are free again as soon as
+ * the request is queued. The executor has {@link #getHandlerThreads()} workers, by default again the size of the
+ * connection pool, and refuses work with 503 once {@link #getHandlerQueueSize()} requests are waiting.
+ *
+ * Every value can be overridden with a system property, e.g. {@code -Dserver.maxConcurrentRequests=32}.
+ */
+public class ServerConfig {
+    public static final String PLATFORM = "platform";
+    public static final String VIRTUAL = "virtual";
+
+    private final String threads;
+    private final int maxConcurrentRequests;
+    private final long admissionTimeoutMillis;
+    private final boolean asyncHandlers;
+    private final int handlerThreads;
+    private final int handlerQueueSize;
+
+    public ServerConfig(String threads, int maxConcurrentRequests, long admissionTimeoutMillis, boolean asyncHandlers,
+            int handlerThreads, int handlerQueueSize) {
+        if (!PLATFORM.equals(threads) && !VIRTUAL.equals(threads)) {
+            throw new IllegalArgumentException("server.threads must be " + PLATFORM + " or " + VIRTUAL + ": " + threads);
+        }
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("maxConcurrentRequests must be positive");
+        }
+        if (handlerThreads < 1 || handlerQueueSize < 1) {
+            throw new IllegalArgumentException("invalid handler executor size: threads=" + handlerThreads
+                    + ", queue=" + handlerQueueSize);
+        }
+        this.threads = threads;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.admissionTimeoutMillis = admissionTimeoutMillis;
+        this.asyncHandlers = asyncHandlers;
+        this.handlerThreads = handlerThreads;
+        this.handlerQueueSize = handlerQueueSize;
+    }
+
+    /**
+     * @return the server configuration, using the server.* system properties where present. The request limit and
+     *         admission timeout default to the connection pool's maximum size and acquire timeout, and so does the
+     *         number of handler threads.
+     */
+    public static ServerConfig fromSystemProperties() {
+        PoolConfig pool = PoolConfig.fromSystemProperties();
+        return new ServerConfig(
+                System.getProperty("server.threads", PLATFORM),
+                Integer.getInteger("server.maxConcurrentRequests", pool.getMaxSize()),
+                Long.getLong("server.admissionTimeoutMillis", pool.getAcquireTimeoutMillis()),
+                Boolean.getBoolean("server.async"),
+                Integer.getInteger("server.handlerThreads", pool.getMaxSize()),
+                Integer.getInteger("server.handlerQueueSize", 256));
+    }
+
+    public boolean isVirtualThreads() {
+        return VIRTUAL.equals(threads);
+    }
+
+    public String getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return the most requests executed at once in virtual-thread mode.
+     */
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * @return how long a request waits for a free slot before it is answered with 503 Service Unavailable.
+     */
+    public long getAdmissionTimeoutMillis() {
+        return admissionTimeoutMillis;
+    }
+
+    public boolean isAsyncHandlers() {
+        return asyncHandlers;
+    }
+
+    /**
+     * @return the number of worker threads running handlers in async mode.
+     */
+    public int getHandlerThreads() {
+        return handlerThreads;
+    }
+
+    /**
+     * @return the most requests waiting for a handler thread in async mode.
+     */
+    public int getHandlerQueueSize() {
+        return handlerQueueSize;
+    }
+}
@@ -0,0 +1,187 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An LRU cache of prepared statements for a single physical connection, keyed by SQL text.
+ *
+ * A cached statement is checked out while in use, so two callers never share one; closing the statement handed
+ * out by {@link #prepare} clears its parameters and puts it back instead of closing it. When the cache is full
+ * the least recently used statement is closed for real.
+ */
+class StatementCache {
+    private final Connection physical;
+    private final int maxSize;
+    private final Counters counters;
+    private final LinkedHashMap<Key, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    StatementCache(Connection physical, int maxSize, Counters counters) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.counters = counters;
+    }
+
+    /**
+     * @param owner             the pooled connection handle that {@link Statement#getConnection()} should report.
+     * @param sql               the SQL text.
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} or {@link Statement#NO_GENERATED_KEYS}.
+     * @return a statement that returns itself to this cache when closed.
+     */
+    PreparedStatement prepare(Connection owner, String sql, int autoGeneratedKeys) throws SQLException {
+        if (maxSize <= 0) {
+            return physical.prepareStatement(sql, autoGeneratedKeys);
+        }
+        Key key = new Key(sql, autoGeneratedKeys);
+        PreparedStatement statement;
+        synchronized (this) {
+            statement = statements.remove(key);
+        }
+        if (statement == null || statement.isClosed()) {
+            counters.misses.incrementAndGet();
+            statement = physical.prepareStatement(sql, autoGeneratedKeys);
+        } else {
+            counters.hits.incrementAndGet();
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, new CachedStatement(owner, key, statement));
+    }
+
+    /**
+     * Close every cached statement; used when the physical connection is discarded.
+     */
+    synchronized void clear() {
+        for (PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+    }
+
+    synchronized int size() {
+        return statements.size();
+    }
+
+    private void checkIn(Key key, PreparedStatement statement) {
+        try {
+            if (physical.isClosed() || statement.isClosed()) {
+                return;
+            }
+            statement.clearParameters();
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            return;
+        }
+        PreparedStatement displaced;
+        synchronized (this) {
+            displaced = statements.put(key, statement);
+            Iterator<Map.Entry<Key, PreparedStatement>> eldest = statements.entrySet().iterator();
+            while (statements.size() > maxSize && eldest.hasNext()) {
+                PreparedStatement evicted = eldest.next().getValue();
+                eldest.remove();
+                counters.evictions.incrementAndGet();
+                closeQuietly(evicted);
+            }
+        }
+        if (displaced != null && displaced != statement) {
+            closeQuietly(displaced);
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Hit, miss and eviction counts, shared by all caches in a pool.
+     */
+    static class Counters {
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong evictions = new AtomicLong();
+    }
+
+    private static final class Key {
+        private final String sql;
+        private final int autoGeneratedKeys;
+
+        private Key(String sql, int autoGeneratedKeys) {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return autoGeneratedKeys == other.autoGeneratedKeys && sql.equals(other.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sql.hashCode() + autoGeneratedKeys;
+        }
+    }
+
+    /**
+     * The statement handed to callers. Closing it returns the underlying statement to the cache exactly once.
+     */
+    private class CachedStatement implements InvocationHandler {
+        private final Connection owner;
+        private final Key key;
+        private final PreparedStatement statement;
+        private boolean returned = false;
+
+        private CachedStatement(Connection owner, Key key, PreparedStatement statement) {
+            this.owner = owner;
+            this.key = key;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        checkIn(key, statement);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || statement.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached[" + statement + "]";
+                default:
+                    if (returned) {
+                        throw new SQLException("statement has already been closed");
+                    }
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
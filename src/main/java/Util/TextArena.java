@@ -0,0 +1,58 @@
+package Util;
+
+/**
+ * Append-only storage for UTF-8 text, addressed by byte offset. {@link MessageColumns} keeps message text in one,
+ * on the heap ({@link HeapTextArena}) or in memory-mapped files ({@link MappedTextArena}).
+ *
+ * Text is never changed or freed in place; an arena is replaced as a whole when its owner compacts. Arenas are not
+ * thread-safe on their own: appends must not overlap each other or {@link #close()}, though reads may overlap
+ * appends.
+ */
+public interface TextArena {
+    /**
+     * The longest text an arena must accept, in bytes.
+     */
+    int MAX_LENGTH = 1022;
+
+    /**
+     * Append text. A text is stored in one piece, so the arena may skip ahead to start it.
+     *
+     * @param source holds the bytes to append.
+     * @param from   where the bytes start in source.
+     * @param length how many bytes to append; at most {@link #MAX_LENGTH}.
+     * @return the offset the text was stored at.
+     */
+    long append(byte[] source, int from, int length);
+
+    /**
+     * @param offset where a text was stored.
+     * @param length its length in bytes.
+     * @return the text, decoded.
+     */
+    String read(long offset, int length);
+
+    /**
+     * Copy a stored text's bytes out.
+     *
+     * @param offset where the text was stored.
+     * @param length its length in bytes.
+     * @param target receives the bytes.
+     * @param at     where the bytes go in target.
+     */
+    void copy(long offset, int length, byte[] target, int at);
+
+    /**
+     * @return the offset the next text would be stored at if it fits, i.e. the bytes taken so far.
+     */
+    long size();
+
+    /**
+     * @return a new, empty arena of the same kind and settings.
+     */
+    TextArena empty();
+
+    /**
+     * Release the arena's memory. It must not be used afterwards.
+     */
+    void close();
+}
@@ -0,0 +1,105 @@
+package Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A thread-safe, bounded set of message IDs making up the newest part of one account's home timeline.
+ *
+ * IDs are kept sorted ascending in a fixed-size array. Once it is full, adding a newer ID drops the oldest one, and
+ * the timeline remembers that it no longer reaches back to the beginning. Reading a page is a binary search for the
+ * cursor followed by one step per ID returned.
+ *
+ * A timeline is created empty and unloaded; whoever loads it holds its monitor while doing so, so IDs added in the
+ * meantime wait and are merged with the loaded ones rather than lost.
+ */
+public class Timeline {
+    private final int[] ids;
+    private int size = 0;
+    private boolean truncated = false;
+    private boolean loaded = false;
+
+    /**
+     * @param capacity the most IDs to hold.
+     */
+    public Timeline(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.ids = new int[capacity];
+    }
+
+    /**
+     * Add a message ID; does nothing if it is already present or older than everything held by a full timeline.
+     *
+     * @param id the message ID.
+     */
+    public synchronized void add(int id) {
+        // New messages almost always carry the highest ID yet, which lands at the end without a search
+        int at = size == 0 || ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+        if (at >= 0 && at < size) {
+            return;
+        }
+        int insertAt = at < 0 ? -at - 1 : at;
+        if (size == ids.length) {
+            truncated = true;
+            if (insertAt == 0) {
+                return;
+            }
+            // Drop the oldest ID to make room
+            System.arraycopy(ids, 1, ids, 0, insertAt - 1);
+            ids[insertAt - 1] = id;
+            return;
+        }
+        System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+        ids[insertAt] = id;
+        size++;
+    }
+
+    /**
+     * Merge the IDs read from the database into the timeline and mark it loaded.
+     *
+     * @param newestFirst the newest IDs of the timeline, newest first.
+     * @param complete    false if older IDs exist that were not read.
+     */
+    public synchronized void load(List<Integer> newestFirst, boolean complete) {
+        for (int id : newestFirst) {
+            add(id);
+        }
+        if (!complete) {
+            truncated = true;
+        }
+        loaded = true;
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return true if the timeline has dropped, or never held, some of its oldest IDs.
+     */
+    public synchronized boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @param beforeId only IDs below this one are returned.
+     * @param limit    the most IDs to return.
+     * @return up to limit IDs below beforeId, newest first.
+     */
+    public synchronized List<Integer> before(int beforeId, int limit) {
+        int at = Arrays.binarySearch(ids, 0, size, beforeId);
+        int end = at < 0 ? -at - 1 : at;
+        List<Integer> page = new ArrayList<>(Math.min(limit, end));
+        for (int i = end - 1; i >= 0 && page.size() < limit; i--) {
+            page.add(ids[i]);
+        }
+        return page;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,429 @@
+package Util;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of records, split into numbered segment files, with group commit.
+ *
+ * Every record is framed as its length, a CRC32 of its bytes and then the bytes, so a reader can tell a complete
+ * record from one torn by a crash. Appending only queues the record; a single writer thread writes everything
+ * queued since its last pass and forces it to disk once, then wakes every appender whose record that covered.
+ * Under load, one fsync therefore commits many records.
+ *
+ * {@link #rotate()} seals the current segment and starts the next, so a snapshot can cover the sealed segments and
+ * they can be deleted. Segment files are named wal-&lt;number&gt;.log.
+ */
+public class WriteAheadLog implements Closeable {
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+    /**
+     * The largest record accepted; anything longer read back from a file means the length itself is corrupt.
+     */
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+    /**
+     * Queued in place of a record to have the writer move on to the next segment.
+     */
+    private static final byte[] ROTATE = new byte[0];
+
+    private final Path directory;
+    private final boolean fsync;
+    private final Thread writer;
+
+    // Guarded by this
+    private List<byte[]> pending = new ArrayList<>();
+    private long appended = 0;
+    private long durable = 0;
+    private long segment;
+    private long writingSegment;
+    private IOException failure = null;
+    private boolean closed = false;
+    private boolean stopped = false;
+    private long records = 0;
+    private long groupCommits = 0;
+    private long bytes = 0;
+
+    private FileChannel channel;
+
+    /**
+     * Open a log that appends to a new segment file.
+     *
+     * @param directory where the segment files live; created if missing.
+     * @param segment   the number of the first segment to write, which must not exist yet.
+     * @param fsync     whether every group commit is forced to disk, rather than only handed to the OS.
+     * @throws IOException if the segment file cannot be created.
+     */
+    public WriteAheadLog(Path directory, long segment, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.segment = segment;
+        this.writingSegment = segment;
+        Files.createDirectories(directory);
+        this.channel = openSegment(segment);
+        this.writer = new Thread(this::writeLoop, "wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queue a record. Records are written in the order they are appended.
+     *
+     * @param record the record's bytes.
+     * @return a ticket to pass to {@link #await(long)}.
+     */
+    public synchronized long append(byte[] record) {
+        if (record.length == 0 || record.length > MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("record length " + record.length);
+        }
+        pending.add(record);
+        records++;
+        notifyAll();
+        return ++appended;
+    }
+
+    /**
+     * Wait until a record is durable.
+     *
+     * @param ticket what {@link #append(byte[])} returned.
+     * @throws IOException if the log could not be written; the log accepts nothing after that.
+     */
+    public synchronized void await(long ticket) throws IOException {
+        boolean interrupted = false;
+        while (durable < ticket && failure == null && !stopped) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (durable < ticket) {
+            throw new IOException(failure == null ? "write-ahead log closed" : "write-ahead log failed", failure);
+        }
+    }
+
+    /**
+     * Seal the current segment. Records appended before this call are in it or an earlier one; records appended
+     * after go to the next.
+     *
+     * @return the number of the sealed segment.
+     */
+    public synchronized long rotate() {
+        pending.add(ROTATE);
+        appended++;
+        notifyAll();
+        return segment++;
+    }
+
+    /**
+     * Delete every segment up to and including the given one, once the writer has finished with them.
+     *
+     * @param lastSegment the newest segment to delete.
+     * @throws IOException if a file cannot be deleted.
+     */
+    public void deleteSegmentsThrough(long lastSegment) throws IOException {
+        synchronized (this) {
+            while (writingSegment <= lastSegment && failure == null && !stopped) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        for (long number : segments(directory)) {
+            if (number <= lastSegment) {
+                Files.deleteIfExists(segmentPath(directory, number));
+            }
+        }
+    }
+
+    /**
+     * @return a point-in-time snapshot of the log's counters.
+     */
+    public synchronized Stats getStats() {
+        return new Stats(records, groupCommits, bytes, segment);
+    }
+
+    /**
+     * Write out everything appended so far and stop the writer.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (failure != null) {
+                throw new IOException("write-ahead log failed", failure);
+            }
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                List<byte[]> batch;
+                long upTo;
+                synchronized (this) {
+                    while (pending.isEmpty() && !closed) {
+                        wait();
+                    }
+                    if (pending.isEmpty()) {
+                        break;
+                    }
+                    batch = pending;
+                    pending = new ArrayList<>();
+                    upTo = appended;
+                }
+                long written = write(batch);
+                synchronized (this) {
+                    durable = upTo;
+                    groupCommits++;
+                    bytes += written;
+                    notifyAll();
+                }
+            }
+            channel.close();
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+                notifyAll();
+            }
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                failure = new IOException("writer interrupted");
+                notifyAll();
+            }
+        } finally {
+            synchronized (this) {
+                stopped = true;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Write one group of records, switching segments at each rotation, and force what was written.
+     *
+     * @return the number of bytes written.
+     */
+    private long write(List<byte[]> batch) throws IOException {
+        long written = 0;
+        int from = 0;
+        for (int i = 0; i <= batch.size(); i++) {
+            if (i < batch.size() && batch.get(i) != ROTATE) {
+                continue;
+            }
+            written += writeFramed(channel, batch.subList(from, i));
+            if (fsync) {
+                channel.force(false);
+            }
+            if (i < batch.size()) {
+                channel.close();
+                long next;
+                synchronized (this) {
+                    next = writingSegment + 1;
+                }
+                channel = openSegment(next);
+                synchronized (this) {
+                    writingSegment = next;
+                    notifyAll();
+                }
+            }
+            from = i + 1;
+        }
+        return written;
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentPath(directory, number), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+    }
+
+    private static long writeFramed(FileChannel channel, List<byte[]> records) throws IOException {
+        if (records.isEmpty()) {
+            return 0;
+        }
+        int size = 0;
+        for (byte[] record : records) {
+            size += 8 + record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32 crc = new CRC32();
+        for (byte[] record : records) {
+            crc.reset();
+            crc.update(record);
+            buffer.putInt(record.length).putInt((int) crc.getValue()).put(record);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return size;
+    }
+
+    /**
+     * Write records to a new file in the same framing as the log, atomically: the file appears complete under its
+     * name or not at all.
+     *
+     * @param file    the file to create or replace.
+     * @param records the records to write.
+     * @param fsync   whether to force the file to disk before it is renamed into place.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void writeFile(Path file, Iterator<byte[]> records, boolean fsync) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            List<byte[]> chunk = new ArrayList<>();
+            int chunkBytes = 0;
+            while (records.hasNext()) {
+                byte[] record = records.next();
+                chunk.add(record);
+                chunkBytes += record.length;
+                if (chunkBytes >= 1 << 20) {
+                    writeFramed(out, chunk);
+                    chunk.clear();
+                    chunkBytes = 0;
+                }
+            }
+            writeFramed(out, chunk);
+            if (fsync) {
+                out.force(true);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read the records of a log segment or of a file written by {@link #writeFile}, stopping at the end of the
+     * file or at the first record that is torn or fails its checksum.
+     *
+     * @param file     the file to read.
+     * @param consumer receives each good record, in order.
+     * @return true if the whole file was read, false if reading stopped at a bad record.
+     * @throws IOException if the file cannot be read.
+     */
+    public static boolean readFile(Path file, Consumer<byte[]> consumer) throws IOException {
+        try (InputStream in = Files.newInputStream(file);
+                DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = data.readInt();
+                } catch (EOFException e) {
+                    return true;
+                }
+                try {
+                    int checksum = data.readInt();
+                    if (length <= 0 || length > MAX_RECORD_BYTES) {
+                        return false;
+                    }
+                    byte[] record = new byte[length];
+                    data.readFully(record);
+                    crc.reset();
+                    crc.update(record);
+                    if ((int) crc.getValue() != checksum) {
+                        return false;
+                    }
+                    consumer.accept(record);
+                } catch (EOFException e) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param directory a log directory.
+     * @return the numbers of the segments in it, in ascending order.
+     * @throws IOException if the directory cannot be listed.
+     */
+    public static List<Long> segments(Path directory) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return numbers;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                numbers.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+            }
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    public static Path segmentPath(Path directory, long number) {
+        return directory.resolve(String.format("%s%012d%s", PREFIX, number, SUFFIX));
+    }
+
+    public static class Stats {
+        private final long records;
+        private final long groupCommits;
+        private final long bytes;
+        private final long segment;
+
+        public Stats(long records, long groupCommits, long bytes, long segment) {
+            this.records = records;
+            this.groupCommits = groupCommits;
+            this.bytes = bytes;
+            this.segment = segment;
+        }
+
+        /**
+         * @return how many records were appended.
+         */
+        public long getRecords() {
+            return records;
+        }
+
+        /**
+         * @return how many times the writer wrote and forced a group of records.
+         */
+        public long getGroupCommits() {
+            return groupCommits;
+        }
+
+        /**
+         * @return how many bytes were written, framing included.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return the number of the segment new records go to.
+         */
+        public long getSegment() {
+            return segment;
+        }
+    }
+}
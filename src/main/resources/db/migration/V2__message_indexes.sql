@@ -0,0 +1,4 @@
+-- posted_by alone is already covered by the foreign key's index, which H2 keys by (posted_by, message_id);
+-- these cover the time-ordered reads, per account and across all accounts.
+create index if not exists message_posted_by_time_idx on message (posted_by, time_posted_epoch);
+create index if not exists message_time_posted_idx on message (time_posted_epoch);
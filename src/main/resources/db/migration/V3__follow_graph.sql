@@ -0,0 +1,12 @@
+-- Who follows whom. The primary key serves "whom does X follow"; the second index serves "who follows X".
+create table if not exists follow (
+    follower_id int,
+    followee_id int,
+    primary key (follower_id, followee_id),
+    foreign key (follower_id) references account(account_id),
+    foreign key (followee_id) references account(account_id)
+);
+create index if not exists follow_followee_idx on follow (followee_id, follower_id);
+-- Home timelines read each author's newest messages first; H2 only walks an index forwards, so keep this one
+-- in descending message_id order.
+create index if not exists message_posted_by_id_desc_idx on message (posted_by, message_id desc);
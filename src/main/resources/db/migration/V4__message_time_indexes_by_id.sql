@@ -0,0 +1,6 @@
+-- Time-ordered reads break ties on message_id. Ending each time index with message_id lets H2 return rows in
+-- index order for ORDER BY ..., time_posted_epoch, message_id instead of sorting them.
+drop index if exists message_posted_by_time_idx;
+create index message_posted_by_time_idx on message (posted_by, time_posted_epoch, message_id);
+drop index if exists message_time_posted_idx;
+create index message_time_posted_idx on message (time_posted_epoch, message_id);
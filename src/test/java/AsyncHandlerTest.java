@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import Model.Message;
+
+public class AsyncHandlerTest {
+    TestApi api;
+
+    /**
+     * Before every test, reset the database and restart the Javalin app with handlers running on the async
+     * executor.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        System.setProperty("server.async", "true");
+        api = TestApi.start();
+    }
+
+    @After
+    public void tearDown() {
+        api.stop();
+        System.clearProperty("server.async");
+    }
+
+    /**
+     * Creating, reading and listing messages with async handlers
+     *
+     * Expected Response:
+     *  Status Code: 200 for every request, with the same bodies as in the default mode
+     *  Response Body of GET localhost:8080/metrics: a handler_executor section counting the completed requests
+     */
+    @Test
+    public void asyncHandlersServeRequests() throws IOException, InterruptedException {
+        Assert.assertEquals(new Message(2, 1, "async message", 1669947793),
+                api.postMessage(1, "async message", 1669947793));
+        Assert.assertEquals(new Message(2, 1, "async message", 1669947793),
+                api.getJson("/messages/2", Message.class));
+
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(1, 1, "test message 1", 1669947792));
+        expected.add(new Message(2, 1, "async message", 1669947793));
+        Assert.assertEquals(expected, api.getJson("/messages", new TypeReference<List<Message>>(){}));
+
+        JsonNode metrics = api.getJson("/metrics", JsonNode.class);
+        Assert.assertTrue(metrics.get("handler_executor").get("completed").asLong() >= 3);
+        Assert.assertEquals(0, metrics.get("handler_executor").get("rejected").asLong());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with blank message_text through an async handler
+     *
+     * Expected Response:
+     *  Status Code: 400
+     *  Response Body:
+     */
+    @Test
+    public void asyncHandlerKeepsErrorResponses() throws IOException, InterruptedException {
+        HttpResponse<String> response = api.send("POST", "/messages", "{" +
+                "\"posted_by\":1, " +
+                "\"message_text\": \"\", " +
+                "\"time_posted_epoch\": 1669947793}");
+        Assert.assertEquals(400, response.statusCode());
+        Assert.assertEquals("", response.body());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?stream=true through an async handler
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON array holding the seeded message
+     */
+    @Test
+    public void asyncHandlerStreamsMessages() throws IOException, InterruptedException {
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(1, 1, "test message 1", 1669947792));
+        Assert.assertEquals(expected, api.getJson("/messages?stream=true", new TypeReference<List<Message>>(){}));
+    }
+}
@@ -0,0 +1,136 @@
+import java.io.IOException;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Model.Account;
+import Model.Message;
+import Service.SessionService;
+
+public class AuthTokenTest {
+    TestApi api;
+
+    /**
+     * Before every test, reset the database and restart the Javalin app with bearer tokens required for message
+     * writes.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        System.setProperty("auth.required", "true");
+        api = TestApi.start();
+    }
+
+    @After
+    public void tearDown() {
+        api.stop();
+        System.clearProperty("auth.required");
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/login and using the returned token to create a message
+     *
+     * Expected Response:
+     *  Status Code: 200 for both requests
+     *  Response Body of the login: the account, unchanged, with the token in the X-Auth-Token header
+     */
+    @Test
+    public void loginTokenAuthorizesWrites() throws IOException, InterruptedException {
+        HttpResponse<String> loginResponse = login("testuser1", "password");
+        Assert.assertEquals(200, loginResponse.statusCode());
+        Assert.assertEquals(new Account(1, "testuser1", "password"),
+                api.getObjectMapper().readValue(loginResponse.body(), Account.class));
+        String token = loginResponse.headers().firstValue(SocialMediaController.AUTH_TOKEN_HEADER).orElse(null);
+        Assert.assertNotNull(token);
+
+        HttpResponse<String> postResponse = postMessage(1, token);
+        Assert.assertEquals(200, postResponse.statusCode());
+        Assert.assertEquals(new Message(2, 1, "authorized message", 1669947793),
+                api.getObjectMapper().readValue(postResponse.body(), Message.class));
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages without a token, and with a forged one
+     *
+     * Expected Response:
+     *  Status Code: 401 for both, while GET localhost:8080/messages still answers 200
+     */
+    @Test
+    public void writeWithoutValidTokenIsUnauthorized() throws IOException, InterruptedException {
+        Assert.assertEquals(401, postMessage(1, null).statusCode());
+        Assert.assertEquals(401, postMessage(1, "djE6MToxOjk5OTk5OTk5OTk5OTk6eA.c2lnbmF0dXJl").statusCode());
+        Assert.assertEquals(200, api.get("/messages").statusCode());
+    }
+
+    /**
+     * Deleting another account's message, and posting in another account's name, with a valid token
+     *
+     * Expected Response:
+     *  Status Code: 403 for both
+     */
+    @Test
+    public void writeForAnotherAccountIsForbidden() throws IOException, InterruptedException {
+        api.register("otheruser");
+        String token = login("otheruser", "password").headers()
+                .firstValue(SocialMediaController.AUTH_TOKEN_HEADER).orElseThrow();
+
+        Assert.assertEquals(403, api.send("DELETE", "/messages/1", null, "Authorization", "Bearer " + token)
+                .statusCode());
+        Assert.assertEquals(403, postMessage(1, token).statusCode());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/logout, then reusing the token
+     *
+     * Expected Response:
+     *  Status Code: 200 for the logout, then 401 for both the write and a second logout
+     */
+    @Test
+    public void logoutRevokesToken() throws IOException, InterruptedException {
+        String token = login("testuser1", "password").headers()
+                .firstValue(SocialMediaController.AUTH_TOKEN_HEADER).orElseThrow();
+        Assert.assertEquals(200, api.send("POST", "/logout", null, "Authorization", "Bearer " + token).statusCode());
+
+        Assert.assertEquals(401, postMessage(1, token).statusCode());
+        Assert.assertEquals(401, api.send("POST", "/logout", null, "Authorization", "Bearer " + token).statusCode());
+    }
+
+    /**
+     * Refreshing a token halfway through its lifetime, then logging out with the refreshed one
+     *
+     * Expected: both tokens belong to the same session, and logging out with either one revokes both
+     */
+    @Test
+    public void logoutRevokesRefreshedTokens() throws InterruptedException {
+        SessionService sessions = new SessionService(new byte[32], 10_000);
+        String original = sessions.issueToken(1);
+        Thread.sleep(5_100);
+        String refreshed = sessions.refresh(sessions.verify(original));
+        Assert.assertNotNull(refreshed);
+        Assert.assertNotNull(sessions.verify(original));
+
+        sessions.revoke(sessions.verify(refreshed));
+        Assert.assertNull(sessions.verify(refreshed));
+        Assert.assertNull(sessions.verify(original));
+        Assert.assertNotNull(sessions.verify(sessions.issueToken(1)));
+    }
+
+    private HttpResponse<String> login(String username, String password) throws IOException, InterruptedException {
+        return api.send("POST", "/login", "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}");
+    }
+
+    private HttpResponse<String> postMessage(int postedBy, String token) throws IOException, InterruptedException {
+        String body = "{" +
+                "\"posted_by\":" + postedBy + ", " +
+                "\"message_text\": \"authorized message\", " +
+                "\"time_posted_epoch\": 1669947793}";
+        if (token == null) {
+            return api.send("POST", "/messages", body);
+        }
+        return api.send("POST", "/messages", body, "Authorization", "Bearer " + token);
+    }
+}
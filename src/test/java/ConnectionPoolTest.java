@@ -0,0 +1,218 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import Util.ConnectionPool;
+import Util.PoolConfig;
+
+public class ConnectionPoolTest {
+    private static final AtomicInteger databases = new AtomicInteger();
+
+    ConnectionPool pool;
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    /**
+     * Borrowing from a pool whose only connection is already borrowed
+     *
+     * Expected: the borrow times out after the acquire timeout, and succeeds once the connection is returned
+     */
+    @Test
+    public void borrowTimesOutWhenExhausted() throws SQLException {
+        pool = newPool(new PoolConfig(0, 1, 100, 600_000, 0, false, 5_000, 2, 60_000, 8));
+        Connection held = pool.borrow();
+        long start = System.nanoTime();
+        try {
+            pool.borrow();
+            Assert.fail("borrowed more connections than the pool holds");
+        } catch (SQLTimeoutException e) {
+            Assert.assertTrue(System.nanoTime() - start >= 90_000_000L);
+        }
+        Assert.assertEquals(1, pool.getStats().getAcquireTimeouts());
+
+        held.close();
+        try (Connection connection = pool.borrow()) {
+            Assert.assertFalse(connection.isClosed());
+        }
+    }
+
+    /**
+     * Connections returned and then left idle past the idle timeout
+     *
+     * Expected: the housekeeper closes them down to the minimum size
+     */
+    @Test
+    public void idleConnectionsAreEvicted() throws SQLException {
+        pool = newPool(new PoolConfig(1, 3, 1_000, 50, 0, false, 5_000, 2, 20, 8));
+        Connection first = pool.borrow();
+        Connection second = pool.borrow();
+        Connection third = pool.borrow();
+        first.close();
+        second.close();
+        third.close();
+        Assert.assertEquals(3, pool.getStats().getTotal());
+
+        awaitTrue(() -> pool.getStats().getTotal() == 1);
+        Assert.assertEquals(2, pool.getStats().getConnectionsEvicted());
+    }
+
+    /**
+     * An idle connection that died while in the pool
+     *
+     * Expected: it fails validation and is replaced by a working connection
+     */
+    @Test
+    public void brokenIdleConnectionIsReplaced() throws SQLException {
+        pool = newPool(new PoolConfig(0, 1, 1_000, 600_000, 0, false, 0, 2, 60_000, 8));
+        Connection borrowed = pool.borrow();
+        Connection physical = borrowed.unwrap(Connection.class);
+        borrowed.close();
+        physical.close();
+
+        try (Connection connection = pool.borrow();
+                Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT 1")) {
+            Assert.assertTrue(rs.next());
+        }
+        Assert.assertEquals(1, pool.getStats().getValidationFailures());
+        Assert.assertEquals(1, pool.getStats().getTotal());
+    }
+
+    /**
+     * A connection kept borrowed for longer than the leak detection threshold
+     *
+     * Expected: it is reported once, and nothing is reported for connections returned in time
+     */
+    @Test
+    public void longBorrowIsReportedAsLeak() throws SQLException {
+        pool = newPool(new PoolConfig(0, 2, 1_000, 600_000, 50, false, 5_000, 2, 20, 8));
+        pool.borrow().close();
+        Connection leaked = pool.borrow();
+        try {
+            awaitTrue(() -> pool.getStats().getLeaksDetected() == 1);
+            sleep(100);
+            Assert.assertEquals(1, pool.getStats().getLeaksDetected());
+        } finally {
+            leaked.close();
+        }
+    }
+
+    /**
+     * Taking back a connection its borrower never closed
+     *
+     * Expected: the pool can lend it out again, and the forgotten handle can no longer be used
+     */
+    @Test
+    public void unclosedConnectionIsReclaimed() throws SQLException {
+        pool = newPool(new PoolConfig(0, 1, 100, 600_000, 0, false, 5_000, 2, 60_000, 8));
+        Connection forgotten = pool.borrow();
+        forgotten.prepareStatement("SELECT 1");
+
+        Assert.assertEquals(1, pool.reclaimBorrowed());
+        Assert.assertTrue(forgotten.isClosed());
+        Assert.assertEquals(0, pool.getStats().getActive());
+        try {
+            forgotten.createStatement();
+            Assert.fail("used a connection after it was reclaimed");
+        } catch (SQLException e) {
+            // expected
+        }
+
+        forgotten.close();
+        try (Connection connection = pool.borrow()) {
+            Assert.assertFalse(connection.isClosed());
+            Assert.assertEquals(1, pool.getStats().getActive());
+        }
+    }
+
+    /**
+     * A connection returned in the middle of a transaction
+     *
+     * Expected: the transaction is rolled back and the next borrower gets the connection in autocommit mode
+     */
+    @Test
+    public void returnedConnectionIsRolledBackAndReset() throws SQLException {
+        pool = newPool(new PoolConfig(0, 1, 1_000, 600_000, 0, false, 5_000, 2, 60_000, 8));
+        try (Connection connection = pool.borrow(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE item (id INT)");
+        }
+        try (Connection connection = pool.borrow(); Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            statement.execute("INSERT INTO item VALUES (1)");
+        }
+
+        try (Connection connection = pool.borrow();
+                Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM item")) {
+            Assert.assertTrue(connection.getAutoCommit());
+            Assert.assertTrue(rs.next());
+            Assert.assertEquals(0, rs.getInt(1));
+        }
+    }
+
+    /**
+     * A connection closed twice and then used
+     *
+     * Expected: it goes back to the pool once, and using it afterwards fails
+     */
+    @Test
+    public void returnedHandleCannotBeUsed() throws SQLException {
+        pool = newPool(new PoolConfig(0, 1, 100, 600_000, 0, false, 5_000, 2, 60_000, 8));
+        Connection connection = pool.borrow();
+        connection.close();
+        connection.close();
+        Assert.assertTrue(connection.isClosed());
+        Assert.assertEquals(0, pool.getStats().getActive());
+        try {
+            connection.createStatement();
+            Assert.fail("used a connection after returning it");
+        } catch (SQLException e) {
+            // expected
+        }
+
+        // A second release would have handed out a permit the pool does not have
+        Connection only = pool.borrow();
+        try {
+            pool.borrow();
+            Assert.fail("borrowed more connections than the pool holds");
+        } catch (SQLTimeoutException e) {
+            // expected
+        } finally {
+            only.close();
+        }
+    }
+
+    private static ConnectionPool newPool(PoolConfig config) {
+        String url = "jdbc:h2:mem:pool" + databases.incrementAndGet() + ";DB_CLOSE_DELAY=-1";
+        return new ConnectionPool(url, "sa", "sa", config);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue("timed out waiting for the housekeeper", System.currentTimeMillis() < deadline);
+            sleep(10);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
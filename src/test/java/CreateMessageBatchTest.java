@@ -0,0 +1,93 @@
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import Model.BatchItemResult;
+import Model.Message;
+
+public class CreateMessageBatchTest {
+    TestApi api;
+
+    /**
+     * Before every test, reset the database and restart the Javalin app.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        api = TestApi.start();
+    }
+
+    @After
+    public void tearDown() {
+        api.stop();
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with a JSON array holding two valid messages,
+     * a blank message and a message from a user that does not exist
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one result per item; the valid messages created with new ids, the others rejected
+     */
+    @Test
+    public void createMessageBatchReportsEachItem() throws IOException, InterruptedException {
+        HttpResponse<String> response = api.send("POST", "/messages/batch", "[" +
+                "{\"posted_by\":1, \"message_text\": \"first\", \"time_posted_epoch\": 1669947793}," +
+                "{\"posted_by\":1, \"message_text\": \"\", \"time_posted_epoch\": 1669947794}," +
+                "{\"posted_by\":3, \"message_text\": \"nobody\", \"time_posted_epoch\": 1669947795}," +
+                "{\"posted_by\":1, \"message_text\": \"second\", \"time_posted_epoch\": 1669947796}]");
+        Assert.assertEquals(200, response.statusCode());
+
+        List<BatchItemResult> results = api.getObjectMapper().readValue(response.body(),
+                new TypeReference<List<BatchItemResult>>(){});
+        Assert.assertEquals(4, results.size());
+        Assert.assertEquals(new Message(2, 1, "first", 1669947793), results.get(0).getMessage());
+        Assert.assertNull(results.get(0).getError());
+        Assert.assertNull(results.get(1).getMessage());
+        Assert.assertNotNull(results.get(1).getError());
+        Assert.assertNull(results.get(2).getMessage());
+        Assert.assertNotNull(results.get(2).getError());
+        Assert.assertEquals(new Message(3, 1, "second", 1669947796), results.get(3).getMessage());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with an NDJSON body
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one created message per line
+     */
+    @Test
+    public void createMessageBatchFromNdjson() throws IOException, InterruptedException {
+        HttpResponse<String> response = api.send("POST", "/messages/batch",
+                "{\"posted_by\":1, \"message_text\": \"first\", \"time_posted_epoch\": 1669947793}\n" +
+                "{\"posted_by\":1, \"message_text\": \"second\", \"time_posted_epoch\": 1669947794}\n",
+                "Content-Type", "application/x-ndjson");
+        Assert.assertEquals(200, response.statusCode());
+
+        List<BatchItemResult> results = api.getObjectMapper().readValue(response.body(),
+                new TypeReference<List<BatchItemResult>>(){});
+        Assert.assertEquals(new Message(2, 1, "first", 1669947793), results.get(0).getMessage());
+        Assert.assertEquals(new Message(3, 1, "second", 1669947794), results.get(1).getMessage());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with a body that is not a list of messages
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void createMessageBatchMalformedBody() throws IOException, InterruptedException {
+        HttpResponse<String> response = api.send("POST", "/messages/batch", "{\"posted_by\":1}");
+        Assert.assertEquals(400, response.statusCode());
+    }
+}
@@ -0,0 +1,143 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import Model.Message;
+import Model.MessagePage;
+
+public class FeedTest {
+    TestApi api;
+
+    /**
+     * Before every test, reset the database and restart the Javalin app. Accounts with more than one follower count
+     * as celebrities, so both the pushed and the pulled path are exercised.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        System.setProperty("feed.celebrityThreshold", "1");
+        api = TestApi.start();
+    }
+
+    @After
+    public void tearDown() {
+        api.stop();
+        System.clearProperty("feed.celebrityThreshold");
+    }
+
+    /**
+     * Following an account, reading the feed in pages, then unfollowing
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the reader's own and the followed account's messages, newest first, with a cursor between
+     *  pages; after unfollowing, only the reader's own messages
+     */
+    @Test
+    public void feedShowsFollowedMessagesNewestFirst() throws IOException, InterruptedException {
+        int reader = api.register("reader");
+        Assert.assertEquals(200, api.send("POST", "/accounts/" + reader + "/following/1", null).statusCode());
+        api.postMessage(1, "followed one", 1669947800);
+        api.postMessage(reader, "my own", 1669947801);
+        api.postMessage(1, "followed two", 1669947802);
+
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(4, 1, "followed two", 1669947802));
+        expected.add(new Message(3, reader, "my own", 1669947801));
+        expected.add(new Message(2, 1, "followed one", 1669947800));
+        expected.add(new Message(1, 1, "test message 1", 1669947792));
+        MessagePage all = feed(reader, "");
+        Assert.assertEquals(expected, all.getMessages());
+        Assert.assertNull(all.getNext_cursor());
+
+        MessagePage first = feed(reader, "?limit=3");
+        Assert.assertEquals(expected.subList(0, 3), first.getMessages());
+        MessagePage second = feed(reader, "?limit=3&after=" + first.getNext_cursor());
+        Assert.assertEquals(expected.subList(3, 4), second.getMessages());
+        Assert.assertNull(second.getNext_cursor());
+
+        Assert.assertEquals(200, api.send("DELETE", "/accounts/" + reader + "/following/1", null).statusCode());
+        Assert.assertEquals(expected.subList(1, 2), feed(reader, "").getMessages());
+    }
+
+    /**
+     * Reading the feed, then posting as the followed account and as the reader
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the new messages are pushed into the timeline kept since the first read, which is not built
+     *  again
+     */
+    @Test
+    public void newMessagesArePushedIntoKeptTimelines() throws IOException, InterruptedException {
+        int reader = api.register("reader");
+        Assert.assertEquals(200, api.send("POST", "/accounts/" + reader + "/following/1", null).statusCode());
+        Assert.assertEquals(1, feed(reader, "").getMessages().size());
+
+        api.postMessage(1, "followed", 1669947800);
+        api.postMessage(reader, "my own", 1669947801);
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(3, reader, "my own", 1669947801));
+        expected.add(new Message(2, 1, "followed", 1669947800));
+        expected.add(new Message(1, 1, "test message 1", 1669947792));
+        Assert.assertEquals(expected, feed(reader, "").getMessages());
+
+        JsonNode feedStats = api.getJson("/metrics", JsonNode.class).get("feed");
+        Assert.assertEquals(1, feedStats.get("timelineBuilds").asLong());
+        Assert.assertEquals(2, feedStats.get("pushes").asLong());
+    }
+
+    /**
+     * An account gains a second follower, becoming a celebrity whose messages are pulled, then loses it again
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the first follower's feed holds every message whichever way it was delivered
+     */
+    @Test
+    public void celebrityMessagesArePulledOnRead() throws IOException, InterruptedException {
+        int fan = api.register("fan");
+        int otherFan = api.register("otherfan");
+        Assert.assertEquals(200, api.send("POST", "/accounts/" + fan + "/following/1", null).statusCode());
+        api.postMessage(1, "pushed", 1669947800);
+        Assert.assertEquals(2, feed(fan, "").getMessages().size());
+
+        Assert.assertEquals(200, api.send("POST", "/accounts/" + otherFan + "/following/1", null).statusCode());
+        api.postMessage(1, "pulled", 1669947801);
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(3, 1, "pulled", 1669947801));
+        expected.add(new Message(2, 1, "pushed", 1669947800));
+        expected.add(new Message(1, 1, "test message 1", 1669947792));
+        Assert.assertEquals(expected, feed(fan, "").getMessages());
+        Assert.assertEquals(expected, feed(otherFan, "").getMessages());
+
+        Assert.assertEquals(200, api.send("DELETE", "/accounts/" + otherFan + "/following/1", null).statusCode());
+        api.postMessage(1, "pushed again", 1669947802);
+        expected.add(0, new Message(4, 1, "pushed again", 1669947802));
+        Assert.assertEquals(expected, feed(fan, "").getMessages());
+    }
+
+    /**
+     * Following oneself or an account that does not exist
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void invalidFollowIsRejected() throws IOException, InterruptedException {
+        Assert.assertEquals(400, api.send("POST", "/accounts/1/following/1", null).statusCode());
+        Assert.assertEquals(400, api.send("POST", "/accounts/1/following/99", null).statusCode());
+        Assert.assertEquals(400, api.send("POST", "/accounts/1/following/someone", null).statusCode());
+    }
+
+    private MessagePage feed(int accountId, String query) throws IOException, InterruptedException {
+        return api.getJson("/accounts/" + accountId + "/feed" + query, MessagePage.class);
+    }
+}
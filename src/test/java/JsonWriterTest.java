@@ -0,0 +1,101 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.ModelJsonMapper;
+import Model.Account;
+import Model.BatchItemResult;
+import Model.Message;
+import Model.MessagePage;
+import Util.JsonWriter;
+
+public class JsonWriterTest {
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Text with every ASCII character, multi-byte characters, a surrogate pair, a lone surrogate and markup
+     *
+     * Expected: the same bytes as the controller sent with Jackson, a String encoded in UTF-8, for messages,
+     * accounts, pages, batch results and lists of them
+     */
+    @Test
+    public void writesWhatJacksonWrites() throws IOException {
+        StringBuilder ascii = new StringBuilder();
+        for (char c = 0; c < 0x80; c++) {
+            ascii.append(c);
+        }
+        String text = ascii + " caf\u00e9 \u2713 \ud83d\ude00 \ud800 </script>";
+        Message message = new Message(Integer.MAX_VALUE, -7, text, Long.MIN_VALUE);
+        Message noText = new Message(0, 1, null, -1L);
+        List<Object> values = Arrays.asList(
+                message,
+                noText,
+                new Message(12345, 678, "", 1669947792L),
+                new Account(1, "user \"one\"", "secret\\"),
+                new Account(Integer.MIN_VALUE, null, null),
+                new MessagePage(Arrays.asList(message, noText), "abc"),
+                new MessagePage(Collections.emptyList(), null),
+                new BatchItemResult(3, message, null),
+                new BatchItemResult(4, null, "message_text is blank"),
+                Arrays.asList(message, noText),
+                Collections.emptyList());
+        for (Object value : values) {
+            byte[] expected = objectMapper.writeValueAsString(value).getBytes(StandardCharsets.UTF_8);
+            byte[] actual = JsonWriter.forThread().write(value).toByteArray();
+            Assert.assertArrayEquals(String.valueOf(value), expected, actual);
+        }
+    }
+
+    /**
+     * A listing large enough to grow the thread's buffer past what it keeps, then a small message
+     *
+     * Expected: both come out whole, the second without any of the first
+     */
+    @Test
+    public void reusedBufferStartsEmpty() throws IOException {
+        List<Message> messages = new ArrayList<>();
+        for (int id = 1; id <= 5_000; id++) {
+            messages.add(new Message(id, id % 10, "message number " + id + " of a long listing", id));
+        }
+        Assert.assertEquals(objectMapper.writeValueAsString(messages),
+                JsonWriter.forThread().write(messages).toString());
+        Message message = new Message(1, 2, "hi", 3);
+        Assert.assertEquals(objectMapper.writeValueAsString(message),
+                JsonWriter.forThread().write(message).toString());
+    }
+
+    /**
+     * The mapper given models, a list mixing models with other objects, other objects, and a string
+     *
+     * Expected: models and other objects both serialized as Jackson would; the string sent as it is
+     */
+    @Test
+    public void mapperFallsBackToJackson() throws IOException {
+        ModelJsonMapper mapper = new ModelJsonMapper(objectMapper);
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("server_threads", 8);
+        metrics.put("message", new Message(1, 2, "hi", 3));
+        List<Object> mixed = Arrays.asList(new Message(1, 2, "hi", 3), "not a model");
+        for (Object value : Arrays.asList(new Message(1, 2, "hi", 3), metrics, mixed)) {
+            String expected = objectMapper.writeValueAsString(value);
+            Assert.assertEquals(expected, mapper.toJsonString(value, value.getClass()));
+            try (InputStream stream = mapper.toJsonStream(value, value.getClass())) {
+                Assert.assertEquals(expected, new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        Assert.assertEquals("{\"raw\":true}", mapper.toJsonString("{\"raw\":true}", String.class));
+        Message parsed = mapper.fromJsonString("{\"posted_by\":2,\"message_text\":\"hi\"}", Message.class);
+        Assert.assertEquals("hi", parsed.getMessage_text());
+    }
+}
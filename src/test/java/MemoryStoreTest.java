@@ -0,0 +1,201 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountRepository;
+import DAO.FollowRepository;
+import DAO.MemoryStore;
+import DAO.MessageRepository;
+import Model.Account;
+import Model.Message;
+import Util.ConnectionUtil;
+import Util.WriteAheadLog;
+
+public class MemoryStoreTest {
+    Path directory;
+    MemoryStore store;
+
+    /**
+     * Before every test, reset the database, which a new store imports, and open a store in an empty directory.
+     * @throws IOException
+     */
+    @Before
+    public void setUp() throws IOException {
+        ConnectionUtil.resetTestDatabase();
+        directory = Files.createTempDirectory("store");
+        store = MemoryStore.open(directory, false, 1_000);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Changes made before and after a snapshot, then a restart
+     *
+     * Expected: the reopened store holds exactly the same accounts, messages and follows, and does not reuse the
+     * ID of a deleted message
+     */
+    @Test
+    public void reopenedStoreRecoversSnapshotAndLog() throws IOException {
+        MessageRepository messages = store.getMessageRepository();
+        Account second = store.getAccountRepository().insertAccount("seconduser", "password");
+        messages.insertMessage(new Message(second.getAccount_id(), "before the snapshot", 10));
+        store.getFollowRepository().insertFollow(second.getAccount_id(), 1);
+        store.snapshot();
+        messages.updateMessageText(2, "edited after the snapshot");
+        messages.insertMessages(List.of(new Message(1, "batch one", 20), new Message(1, "batch two", 30)));
+        messages.deleteMessage(4);
+        List<Message> before = all(messages);
+
+        store = reopen();
+        Assert.assertEquals(before, all(store.getMessageRepository()));
+        Assert.assertEquals(second, store.getAccountRepository().getAccountByUsername("seconduser"));
+        Assert.assertArrayEquals(new int[] { 2 }, store.getFollowRepository().getFollowerIds(1));
+        Assert.assertEquals(5, store.getMessageRepository().insertMessage(new Message(1, "next", 40))
+                .getMessage_id());
+        Assert.assertTrue(store.getStats().getRecoveredRecords() > 0);
+    }
+
+    /**
+     * A log segment whose last record was torn by a crash
+     *
+     * Expected: every complete record is recovered and the torn one is ignored
+     */
+    @Test
+    public void tornRecordAtEndOfLogIsIgnored() throws IOException {
+        store.getMessageRepository().insertMessage(new Message(1, "survives", 10));
+        store.close();
+        List<Long> segments = WriteAheadLog.segments(directory);
+        Path last = WriteAheadLog.segmentPath(directory, segments.get(segments.size() - 1));
+        Files.write(last, new byte[] { 0, 0, 0, 40, 1, 2, 3 }, StandardOpenOption.APPEND);
+
+        store = MemoryStore.open(directory, false, 1_000);
+        Assert.assertEquals("survives", store.getMessageRepository().getMessageById(2).getMessage_text());
+        Assert.assertNotNull(store.getMessageRepository().insertMessage(new Message(1, "still writable", 20)));
+    }
+
+    /**
+     * Writes that break the constraints of the relational schema
+     *
+     * Expected: they are refused, as the database would refuse them, and nothing is logged
+     */
+    @Test
+    public void constraintsMatchTheSchema() throws IOException {
+        AccountRepository accounts = store.getAccountRepository();
+        MessageRepository messages = store.getMessageRepository();
+        FollowRepository follows = store.getFollowRepository();
+        long records = store.getStats().getLogRecords();
+
+        Assert.assertNull(accounts.insertAccount("testuser1", "password"));
+        Assert.assertNull(messages.insertMessage(new Message(99, "no such author", 10)));
+        Assert.assertNull(messages.insertMessages(List.of(new Message(1, "fine", 10), new Message(1, "x".repeat(256), 10))));
+        Assert.assertFalse(follows.insertFollow(1, 99));
+        accounts.deleteAccount(1);
+        Assert.assertTrue(accounts.doesAccountExistAccountID(1));
+        Assert.assertEquals(records, store.getStats().getLogRecords());
+    }
+
+    /**
+     * Many threads writing at once with fsync on
+     *
+     * Expected: every write is durable and the writes share group commits
+     */
+    @Test
+    public void concurrentWritersShareGroupCommits() throws Exception {
+        store.close();
+        store = MemoryStore.open(directory, true, 1_000_000);
+        MessageRepository messages = store.getMessageRepository();
+        long records = store.getStats().getLogRecords();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 25; i++) {
+                    Assert.assertNotNull(messages.insertMessage(new Message(1, "concurrent", i)));
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        MemoryStore.Stats stats = store.getStats();
+        Assert.assertEquals(records + 200, stats.getLogRecords());
+        Assert.assertTrue(stats.getGroupCommits() < stats.getLogRecords());
+        store = reopen();
+        Assert.assertEquals(201, all(store.getMessageRepository()).size());
+    }
+
+    /**
+     * A first start while the database cannot be read in full, then a start once it can
+     *
+     * Expected: the first start fails and writes nothing, so the second imports everything
+     */
+    @Test
+    public void failedImportIsNotSaved() throws IOException, SQLException {
+        Path empty = Files.createTempDirectory("store");
+        try (Connection connection = ConnectionUtil.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE follow RENAME TO follow_moved");
+        }
+        try {
+            MemoryStore.open(empty, false, 1_000);
+            Assert.fail("opened a store from a partial import");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getCause() instanceof SQLException);
+        }
+        try (Stream<Path> files = Files.list(empty)) {
+            Assert.assertEquals(0, files.count());
+        }
+
+        try (Connection connection = ConnectionUtil.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE follow_moved RENAME TO follow");
+        }
+        MemoryStore imported = MemoryStore.open(empty, false, 1_000);
+        try {
+            Assert.assertEquals(all(store.getMessageRepository()),
+                    all(imported.getMessageRepository()));
+        } finally {
+            imported.close();
+            try (Stream<Path> files = Files.list(empty)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(empty);
+        }
+    }
+
+    private MemoryStore reopen() throws IOException {
+        store.close();
+        return MemoryStore.open(directory, false, 1_000);
+    }
+
+    private static List<Message> all(MessageRepository messages) {
+        List<Message> all = new ArrayList<>();
+        messages.streamAllMessages(all::add);
+        return all;
+    }
+}
@@ -0,0 +1,138 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Model.Message;
+import Util.MappedTextArena;
+import Util.MessageColumns;
+
+public class MessageColumnsTest {
+    MessageColumns columns;
+
+    @Before
+    public void setUp() {
+        columns = new MessageColumns();
+    }
+
+    /**
+     * Messages posted out of time order, enough of them to merge the time index several times over
+     *
+     * Expected: time ranges come back by time posted, then ID, for all messages and for each author
+     */
+    @Test
+    public void outOfOrderTimesAreIndexed() {
+        List<Message> expected = new ArrayList<>();
+        for (int id = 1; id <= 20_000; id++) {
+            Message message = new Message(id, id % 7, "message " + id, (id * 7919L) % 5_000);
+            columns.add(message.getMessage_id(), message.getPosted_by(), message.getMessage_text(),
+                    message.getTime_posted_epoch());
+            expected.add(message);
+        }
+        expected.sort(Comparator.comparingLong(Message::getTime_posted_epoch)
+                .thenComparingInt(Message::getMessage_id));
+
+        List<Message> all = new ArrayList<>();
+        columns.forEachInTimeRange(1_000, 4_000, all::add);
+        Assert.assertEquals(inRange(expected, 1_000, 4_000), all);
+        List<Message> byAuthor = new ArrayList<>();
+        columns.forEachByAuthorInTimeRange(3, 1_000, 4_000, byAuthor::add);
+        Assert.assertEquals(inRange(expected, 1_000, 4_000).stream().filter(message -> message.getPosted_by() == 3)
+                .collect(Collectors.toList()), byAuthor);
+    }
+
+    /**
+     * Most messages deleted and the rest edited, so the columns are compacted
+     *
+     * Expected: every remaining message and index reads the same as before the compaction
+     */
+    @Test
+    public void compactionKeepsLiveMessages() {
+        for (int id = 1; id <= 10_000; id++) {
+            columns.add(id, id % 10, "message " + id, id);
+        }
+        for (int id = 1; id <= 10_000; id++) {
+            if (id % 3 != 0) {
+                Assert.assertTrue(columns.remove(id));
+            } else {
+                Assert.assertTrue(columns.setText(id, id % 2 == 0 ? null : "edited \u2713 " + id));
+            }
+        }
+        Assert.assertFalse(columns.remove(1));
+        Assert.assertFalse(columns.setText(1, "gone"));
+
+        MessageColumns.Stats stats = columns.getStats();
+        Assert.assertTrue(stats.getCompactions() > 0);
+        Assert.assertEquals(3_333, stats.getMessages());
+        Assert.assertEquals(new Message(9, 9, "edited \u2713 9", 9), columns.get(9));
+        Assert.assertNull(columns.get(6).getMessage_text());
+        Assert.assertNull(columns.get(10));
+        Assert.assertEquals(List.of(3, 6, 9), ids(columns.getAfter(0, 3)));
+        Assert.assertEquals(List.of(21, 51), ids(columns.getByAuthorAfter(1, 0, 2)));
+        Assert.assertEquals(List.of(9_999, 9_969), columns.getIdsByAuthors(new int[] { 9 }, 10_000, 2));
+        List<Message> range = new ArrayList<>();
+        columns.forEachInTimeRange(100, 110, range::add);
+        Assert.assertEquals(List.of(102, 105, 108), ids(range));
+
+        columns.add(10_001, 1, "after compaction", 10_001);
+        Assert.assertEquals("after compaction", columns.get(10_001).getMessage_text());
+    }
+
+    /**
+     * Text kept in memory-mapped segments, spread over many of them, then compacted into a new arena
+     *
+     * Expected: every text reads back as written, and no segment file is left on disk
+     */
+    @Test
+    public void mappedTextSurvivesCompaction() throws IOException {
+        Path directory = Files.createTempDirectory("arena");
+        columns = new MessageColumns(new MappedTextArena(directory, 1 << 16));
+        String padding = "x".repeat(200);
+        for (int id = 1; id <= 4_000; id++) {
+            columns.add(id, 1, id + padding, id);
+        }
+        for (int id = 1; id <= 2_000; id++) {
+            columns.remove(id);
+        }
+
+        Assert.assertEquals(1, columns.getStats().getCompactions());
+        Assert.assertTrue(columns.getStats().getArenaBytes() < 3_000 * 210);
+        for (int id = 2_001; id <= 4_000; id++) {
+            Assert.assertEquals(id + padding, columns.get(id).getMessage_text());
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            Assert.assertEquals(0, files.count());
+        }
+        columns.clear();
+        Files.delete(directory);
+    }
+
+    /**
+     * A message ID that is not greater than every ID before it
+     *
+     * Expected: it is refused
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void idsMustIncrease() {
+        columns.add(5, 1, "five", 0);
+        columns.add(5, 1, "five again", 0);
+    }
+
+    private static List<Integer> ids(List<Message> messages) {
+        return messages.stream().map(Message::getMessage_id).collect(Collectors.toList());
+    }
+
+    private static List<Message> inRange(List<Message> messages, long since, long until) {
+        return messages.stream()
+                .filter(message -> message.getTime_posted_epoch() >= since && message.getTime_posted_epoch() < until)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,200 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Model.Message;
+import Service.MessageEventService;
+
+public class MessageEventStreamTest {
+    TestApi api;
+
+    /**
+     * Before every test, reset the database and restart the Javalin app.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        api = TestApi.start();
+    }
+
+    @After
+    public void tearDown() {
+        api.stop();
+    }
+
+    /**
+     * Creating, updating and deleting a message while streaming GET localhost:8080/messages/stream?account_id=1
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: created, updated and deleted events for account 1's message, in order with increasing IDs;
+     *  nothing for another account's message
+     */
+    @Test(timeout = 10_000)
+    public void streamDeliversChangesInOrder() throws IOException, InterruptedException {
+        api.register("otheruser");
+        api.postMessage(2, "not for this stream", 1669947800);
+        api.postMessage(1, "hello", 1669947800);
+        api.send("PATCH", "/messages/3", "{\"message_text\": \"hello again\"}");
+        api.send("DELETE", "/messages/3", null);
+
+        // Starting after event 0 replays everything, so it does not matter when the subscription begins
+        try (Stream<String> lines = openStream("?account_id=1", "0")) {
+            List<String[]> events = readEvents(lines.iterator(), 3);
+            Assert.assertEquals("created", events.get(0)[1]);
+            Assert.assertEquals("updated", events.get(1)[1]);
+            Assert.assertEquals("deleted", events.get(2)[1]);
+            Assert.assertEquals(new Message(3, 1, "hello", 1669947800), parse(events.get(0)[2]));
+            Assert.assertEquals(new Message(3, 1, "hello again", 1669947800), parse(events.get(2)[2]));
+            Assert.assertEquals("2", events.get(0)[0]);
+            Assert.assertEquals("4", events.get(2)[0]);
+        }
+    }
+
+    /**
+     * Reconnecting to GET localhost:8080/messages/stream with a Last-Event-ID header
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: only the events after that ID; a reset event for an ID the server does not know
+     */
+    @Test(timeout = 10_000)
+    public void streamResumesAfterLastEventId() throws IOException, InterruptedException {
+        api.postMessage(1, "first", 1669947800);
+        api.postMessage(1, "second", 1669947800);
+        api.postMessage(1, "third", 1669947800);
+
+        try (Stream<String> lines = openStream("", "2")) {
+            String[] event = readEvents(lines.iterator(), 1).get(0);
+            Assert.assertEquals("3", event[0]);
+            Assert.assertEquals("third", parse(event[2]).getMessage_text());
+        }
+        try (Stream<String> lines = openStream("", "99")) {
+            String[] event = readEvents(lines.iterator(), 1).get(0);
+            Assert.assertEquals("reset", event[1]);
+            Assert.assertEquals("3", event[0]);
+        }
+    }
+
+    /**
+     * A subscriber that stops reading, under each overflow policy
+     *
+     * Expected: publishing never waits; DROP keeps the newest events and counts the rest, DISCONNECT closes the
+     * subscription
+     */
+    @Test
+    public void slowSubscribersDropOrDisconnect() throws InterruptedException {
+        MessageEventService events = new MessageEventService(16, 2);
+        MessageEventService.Subscription dropping = events.subscribe(null, null, MessageEventService.Overflow.DROP);
+        MessageEventService.Subscription disconnecting = events.subscribe(null, null,
+                MessageEventService.Overflow.DISCONNECT);
+        for (int i = 1; i <= 5; i++) {
+            events.publish(MessageEventService.CREATED, new Message(i, 1, "message " + i, 0));
+        }
+
+        Assert.assertEquals(4, dropping.poll(0).getId());
+        Assert.assertEquals(5, dropping.poll(0).getId());
+        Assert.assertEquals(3, dropping.takeDropped());
+        Assert.assertTrue(disconnecting.isClosed());
+        Assert.assertEquals(1, events.getStats().getDisconnected());
+
+        // The disconnected subscriber resumes from the replay ring
+        MessageEventService.Subscription resumed = events.subscribe(null, 1L, MessageEventService.Overflow.DISCONNECT);
+        for (long id = 2; id <= 5; id++) {
+            Assert.assertEquals(id, resumed.poll(0).getId());
+        }
+    }
+
+    /**
+     * Several threads publishing at once, for an author-filtered subscriber and an unfiltered one
+     *
+     * Expected: each subscriber gets every matching event exactly once, in ID order
+     */
+    @Test
+    public void concurrentPublishersDeliverInOrder() throws InterruptedException {
+        MessageEventService events = new MessageEventService(16, 10_000);
+        MessageEventService.Subscription all = events.subscribe(null, null, MessageEventService.Overflow.DISCONNECT);
+        MessageEventService.Subscription author = events.subscribe(1, null, MessageEventService.Overflow.DISCONNECT);
+        List<Thread> publishers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int postedBy = t % 2 + 1;
+            publishers.add(new Thread(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    events.publish(MessageEventService.CREATED, new Message(i, postedBy, "message " + i, 0));
+                }
+            }));
+        }
+        for (Thread publisher : publishers) {
+            publisher.start();
+        }
+        for (Thread publisher : publishers) {
+            publisher.join();
+        }
+
+        long last = 0;
+        for (int i = 0; i < 4_000; i++) {
+            long id = all.poll(1_000).getId();
+            Assert.assertTrue(id > last);
+            last = id;
+        }
+        last = 0;
+        for (int i = 0; i < 2_000; i++) {
+            MessageEventService.MessageEvent event = author.poll(1_000);
+            Assert.assertEquals(1, event.getMessage().getPosted_by());
+            Assert.assertTrue(event.getId() > last);
+            last = event.getId();
+        }
+        Assert.assertNull(all.poll(0));
+        Assert.assertNull(author.poll(0));
+        Assert.assertEquals(2, events.getStats().getSubscribers());
+    }
+
+    private Stream<String> openStream(String query, String lastEventId) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(TestApi.BASE_URL + "/messages/stream" + query))
+                .header("Accept", "text/event-stream")
+                .header("Last-Event-ID", lastEventId)
+                .build();
+        HttpResponse<Stream<String>> response = api.getWebClient().send(request, HttpResponse.BodyHandlers.ofLines());
+        Assert.assertEquals(200, response.statusCode());
+        return response.body();
+    }
+
+    /**
+     * @return the first count events as {id, event, data}
+     */
+    private List<String[]> readEvents(Iterator<String> lines, int count) {
+        List<String[]> events = new ArrayList<>();
+        String[] event = new String[3];
+        while (events.size() < count && lines.hasNext()) {
+            String line = lines.next();
+            if (line.isEmpty()) {
+                if (event[1] != null) {
+                    events.add(event);
+                }
+                event = new String[3];
+            } else if (line.startsWith("id: ")) {
+                event[0] = line.substring(4);
+            } else if (line.startsWith("event: ")) {
+                event[1] = line.substring(7);
+            } else if (line.startsWith("data: ")) {
+                event[2] = line.substring(6);
+            }
+        }
+        return events;
+    }
+
+    private Message parse(String json) throws IOException {
+        return api.getObjectMapper().readValue(json, Message.class);
+    }
+}
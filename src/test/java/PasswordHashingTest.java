@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.RepositoryRegistry;
+import Model.Account;
+
+public class PasswordHashingTest {
+    TestApi api;
+
+    /**
+     * Before every test, reset the database and restart the Javalin app.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        api = TestApi.start();
+    }
+
+    @After
+    public void tearDown() {
+        api.stop();
+    }
+
+    /**
+     * Registering a user, then logging in with the right and a wrong password
+     *
+     * Expected Response:
+     *  Status Code: 200 for the registration and the login, 401 for the wrong password
+     *  Response Body: the account with the submitted password, while the database only holds a salted hash
+     */
+    @Test
+    public void registeredPasswordIsStoredHashed() throws IOException, InterruptedException {
+        HttpResponse<String> registerResponse = send("/register", "hasheduser", "secret password");
+        Assert.assertEquals(200, registerResponse.statusCode());
+        Assert.assertEquals(new Account(2, "hasheduser", "secret password"),
+                api.getObjectMapper().readValue(registerResponse.body(), Account.class));
+
+        String stored = storedPassword("hasheduser");
+        Assert.assertTrue(stored, stored.startsWith("pbkdf2-sha256$"));
+        Assert.assertFalse(stored.contains("secret password"));
+
+        HttpResponse<String> loginResponse = send("/login", "hasheduser", "secret password");
+        Assert.assertEquals(200, loginResponse.statusCode());
+        Assert.assertEquals(new Account(2, "hasheduser", "secret password"),
+                api.getObjectMapper().readValue(loginResponse.body(), Account.class));
+
+        Assert.assertEquals(401, send("/login", "hasheduser", "wrong password").statusCode());
+    }
+
+    /**
+     * Logging in as the seeded user, whose password predates hashing and is stored in plaintext
+     *
+     * Expected Response:
+     *  Status Code: 200 for the first and a repeated login
+     *  The stored password is replaced by a hash after the first login
+     */
+    @Test
+    public void legacyPlaintextPasswordIsUpgraded() throws IOException, InterruptedException {
+        Assert.assertEquals("password", storedPassword("testuser1"));
+
+        Assert.assertEquals(200, send("/login", "testuser1", "password").statusCode());
+        Assert.assertTrue(storedPassword("testuser1").startsWith("pbkdf2-sha256$"));
+
+        HttpResponse<String> repeatedLogin = send("/login", "testuser1", "password");
+        Assert.assertEquals(200, repeatedLogin.statusCode());
+        Assert.assertEquals(new Account(1, "testuser1", "password"),
+                api.getObjectMapper().readValue(repeatedLogin.body(), Account.class));
+        Assert.assertEquals(401, send("/login", "testuser1", "pass").statusCode());
+    }
+
+    private HttpResponse<String> send(String path, String username, String password)
+            throws IOException, InterruptedException {
+        return api.send("POST", path, "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}");
+    }
+
+    /**
+     * @return the password as the engine under test stores it, read past the services.
+     */
+    private String storedPassword(String username) {
+        Account account = RepositoryRegistry.fromSystemProperties().getAccountRepository()
+                .getAccountByUsername(username);
+        Assert.assertNotNull(account);
+        return account.getPassword();
+    }
+}
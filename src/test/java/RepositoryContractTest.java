@@ -0,0 +1,226 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import DAO.AccountRepository;
+import DAO.FollowRepository;
+import DAO.MessageRepository;
+import DAO.Repositories;
+import DAO.RepositoryRegistry;
+import Model.Account;
+import Model.Message;
+
+/**
+ * The behaviour every storage engine must share, run against each engine in the {@link RepositoryRegistry}.
+ */
+@RunWith(Parameterized.class)
+public class RepositoryContractTest {
+    AccountRepository accounts;
+    MessageRepository messages;
+    FollowRepository follows;
+
+    @Parameterized.Parameter
+    public String engine;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        List<Object[]> engines = new ArrayList<>();
+        for (String name : RepositoryRegistry.getEngineNames()) {
+            engines.add(new Object[] { name });
+        }
+        return engines;
+    }
+
+    /**
+     * Before every test, reset the database and create the engine's repositories on the seed data.
+     */
+    @Before
+    public void setUp() {
+        Repositories repositories = TestRepositories.fresh(engine);
+        Assert.assertEquals(engine, repositories.getEngine());
+        accounts = repositories.getAccountRepository();
+        messages = repositories.getMessageRepository();
+        follows = repositories.getFollowRepository();
+    }
+
+    /**
+     * Registering, looking up and changing accounts
+     *
+     * Expected: usernames are unique, lookups see the latest password, and an account with messages is kept
+     */
+    @Test
+    public void accounts() {
+        Account second = accounts.insertAccount("seconduser", "password");
+        Assert.assertEquals(new Account(2, "seconduser", "password"), second);
+        Assert.assertNull(accounts.insertAccount("seconduser", "other"));
+        Assert.assertEquals(second, accounts.getAccountByUsername("seconduser"));
+
+        Assert.assertTrue(accounts.updatePassword(2, "changed"));
+        Assert.assertEquals(new Account(2, "seconduser", "changed"), accounts.getAccountByUsername("seconduser"));
+        Assert.assertEquals(new Account(2, "seconduser", "changed"), accounts.getAccountById(2));
+        Assert.assertFalse(accounts.updatePassword(99, "changed"));
+
+        accounts.deleteAccount(1);
+        Assert.assertTrue(accounts.doesAccountExistAccountID(1));
+        accounts.deleteAccount(2);
+        Assert.assertFalse(accounts.doesAccountExistUsername("seconduser"));
+        Assert.assertNull(accounts.getAccountByUsername("seconduser"));
+        Assert.assertEquals(1, accounts.getAllAccounts().size());
+    }
+
+    /**
+     * Inserting, paging, updating and deleting messages
+     *
+     * Expected: IDs are generated in increasing order, pages follow the ID, and changes to a missing message return
+     * null
+     */
+    @Test
+    public void messages() {
+        Message second = messages.insertMessage(new Message(1, "second", 20));
+        Message third = messages.insertMessage(new Message(1, "third", 30));
+        Assert.assertEquals(new Message(2, 1, "second", 20), second);
+        Assert.assertEquals(new Message(3, 1, "third", 30), third);
+        Assert.assertEquals(List.of(second, third), messages.getMessagesAfter(1, 10));
+        Assert.assertEquals(List.of(second), messages.getMessagesAfter(1, 1));
+        Assert.assertEquals(3, byAuthor(1).size());
+
+        Assert.assertEquals(new Message(2, 1, "edited", 20), messages.updateMessageTextAndReturn(2, "edited"));
+        Assert.assertEquals("edited", messages.getMessageById(2).getMessage_text());
+        Assert.assertNull(messages.updateMessageTextAndReturn(99, "edited"));
+        Assert.assertNull(messages.updateMessageTextAndReturn(2, "x".repeat(256)));
+        Assert.assertEquals("edited", messages.getMessageById(2).getMessage_text());
+
+        Assert.assertEquals(third, messages.deleteMessageAndReturn(3));
+        Assert.assertNull(messages.getMessageById(3));
+        Assert.assertNull(messages.deleteMessageAndReturn(3));
+        Assert.assertNull(messages.insertMessage(new Message(99, "no such author", 10)));
+        Assert.assertEquals(2, all(messages).size());
+    }
+
+    /**
+     * A returned message changed by the caller
+     *
+     * Expected: the stored message is unaffected
+     */
+    @Test
+    public void returnedMessagesAreNotShared() {
+        messages.getMessageById(1).setMessage_text("changed by the caller");
+        Assert.assertEquals("test message 1", messages.getMessageById(1).getMessage_text());
+    }
+
+    /**
+     * A batch with one message that cannot be stored
+     *
+     * Expected: none of the batch is stored; the IDs it would have taken may or may not be skipped
+     */
+    @Test
+    public void batchesAreAllOrNothing() {
+        Assert.assertNull(messages.insertMessages(List.of(new Message(1, "fine", 10),
+                new Message(1, "x".repeat(256), 10))));
+        Assert.assertEquals(1, all(messages).size());
+
+        List<Message> inserted = messages.insertMessages(List.of(new Message(1, "one", 10),
+                new Message(1, "two", 10)));
+        Assert.assertEquals(2, inserted.size());
+        Assert.assertEquals("one", inserted.get(0).getMessage_text());
+        Assert.assertEquals(inserted.get(0).getMessage_id() + 1, inserted.get(1).getMessage_id());
+        Assert.assertEquals(inserted, messages.getMessagesAfter(1, 10));
+    }
+
+    /**
+     * Messages read by time range, some posted at the same time
+     *
+     * Expected: the range is half-open and ties are in ID order
+     */
+    @Test
+    public void timeRangesAreInTimeThenIdOrder() {
+        Account second = accounts.insertAccount("seconduser", "password");
+        messages.insertMessage(new Message(second.getAccount_id(), "late", 300));
+        messages.insertMessage(new Message(1, "early", 100));
+        messages.insertMessage(new Message(second.getAccount_id(), "early too", 100));
+
+        List<Integer> ids = new ArrayList<>();
+        messages.streamMessagesInTimeRange(100, 300, message -> ids.add(message.getMessage_id()));
+        Assert.assertEquals(List.of(3, 4), ids);
+        ids.clear();
+        messages.streamMessagesByAccountIdInTimeRange(second.getAccount_id(), 0, 1000,
+                message -> ids.add(message.getMessage_id()));
+        Assert.assertEquals(List.of(4, 2), ids);
+    }
+
+    /**
+     * Message IDs of several authors, as a home timeline reads them
+     *
+     * Expected: newest first, before the given ID, and no more than the limit
+     */
+    @Test
+    public void messageIdsByAuthorsAreNewestFirst() {
+        Account second = accounts.insertAccount("seconduser", "password");
+        accounts.insertAccount("thirduser", "password");
+        for (int i = 0; i < 3; i++) {
+            messages.insertMessage(new Message(second.getAccount_id(), "second " + i, i));
+            messages.insertMessage(new Message(3, "third " + i, i));
+        }
+
+        Assert.assertEquals(List.of(7, 6, 5, 4), messages.getMessageIdsByAuthors(new int[] { 2, 3 }, 99, 4));
+        Assert.assertEquals(List.of(4, 2), messages.getMessageIdsByAuthors(new int[] { 2 }, 6, 10));
+        Assert.assertEquals(List.of(), messages.getMessageIdsByAuthors(new int[] { 99 }, 99, 10));
+    }
+
+    /**
+     * Searching after messages are added, edited and deleted
+     *
+     * Expected: results follow the current text
+     */
+    @Test
+    public void searchFollowsChanges() {
+        messages.insertMessage(new Message(1, "hello world", 10));
+        messages.insertMessage(new Message(1, "hello there", 20));
+        Assert.assertEquals(List.of(3, 2), messages.searchMessageIds("hello", 0, 10));
+
+        messages.updateMessageTextAndReturn(3, "goodbye");
+        messages.deleteMessageAndReturn(2);
+        Assert.assertEquals(List.of(), messages.searchMessageIds("hello", 0, 10));
+        Assert.assertEquals(List.of(3), messages.searchMessageIds("goodbye", 0, 10));
+    }
+
+    /**
+     * Following and unfollowing, including accounts that do not exist
+     *
+     * Expected: both directions of the graph agree, repeats change nothing, and unknown accounts are refused
+     */
+    @Test
+    public void follows() {
+        accounts.insertAccount("seconduser", "password");
+        Assert.assertTrue(follows.insertFollow(2, 1));
+        Assert.assertTrue(follows.insertFollow(2, 1));
+        Assert.assertFalse(follows.insertFollow(2, 99));
+        Assert.assertArrayEquals(new int[] { 2 }, follows.getFollowerIds(1));
+        Assert.assertArrayEquals(new int[] { 1 }, follows.getFolloweeIds(2));
+        Assert.assertEquals(1, follows.countFollowers(1));
+        Assert.assertEquals(1, follows.countFollows());
+
+        Assert.assertTrue(follows.deleteFollow(2, 1));
+        Assert.assertTrue(follows.deleteFollow(2, 1));
+        Assert.assertEquals(0, follows.countFollowers(1));
+        Assert.assertArrayEquals(new int[0], follows.getFolloweeIds(2));
+    }
+
+    private static List<Message> all(MessageRepository messages) {
+        List<Message> all = new ArrayList<>();
+        messages.streamAllMessages(all::add);
+        return all;
+    }
+
+    private List<Message> byAuthor(int accountId) {
+        List<Message> byAuthor = new ArrayList<>();
+        messages.streamMessagesByAccountId(accountId, byAuthor::add);
+        return byAuthor;
+    }
+}
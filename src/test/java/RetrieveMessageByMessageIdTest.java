@@ -86,5 +86,39 @@ public class RetrieveMessageByMessageIdTest {
         Assert.assertTrue(response.body().toString().isEmpty());
     }
 
+    /**
+     * Sending an http request to GET localhost:8080/messages/2 before and after message 2 is created, then after it
+     * is deleted (the cached lookups must follow every write)
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: empty, then the created message, then empty again
+     */
+    @Test
+    public void getMessageGivenMessageIdFollowsWrites() throws IOException, InterruptedException {
+        HttpRequest getRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/2"))
+                .build();
+        Assert.assertTrue(webClient.send(getRequest, HttpResponse.BodyHandlers.ofString()).body().isEmpty());
+
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"hello message\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> response = webClient.send(getRequest, HttpResponse.BodyHandlers.ofString());
+        Message expectedResult = new Message(2, 1, "hello message", 1669947792);
+        Assert.assertEquals(expectedResult, objectMapper.readValue(response.body(), Message.class));
 
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/2"))
+                .DELETE()
+                .build();
+        webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertTrue(webClient.send(getRequest, HttpResponse.BodyHandlers.ofString()).body().isEmpty());
+    }
 }
@@ -0,0 +1,87 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Model.Message;
+import Model.MessagePage;
+
+public class RetrieveMessagesPageTest {
+    TestApi api;
+
+    /**
+     * Before every test, reset the database and restart the Javalin app.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        api = TestApi.start();
+    }
+
+    @After
+    public void tearDown() {
+        api.stop();
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages?limit=2 and following the returned cursor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: pages of at most 2 messages, in message_id order, with a next_cursor on every page but the last
+     */
+    @Test
+    public void getMessagesPageFollowsCursor() throws IOException, InterruptedException {
+        api.postMessage(1, "second message", 1669947793);
+        api.postMessage(1, "third message", 1669947794);
+
+        MessagePage firstPage = api.getJson("/messages?limit=2", MessagePage.class);
+        List<Message> expectedFirstPage = new ArrayList<>();
+        expectedFirstPage.add(new Message(1, 1, "test message 1", 1669947792));
+        expectedFirstPage.add(new Message(2, 1, "second message", 1669947793));
+        Assert.assertEquals(expectedFirstPage, firstPage.getMessages());
+        Assert.assertNotNull(firstPage.getNext_cursor());
+
+        MessagePage secondPage = api.getJson("/messages?limit=2&after=" + firstPage.getNext_cursor(),
+                MessagePage.class);
+        List<Message> expectedSecondPage = new ArrayList<>();
+        expectedSecondPage.add(new Message(3, 1, "third message", 1669947794));
+        Assert.assertEquals(expectedSecondPage, secondPage.getMessages());
+        Assert.assertNull(secondPage.getNext_cursor());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages?limit=1
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: a page holding the user's first message and a cursor for the next one
+     */
+    @Test
+    public void getMessagesPageForUser() throws IOException, InterruptedException {
+        api.postMessage(1, "second message", 1669947793);
+
+        MessagePage page = api.getJson("/accounts/1/messages?limit=1", MessagePage.class);
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(1, 1, "test message 1", 1669947792));
+        Assert.assertEquals(expectedResult, page.getMessages());
+        Assert.assertNotNull(page.getNext_cursor());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with an invalid limit or cursor
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getMessagesPageInvalidParameters() throws IOException, InterruptedException {
+        Assert.assertEquals(400, api.get("/messages?limit=0").statusCode());
+        Assert.assertEquals(400, api.get("/messages?limit=abc").statusCode());
+        Assert.assertEquals(400, api.get("/messages?after=not-a-cursor").statusCode());
+    }
+}
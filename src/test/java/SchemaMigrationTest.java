@@ -0,0 +1,83 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.ConnectionUtil;
+import Util.MigrationRunner;
+
+public class SchemaMigrationTest {
+
+    /**
+     * Before every test, reset the database so the schema is rebuilt from the migrations.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+    }
+
+    /**
+     * Running the migrations against an up-to-date database should apply nothing.
+     */
+    @Test
+    public void migrationsAreIdempotent() throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            Assert.assertEquals(0, MigrationRunner.migrate(connection));
+            Assert.assertEquals("4", queryForString(connection, "SELECT COUNT(*) FROM schema_version"));
+        }
+    }
+
+    /**
+     * Per-account time range scans should be read off the (posted_by, time_posted_epoch, message_id) index without
+     * a sort.
+     */
+    @Test
+    public void accountTimelineUsesIndex() throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            String plan = queryForString(connection, "EXPLAIN SELECT * FROM message WHERE posted_by = 1 "
+                    + "AND time_posted_epoch >= 0 AND time_posted_epoch < 1669947792 "
+                    + "ORDER BY posted_by, time_posted_epoch, message_id");
+            Assert.assertTrue(plan, plan.toUpperCase().contains("MESSAGE_POSTED_BY_TIME_IDX"));
+            Assert.assertTrue(plan, plan.contains("index sorted"));
+        }
+    }
+
+    /**
+     * Time range scans across all accounts should be read off the (time_posted_epoch, message_id) index without a
+     * sort.
+     */
+    @Test
+    public void timeRangeUsesIndex() throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            String plan = queryForString(connection, "EXPLAIN SELECT * FROM message WHERE time_posted_epoch >= 0 "
+                    + "AND time_posted_epoch < 1669947792 ORDER BY time_posted_epoch, message_id");
+            Assert.assertTrue(plan, plan.toUpperCase().contains("MESSAGE_TIME_POSTED_IDX"));
+            Assert.assertTrue(plan, plan.contains("index sorted"));
+        }
+    }
+
+    /**
+     * An author's newest messages should be read off the descending (posted_by, message_id) index without a sort.
+     */
+    @Test
+    public void newestMessagesByAuthorUseDescendingIndex() throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            String plan = queryForString(connection, "EXPLAIN SELECT message_id FROM message WHERE posted_by = 1 "
+                    + "AND message_id < 100 ORDER BY posted_by, message_id DESC LIMIT 10");
+            Assert.assertTrue(plan, plan.toUpperCase().contains("MESSAGE_POSTED_BY_ID_DESC_IDX"));
+            Assert.assertTrue(plan, plan.contains("index sorted"));
+        }
+    }
+
+    private String queryForString(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(sql);
+                ResultSet rs = preparedStatement.executeQuery()) {
+            Assert.assertTrue(rs.next());
+            return rs.getString(1);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Model.Message;
+import Model.MessagePage;
+
+public class SearchMessagesTest {
+    TestApi api;
+
+    /**
+     * Before every test, reset the database and restart the Javalin app.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        api = TestApi.start();
+    }
+
+    @After
+    public void tearDown() {
+        api.stop();
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages/search?q=Quick+fox, in one page and in pages of one
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the messages containing both words, the one repeating "quick" first, and a cursor between pages
+     */
+    @Test
+    public void searchRanksAndPaginatesMatches() throws IOException, InterruptedException {
+        api.postMessage(1, "the quick brown fox", 1669947793);
+        api.postMessage(1, "Quick, quick! The fox jumps", 1669947794);
+        api.postMessage(1, "a lazy dog", 1669947795);
+
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(3, 1, "Quick, quick! The fox jumps", 1669947794));
+        expected.add(new Message(2, 1, "the quick brown fox", 1669947793));
+        MessagePage all = search("q=Quick+fox");
+        Assert.assertEquals(expected, all.getMessages());
+        Assert.assertNull(all.getNext_cursor());
+
+        MessagePage first = search("q=Quick+fox&limit=1");
+        Assert.assertEquals(expected.subList(0, 1), first.getMessages());
+        Assert.assertNotNull(first.getNext_cursor());
+        MessagePage second = search("q=Quick+fox&limit=1&after=" + first.getNext_cursor());
+        Assert.assertEquals(expected.subList(1, 2), second.getMessages());
+        Assert.assertNull(second.getNext_cursor());
+    }
+
+    /**
+     * Searching after updating and deleting messages
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: only messages whose current text matches; deleted messages are gone
+     */
+    @Test
+    public void searchFollowsUpdatesAndDeletes() throws IOException, InterruptedException {
+        Assert.assertEquals(1, search("q=test").getMessages().size());
+
+        Assert.assertEquals(200,
+                api.send("PATCH", "/messages/1", "{\"message_text\": \"updated words\"}").statusCode());
+        Assert.assertTrue(search("q=test").getMessages().isEmpty());
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(1, 1, "updated words", 1669947792));
+        Assert.assertEquals(expected, search("q=WORDS").getMessages());
+
+        Assert.assertEquals(200, api.send("DELETE", "/messages/1", null).statusCode());
+        Assert.assertTrue(search("q=words").getMessages().isEmpty());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search without a query
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void searchWithoutQueryIsRejected() throws IOException, InterruptedException {
+        Assert.assertEquals(400, api.get("/messages/search?q=+").statusCode());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search with a cursor past the last result served
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void searchPastLastResultIsRejected() throws IOException, InterruptedException {
+        String cursor = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("s:" + Integer.MAX_VALUE).getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(400, api.get("/messages/search?q=test&after=" + cursor).statusCode());
+    }
+
+    private MessagePage search(String query) throws IOException, InterruptedException {
+        return api.getJson("/messages/search?" + query, MessagePage.class);
+    }
+}
@@ -0,0 +1,132 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.ConnectionPool;
+import Util.PoolConfig;
+
+/**
+ * The statement cache behind the pool's connections, reached the way the DAOs reach it: through
+ * {@code prepareStatement} on a borrowed connection. Each test has a one-connection pool caching two statements.
+ */
+public class StatementCacheTest {
+    private static final AtomicInteger databases = new AtomicInteger();
+
+    ConnectionPool pool;
+
+    @Before
+    public void setUp() {
+        String url = "jdbc:h2:mem:statements" + databases.incrementAndGet() + ";DB_CLOSE_DELAY=-1";
+        pool = new ConnectionPool(url, "sa", "sa", new PoolConfig(0, 1, 1_000, 600_000, 0, false, 5_000, 2, 60_000, 2));
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    /**
+     * The same SQL prepared again after the first statement was closed, on a later borrow of the connection
+     *
+     * Expected: the second prepare is a hit and hands back the same underlying statement
+     */
+    @Test
+    public void closedStatementIsReused() throws SQLException {
+        PreparedStatement first;
+        try (Connection connection = pool.borrow(); PreparedStatement ps = connection.prepareStatement("SELECT 1")) {
+            first = ps.unwrap(PreparedStatement.class);
+        }
+        try (Connection connection = pool.borrow(); PreparedStatement ps = connection.prepareStatement("SELECT 1")) {
+            Assert.assertSame(first, ps.unwrap(PreparedStatement.class));
+        }
+        Assert.assertEquals(1, pool.getStats().getStatementCacheMisses());
+        Assert.assertEquals(1, pool.getStats().getStatementCacheHits());
+    }
+
+    /**
+     * The same SQL prepared twice while the first statement is still open
+     *
+     * Expected: two different underlying statements, both usable at once
+     */
+    @Test
+    public void openStatementIsCheckedOut() throws SQLException {
+        try (Connection connection = pool.borrow();
+                PreparedStatement first = connection.prepareStatement("SELECT ?");
+                PreparedStatement second = connection.prepareStatement("SELECT ?")) {
+            Assert.assertNotSame(first.unwrap(PreparedStatement.class), second.unwrap(PreparedStatement.class));
+            first.setInt(1, 1);
+            second.setInt(1, 2);
+            Assert.assertEquals(1, selectInt(first));
+            Assert.assertEquals(2, selectInt(second));
+        }
+        Assert.assertEquals(2, pool.getStats().getStatementCacheMisses());
+    }
+
+    /**
+     * More distinct SQL than the cache holds, each statement closed after use
+     *
+     * Expected: the least recently used statement is evicted and closed, and preparing it again is a miss
+     */
+    @Test
+    public void leastRecentlyUsedStatementIsEvicted() throws SQLException {
+        try (Connection connection = pool.borrow()) {
+            PreparedStatement evicted;
+            try (PreparedStatement ps = connection.prepareStatement("SELECT 1")) {
+                evicted = ps.unwrap(PreparedStatement.class);
+            }
+            connection.prepareStatement("SELECT 2").close();
+            connection.prepareStatement("SELECT 3").close();
+            Assert.assertEquals(1, pool.getStats().getStatementCacheEvictions());
+            Assert.assertTrue(evicted.isClosed());
+
+            connection.prepareStatement("SELECT 3").close();
+            connection.prepareStatement("SELECT 1").close();
+        }
+        Assert.assertEquals(1, pool.getStats().getStatementCacheHits());
+        Assert.assertEquals(4, pool.getStats().getStatementCacheMisses());
+    }
+
+    /**
+     * A statement closed with a parameter set, then prepared again; and a statement used after it was closed
+     *
+     * Expected: the reused statement has no parameters left over, and the closed one cannot be used
+     */
+    @Test
+    public void closedStatementIsCleared() throws SQLException {
+        try (Connection connection = pool.borrow()) {
+            PreparedStatement closed = connection.prepareStatement("SELECT ?");
+            closed.setInt(1, 7);
+            closed.close();
+            Assert.assertTrue(closed.isClosed());
+            try {
+                closed.executeQuery();
+                Assert.fail("used a statement after closing it");
+            } catch (SQLException e) {
+                // expected
+            }
+
+            try (PreparedStatement ps = connection.prepareStatement("SELECT ?")) {
+                try {
+                    ps.executeQuery();
+                    Assert.fail("a parameter was left over from the statement's last use");
+                } catch (SQLException e) {
+                    // expected
+                }
+            }
+        }
+    }
+
+    private static int selectInt(PreparedStatement ps) throws SQLException {
+        try (ResultSet rs = ps.executeQuery()) {
+            Assert.assertTrue(rs.next());
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import Model.Message;
+
+public class StreamMessagesTest {
+    TestApi api;
+
+    /**
+     * Before every test, reset the database and restart the Javalin app.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        api = TestApi.start();
+    }
+
+    @After
+    public void tearDown() {
+        api.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?stream=true
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON array of every message, in message_id order
+     */
+    @Test
+    public void streamAllMessages() throws IOException, InterruptedException {
+        api.postMessage(1, "second message", 1669947793);
+
+        HttpResponse<String> response = api.get("/messages?stream=true");
+        Assert.assertEquals(200, response.statusCode());
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(1, 1, "test message 1", 1669947792));
+        expectedResult.add(new Message(2, 1, "second message", 1669947793));
+        List<Message> actualResult = api.getObjectMapper().readValue(response.body(),
+                new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/2/messages?stream=true (no messages for user)
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: an empty JSON array
+     */
+    @Test
+    public void streamMessagesForUserNoMessages() throws IOException, InterruptedException {
+        HttpResponse<String> response = api.get("/accounts/2/messages?stream=true");
+        Assert.assertEquals(200, response.statusCode());
+        List<Message> actualResult = api.getObjectMapper().readValue(response.body(),
+                new TypeReference<List<Message>>(){});
+        Assert.assertTrue(actualResult.isEmpty());
+    }
+}
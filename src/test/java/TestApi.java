@@ -0,0 +1,142 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.Assert;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Account;
+import Model.Message;
+import io.javalin.Javalin;
+
+/**
+ * The API running on localhost:8080 on fresh repositories, for a test to send requests to, with the requests most
+ * tests make along the way. Start one before every test and stop it after.
+ */
+public class TestApi {
+    public static final String BASE_URL = "http://localhost:8080";
+
+    private final Javalin app;
+    private final HttpClient webClient = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private TestApi(Javalin app) {
+        this.app = app;
+    }
+
+    /**
+     * Reset the storage, then start the app and wait for it to come up.
+     *
+     * @return the running API.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public static TestApi start() throws InterruptedException {
+        Javalin app = new SocialMediaController(TestRepositories.fresh()).startAPI();
+        app.start(8080);
+        Thread.sleep(1000);
+        return new TestApi(app);
+    }
+
+    public void stop() {
+        app.stop();
+    }
+
+    public HttpClient getWebClient() {
+        return webClient;
+    }
+
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    /**
+     * @param path the path and query, e.g. "/messages?limit=2".
+     * @return the response.
+     */
+    public HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return send("GET", path, null);
+    }
+
+    /**
+     * @param method  the HTTP method.
+     * @param path    the path and query.
+     * @param body    the body, JSON unless the headers say otherwise, or null for none.
+     * @param headers header names and values in pairs, e.g. "Content-Type", "application/x-ndjson"; each replaces
+     *                any header of the same name.
+     * @return the response.
+     */
+    public HttpResponse<String> send(String method, String path, String body, String... headers)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create(BASE_URL + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json");
+        for (int i = 0; i < headers.length; i += 2) {
+            request.setHeader(headers[i], headers[i + 1]);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * GET a path, expecting 200.
+     *
+     * @param path the path and query.
+     * @param type the type of the response body.
+     * @return the response body, read as that type.
+     */
+    public <T> T getJson(String path, Class<T> type) throws IOException, InterruptedException {
+        HttpResponse<String> response = get(path);
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), type);
+    }
+
+    /**
+     * GET a path, expecting 200.
+     *
+     * @param path the path and query.
+     * @param type the type of the response body, e.g. a list of messages.
+     * @return the response body, read as that type.
+     */
+    public <T> T getJson(String path, TypeReference<T> type) throws IOException, InterruptedException {
+        HttpResponse<String> response = get(path);
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), type);
+    }
+
+    /**
+     * Create a message, expecting 200.
+     *
+     * @param postedBy        the author's account ID.
+     * @param text            the message text; must not need escaping in JSON.
+     * @param timePostedEpoch the time posted.
+     * @return the created message.
+     */
+    public Message postMessage(int postedBy, String text, long timePostedEpoch)
+            throws IOException, InterruptedException {
+        HttpResponse<String> response = send("POST", "/messages", "{" +
+                "\"posted_by\":" + postedBy + ", " +
+                "\"message_text\": \"" + text + "\", " +
+                "\"time_posted_epoch\": " + timePostedEpoch + "}");
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), Message.class);
+    }
+
+    /**
+     * Register an account with the password "password", expecting 200.
+     *
+     * @param username the username; must not need escaping in JSON.
+     * @return the new account's ID.
+     */
+    public int register(String username) throws IOException, InterruptedException {
+        HttpResponse<String> response = send("POST", "/register",
+                "{\"username\":\"" + username + "\",\"password\":\"password\"}");
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), Account.class).getAccount_id();
+    }
+}
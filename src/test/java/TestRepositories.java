@@ -0,0 +1,26 @@
+import DAO.Repositories;
+import DAO.RepositoryRegistry;
+import Util.ConnectionUtil;
+
+/**
+ * Storage that holds only the seed data, for a test to start from. The database is reset; the memory engine starts
+ * over from it on its next use, through the reset listener it registers with {@link ConnectionUtil}.
+ */
+public class TestRepositories {
+
+    /**
+     * @return repositories of the engine named by {@code store.engine}, jdbc by default, on the seed data.
+     */
+    public static Repositories fresh() {
+        return fresh(System.getProperty("store.engine", RepositoryRegistry.JDBC));
+    }
+
+    /**
+     * @param engine a registered engine's name.
+     * @return repositories of that engine on the seed data.
+     */
+    public static Repositories fresh(String engine) {
+        ConnectionUtil.resetTestDatabase();
+        return RepositoryRegistry.create(engine);
+    }
+}
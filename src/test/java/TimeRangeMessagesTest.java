@@ -0,0 +1,98 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import Model.Message;
+
+public class TimeRangeMessagesTest {
+    TestApi api;
+
+    /**
+     * Before every test, reset the database and restart the Javalin app.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        api = TestApi.start();
+    }
+
+    @After
+    public void tearDown() {
+        api.stop();
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages with since and until, after posting out of time order
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the messages with since <= time_posted_epoch < until, oldest first, ties in message ID order
+     */
+    @Test
+    public void timeRangeIsReturnedInTimeOrder() throws IOException, InterruptedException {
+        api.postMessage(1, "third", 1669947900);
+        api.postMessage(1, "first", 1669947800);
+        api.postMessage(1, "second", 1669947850);
+        api.postMessage(1, "also second", 1669947850);
+
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(3, 1, "first", 1669947800));
+        expected.add(new Message(4, 1, "second", 1669947850));
+        expected.add(new Message(5, 1, "also second", 1669947850));
+        Assert.assertEquals(expected, list("/messages?since=1669947800&until=1669947900"));
+
+        Assert.assertEquals(expected.subList(1, 3), list("/messages?since=1669947801&until=1669947900"));
+        Assert.assertEquals(1669947792, list("/messages?until=1669947800").get(0).getTime_posted_epoch());
+        Assert.assertEquals(new Message(2, 1, "third", 1669947900), list("/messages?since=1669947900").get(0));
+        Assert.assertTrue(list("/messages?since=1669947901").isEmpty());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/2/messages with since and until
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: only that account's messages in the range, oldest first
+     */
+    @Test
+    public void accountTimeRangeOnlyIncludesThatAccount() throws IOException, InterruptedException {
+        Assert.assertEquals(2, api.register("rangeuser"));
+        api.postMessage(2, "later", 1669947900);
+        api.postMessage(1, "someone else", 1669947850);
+        api.postMessage(2, "earlier", 1669947800);
+
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(4, 2, "earlier", 1669947800));
+        expected.add(new Message(2, 2, "later", 1669947900));
+        Assert.assertEquals(expected, list("/accounts/2/messages?since=1669947000"));
+        Assert.assertEquals(expected.subList(0, 1), list("/accounts/2/messages?since=1669947000&until=1669947900"));
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages with an inverted or malformed range
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void invalidTimeRangeIsRejected() throws IOException, InterruptedException {
+        Assert.assertEquals(400, status("/messages?since=100&until=50"));
+        Assert.assertEquals(400, status("/messages?since=yesterday"));
+        Assert.assertEquals(400, status("/accounts/1/messages?since=100&until=50"));
+    }
+
+    private List<Message> list(String path) throws IOException, InterruptedException {
+        return api.getJson(path, new TypeReference<List<Message>>() {});
+    }
+
+    private int status(String path) throws IOException, InterruptedException {
+        return api.get(path).statusCode();
+    }
+}
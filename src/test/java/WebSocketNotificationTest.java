@@ -0,0 +1,136 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.WebSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import Model.Message;
+
+public class WebSocketNotificationTest {
+    TestApi api;
+    WebSocket socket;
+    BlockingQueue<String> frames;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and open a notification socket.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        api = TestApi.start();
+
+        frames = new LinkedBlockingQueue<>();
+        socket = api.getWebClient().newWebSocketBuilder()
+                .buildAsync(URI.create("ws://localhost:8080/ws/messages"), new WebSocket.Listener() {
+                    private final StringBuilder partial = new StringBuilder();
+
+                    @Override
+                    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+                        partial.append(data);
+                        if (last) {
+                            frames.add(partial.toString());
+                            partial.setLength(0);
+                        }
+                        webSocket.request(1);
+                        return null;
+                    }
+                })
+                .join();
+    }
+
+    @After
+    public void tearDown() {
+        socket.abort();
+        api.stop();
+    }
+
+    /**
+     * Subscribing to account 1, then creating, updating and deleting messages
+     *
+     * Expected Response:
+     *  An acknowledgement listing the subscription, then created, updated and deleted events for account 1's
+     *  message, in order; nothing for another account's message
+     */
+    @Test(timeout = 10_000)
+    public void subscriberReceivesChangesForItsAccounts() throws IOException, InterruptedException {
+        socket.sendText("{\"action\": \"subscribe\", \"posted_by\": [1]}", true).join();
+        JsonNode ack = nextFrame();
+        Assert.assertEquals("subscriptions", ack.get("type").asText());
+        Assert.assertEquals("[1]", ack.get("posted_by").toString());
+
+        send("POST", "/register", "{\"username\":\"otheruser\",\"password\":\"password\"}");
+        send("POST", "/messages", "{\"posted_by\":2, \"message_text\": \"not subscribed\", \"time_posted_epoch\": 1}");
+        send("POST", "/messages", "{\"posted_by\":1, \"message_text\": \"hello\", \"time_posted_epoch\": 2}");
+        send("PATCH", "/messages/3", "{\"message_text\": \"hello again\"}");
+        send("DELETE", "/messages/3", null);
+
+        List<JsonNode> events = new ArrayList<>();
+        while (events.size() < 3) {
+            JsonNode frame = nextFrame();
+            Assert.assertEquals("messages", frame.get("type").asText());
+            frame.get("events").forEach(events::add);
+        }
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals("created", events.get(0).get("type").asText());
+        Assert.assertEquals("updated", events.get(1).get("type").asText());
+        Assert.assertEquals("deleted", events.get(2).get("type").asText());
+        Assert.assertEquals(new Message(3, 1, "hello again", 2),
+                api.getObjectMapper().treeToValue(events.get(2).get("message"), Message.class));
+    }
+
+    /**
+     * Unsubscribing, then creating a message
+     *
+     * Expected Response:
+     *  An acknowledgement with no subscriptions left, and no events afterwards
+     */
+    @Test(timeout = 10_000)
+    public void unsubscribedAccountsAreNotNotified() throws IOException, InterruptedException {
+        socket.sendText("{\"action\": \"subscribe\", \"posted_by\": 1}", true).join();
+        nextFrame();
+        socket.sendText("{\"action\": \"unsubscribe\", \"posted_by\": [1]}", true).join();
+        Assert.assertEquals("[]", nextFrame().get("posted_by").toString());
+
+        send("POST", "/messages", "{\"posted_by\":1, \"message_text\": \"hello\", \"time_posted_epoch\": 2}");
+        Assert.assertNull(frames.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Sending a frame that is not a subscription request
+     *
+     * Expected Response:
+     *  An error frame; the connection stays usable
+     */
+    @Test(timeout = 10_000)
+    public void malformedFramesGetAnError() throws InterruptedException {
+        socket.sendText("{\"action\": \"subscribe\", \"posted_by\": [\"me\"]}", true).join();
+        Assert.assertEquals("error", nextFrame().get("type").asText());
+        socket.sendText("{\"action\": \"subscribe\", \"posted_by\": [1]}", true).join();
+        Assert.assertEquals("subscriptions", nextFrame().get("type").asText());
+    }
+
+    private JsonNode nextFrame() throws InterruptedException {
+        String frame = frames.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull("no frame received", frame);
+        try {
+            return api.getObjectMapper().readTree(frame);
+        } catch (IOException e) {
+            throw new AssertionError(frame, e);
+        }
+    }
+
+    private void send(String method, String path, String body) throws IOException, InterruptedException {
+        Assert.assertEquals(200, api.send(method, path, body).statusCode());
+    }
+}